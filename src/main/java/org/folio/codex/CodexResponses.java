@@ -0,0 +1,114 @@
+package org.folio.codex;
+
+import javax.validation.ValidationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+import org.folio.codex.cache.StaleData;
+import org.folio.codex.client.CircuitBreakerOpenException;
+import org.folio.codex.client.RateLimitExceededException;
+import org.folio.codex.client.UpstreamErrors;
+import org.folio.codex.json.CodexJsonWriter;
+import org.folio.cql2rmapi.QueryValidationException;
+import org.folio.holdingsiq.service.exception.ConfigurationServiceException;
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
+import org.folio.rest.tools.utils.BinaryOutStream;
+
+/**
+ * Builds the responses of the codex APIs, so that every endpoint and every
+ * entry of a batch reports the same failure with the same status.
+ */
+public final class CodexResponses {
+  public static final int TOO_MANY_REQUESTS = 429;
+
+  private CodexResponses() {
+  }
+
+  /**
+   * @return the HTTP status a failure is reported with
+   */
+  public static int statusOf(Throwable throwable) {
+    Throwable cause = UpstreamErrors.unwrap(throwable);
+    if (cause instanceof ResourceNotFoundException) {
+      return Response.Status.NOT_FOUND.getStatusCode();
+    } else if (cause instanceof ValidationException || cause instanceof QueryValidationException) {
+      return Response.Status.BAD_REQUEST.getStatusCode();
+    } else if (cause instanceof ConfigurationServiceException
+      && ((ConfigurationServiceException) cause).getStatusCode() == 401) {
+      return Response.Status.UNAUTHORIZED.getStatusCode();
+    } else if (cause instanceof CircuitBreakerOpenException) {
+      return Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+    } else if (cause instanceof RateLimitExceededException) {
+      return TOO_MANY_REQUESTS;
+    }
+    return Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+  }
+
+  /**
+   * @return a text/plain response with the status of the failure and its message
+   */
+  public static Response errorResponse(Throwable throwable) {
+    Throwable cause = UpstreamErrors.unwrap(throwable);
+    return textResponse(statusOf(cause), cause.getMessage());
+  }
+
+  /**
+   * Like {@link #errorResponse(Throwable)}, for lookups by id: unknown and
+   * malformed ids are both answered with 404 and the id.
+   */
+  public static Response errorResponse(Throwable throwable, String id) {
+    Throwable cause = UpstreamErrors.unwrap(throwable);
+    if (cause instanceof ResourceNotFoundException || cause instanceof ValidationException) {
+      return textResponse(Response.Status.NOT_FOUND.getStatusCode(), id);
+    }
+    return errorResponse(cause);
+  }
+
+  /**
+   * Wraps JSON written by {@link CodexJsonWriter} into a 200 response. RMB
+   * writes a {@link BinaryOutStream} as it is, so the bytes are neither
+   * decoded into a string nor encoded again.
+   */
+  public static Response jsonResponse(Buffer json) {
+    BinaryOutStream body = new BinaryOutStream();
+    body.setData(json.getBytes());
+    return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
+  }
+
+  /**
+   * Marks responses with data served from expired cache entries, see {@link StaleData}.
+   */
+  public static Response withStaleWarning(Response response, StaleData stale) {
+    if (!stale.isServed()) {
+      return response;
+    }
+    return Response.fromResponse(response).header(StaleData.WARNING_HEADER, StaleData.STALE_WARNING).build();
+  }
+
+  /**
+   * Ends a streamed response after a failure: with the status of the failure
+   * while nothing has been sent, by resetting it otherwise, so that a client
+   * can not take a cut off stream for a complete one.
+   */
+  public static void endWithError(HttpServerResponse response, Throwable throwable) {
+    if (response.ended() || response.closed()) {
+      return;
+    }
+    if (response.headWritten()) {
+      response.reset();
+      return;
+    }
+    Throwable cause = UpstreamErrors.unwrap(throwable);
+    response.setStatusCode(statusOf(cause))
+      .putHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+      .end(String.valueOf(cause.getMessage()));
+  }
+
+  private static Response textResponse(int status, String message) {
+    return Response.status(status).type(MediaType.TEXT_PLAIN_TYPE).entity(message).build();
+  }
+}
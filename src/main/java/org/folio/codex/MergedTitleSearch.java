@@ -0,0 +1,256 @@
+package org.folio.codex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.folio.cql2rmapi.TitleParameters;
+import org.folio.holdingsiq.model.Title;
+import org.folio.holdingsiq.model.Titles;
+
+/**
+ * Runs title searches side by side and merges their results.
+ * <p>
+ * Every search is sorted by title name, so the results are combined with a
+ * k-way merge in the same order and a title found by several searches is
+ * returned once. Such a title has the same name in every search, so only the
+ * ids of the titles with the current name are kept to recognize it. Titles
+ * before the requested window are counted, not kept. Pages of a search are only loaded when the merge reaches
+ * their end, and the pages needed at the same time are loaded in parallel.
+ * The merge stops as soon as the requested window is filled.
+ * <p>
+ * Every search is read in groups of titles with the same name, which are
+ * sorted by the secondary sort keys and the title id before they are merged.
+ * HoldingsIQ sorts by name with its own collation, which does not order names
+ * that differ only in case like the merge does, e.g. it may put "Zeta" before
+ * "alpha", or "apple" on the next page after "Apple". So every page is sorted
+ * again when it is loaded, and the group of titles with the last name of a
+ * page is held back until the next page is loaded, as the group may continue
+ * there. Only the current page of each search, plus the rest of a group that
+ * continues on the next pages, is held in memory.
+ */
+class MergedTitleSearch {
+  private final List<Cursor> cursors = new ArrayList<>();
+  private final PageLoader loader;
+  private final int pageSize;
+  private final Comparator<Title> order;
+  private final List<Title> window = new ArrayList<>();
+  // ids of the merged titles with the name of the last one
+  private final Set<Integer> groupIds = new HashSet<>();
+  private Title lastTitle;
+  private int distinct;
+  private int duplicates;
+
+  /**
+   * @param searches number of searches to merge
+   * @param pageSize number of titles loaded per page of a search
+   * @param loader   loads a page of a search, page numbers start with 1
+   */
+  MergedTitleSearch(int searches, int pageSize, PageLoader loader) {
+    this(searches, pageSize, Collections.emptyList(), loader);
+  }
+
+  /**
+   * @param secondarySortKeys sort keys applied to titles with the same name, see
+   *                          {@link TitleParameters#getSecondarySortKeys()}
+   */
+  MergedTitleSearch(int searches, int pageSize, List<String> secondarySortKeys, PageLoader loader) {
+    this.pageSize = pageSize;
+    this.loader = loader;
+    this.order = getTitleOrder(secondarySortKeys);
+    for (int i = 0; i < searches; i++) {
+      cursors.add(new Cursor(i));
+    }
+  }
+
+  /**
+   * Title name, case-insensitive, then the secondary sort keys and the title id.
+   */
+  static Comparator<Title> getTitleOrder(List<String> secondarySortKeys) {
+    Comparator<Title> result = Comparator.comparing(Title::getTitleName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+    for (String key : secondarySortKeys) {
+      if (TitleParameters.PUBLISHER.equals(key)) {
+        result = result.thenComparing(nullsLast(Title::getPublisherName));
+      } else if (TitleParameters.RESOURCE_TYPE.equals(key)) {
+        result = result.thenComparing(nullsLast(MergedTitleSearch::getResourceType));
+      } else {
+        throw new IllegalArgumentException("Unknown sort key: " + key);
+      }
+    }
+    return result.thenComparing(Title::getTitleId);
+  }
+
+  /**
+   * Merges the searches up to {@code offset + limit} distinct titles. The
+   * merge keeps its state in this object, so it is only run once.
+   *
+   * @return the titles in [offset, offset + limit) of the merged results
+   */
+  CompletableFuture<Result> merge(int offset, int limit) {
+    while (distinct < offset + limit) {
+      List<CompletableFuture<Void>> loads = new ArrayList<>();
+      for (Cursor cursor : cursors) {
+        if (cursor.needsPage()) {
+          loads.add(cursor.loadNextPage());
+        }
+      }
+      if (!loads.isEmpty()) {
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]))
+          .thenCompose(aVoid -> merge(offset, limit));
+      }
+
+      Cursor next = null;
+      for (Cursor cursor : cursors) {
+        if (cursor.hasNext() && (next == null || order.compare(cursor.peek(), next.peek()) < 0)) {
+          next = cursor;
+        }
+      }
+      if (next == null) {
+        break;
+      }
+      Title title = next.next();
+      if (isDuplicate(title)) {
+        duplicates++;
+      } else if (++distinct > offset) {
+        window.add(title);
+      }
+    }
+    return CompletableFuture.completedFuture(new Result(window, getTotalRecords()));
+  }
+
+  private boolean isDuplicate(Title title) {
+    if (lastTitle == null || !sameName(lastTitle, title)) {
+      groupIds.clear();
+    }
+    lastTitle = title;
+    return !groupIds.add(title.getTitleId());
+  }
+
+  private int getTotalRecords() {
+    int total = cursors.stream().mapToInt(cursor -> cursor.totalResults).sum() - duplicates;
+    return Math.max(total, distinct);
+  }
+
+  private static String getResourceType(Title title) {
+    try {
+      return PubType.fromRMAPI(title.getPubType()).getCodex().value();
+    } catch (IllegalArgumentException | NullPointerException e) {
+      return title.getPubType();
+    }
+  }
+
+  private static Comparator<Title> nullsLast(Function<Title, String> key) {
+    return Comparator.comparing(key, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+  }
+
+  private static boolean sameName(Title first, Title second) {
+    return first.getTitleName() == null
+      ? second.getTitleName() == null
+      : first.getTitleName().equalsIgnoreCase(second.getTitleName());
+  }
+
+  @FunctionalInterface
+  interface PageLoader {
+    CompletableFuture<Titles> load(int search, int page, int pageSize);
+  }
+
+  static final class Result {
+    private final List<Title> titles;
+    private final int totalRecords;
+
+    private Result(List<Title> titles, int totalRecords) {
+      this.titles = titles;
+      this.totalRecords = totalRecords;
+    }
+
+    List<Title> getTitles() {
+      return titles;
+    }
+
+    /**
+     * Estimated number of titles of the merged searches: the totals reported
+     * by the searches without the duplicates the merge has seen so far.
+     * Duplicates past the returned window are not known, so this is an upper
+     * bound.
+     */
+    int getTotalRecords() {
+      return totalRecords;
+    }
+  }
+
+  private final class Cursor {
+    private final int search;
+    private final List<Title> buffer = new ArrayList<>();
+    private int position;
+    // end of the sorted group of titles starting at or before position
+    private int groupEnd;
+    private int loadedPages;
+    private int loadedRecords;
+    private int totalResults;
+    private boolean exhausted;
+
+    private Cursor(int search) {
+      this.search = search;
+    }
+
+    private boolean needsPage() {
+      if (exhausted || position < groupEnd) {
+        return false;
+      }
+      if (position == buffer.size()) {
+        return true;
+      }
+      // the group of titles with the current name may continue on the next page
+      return sameName(buffer.get(position), buffer.get(buffer.size() - 1));
+    }
+
+    private CompletableFuture<Void> loadNextPage() {
+      return loader.load(search, loadedPages + 1, pageSize)
+        .thenAccept(titles -> {
+          List<Title> titleList = new ArrayList<>();
+          if (titles.getTitleList() != null) {
+            titleList.addAll(titles.getTitleList());
+          }
+          // HoldingsIQ does not collate names like the merge does, e.g. it may put "Zeta" before "alpha"
+          titleList.sort(order);
+          loadedPages++;
+          loadedRecords += titleList.size();
+          totalResults = titles.getTotalResults();
+          buffer.subList(0, position).clear();
+          groupEnd = Math.max(0, groupEnd - position);
+          position = 0;
+          buffer.addAll(titleList);
+          exhausted = titleList.size() < pageSize || loadedRecords >= totalResults;
+        });
+    }
+
+    private boolean hasNext() {
+      if (position >= groupEnd && position < buffer.size()) {
+        startGroup();
+      }
+      return position < buffer.size();
+    }
+
+    private void startGroup() {
+      int end = position + 1;
+      while (end < buffer.size() && sameName(buffer.get(position), buffer.get(end))) {
+        end++;
+      }
+      buffer.subList(position, end).sort(order);
+      groupEnd = end;
+    }
+
+    private Title peek() {
+      return buffer.get(position);
+    }
+
+    private Title next() {
+      return buffer.get(position++);
+    }
+  }
+}
@@ -3,13 +3,32 @@ package org.folio.codex;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import io.vertx.core.Context;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
 
+import org.folio.codex.cache.PackagesPageKey;
+import org.folio.codex.cache.SearchPageCache;
+import org.folio.codex.cache.StaleData;
+import org.folio.codex.cache.TenantCache;
+import org.folio.codex.cache.TitlesPageKey;
+import org.folio.codex.client.HedgedRequests;
+import org.folio.codex.client.HoldingsIQCircuitBreaker;
+import org.folio.codex.client.HoldingsIQConcurrencyLimiter;
+import org.folio.codex.client.HoldingsIQConcurrencyLimiter.CallClass;
+import org.folio.codex.client.HoldingsIQRateLimiter;
+import org.folio.codex.client.HoldingsIQRateLimiter.Traffic;
+import org.folio.codex.client.HoldingsIQServiceRegistry;
+import org.folio.codex.client.InFlightRequests;
+import org.folio.codex.client.PrefetchScheduler;
+import org.folio.codex.client.UpstreamErrors;
 import org.folio.converter.hld2cdx.ContributorConverter;
 import org.folio.converter.hld2cdx.CoverageConverter;
 import org.folio.converter.hld2cdx.IdentifierConverter;
@@ -19,6 +38,7 @@ import org.folio.converter.hld2cdx.TitleConverter;
 import org.folio.cql2rmapi.PackageParameters;
 import org.folio.cql2rmapi.TitleParameters;
 import org.folio.cql2rmapi.query.Page;
+import org.folio.cql2rmapi.query.PaginationCalculator;
 import org.folio.cql2rmapi.query.PaginationInfo;
 import org.folio.holdingsiq.model.Configuration;
 import org.folio.holdingsiq.model.PackageData;
@@ -26,10 +46,7 @@ import org.folio.holdingsiq.model.PackageId;
 import org.folio.holdingsiq.model.Packages;
 import org.folio.holdingsiq.model.Title;
 import org.folio.holdingsiq.model.Titles;
-import org.folio.holdingsiq.service.PackagesHoldingsIQService;
-import org.folio.holdingsiq.service.TitlesHoldingsIQService;
-import org.folio.holdingsiq.service.impl.PackagesHoldingsIQServiceImpl;
-import org.folio.holdingsiq.service.impl.TitlesHoldingsIQServiceImpl;
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
 import org.folio.rest.jaxrs.model.Instance;
 import org.folio.rest.jaxrs.model.InstanceCollection;
 import org.folio.rest.jaxrs.model.Package;
@@ -40,7 +57,8 @@ import org.folio.rest.jaxrs.model.ResultInfo;
  * @author mreno
  *
  */
-public final class RMAPIToCodex {
+@Component
+public class RMAPIToCodex {
   private static final Logger log = LogManager.getLogger(RMAPIToCodex.class);
 
   private static final String TITLE_SEARCH_TYPE = "contains";
@@ -49,37 +67,133 @@ public final class RMAPIToCodex {
     new IdentifierConverter(), new ContributorConverter(), new SubjectConverter());
   private static final Converter<PackageData, Package> PACKAGE_CONVERTER = new PackageConverter(new CoverageConverter());
 
-  private RMAPIToCodex() {
-    super();
+  private final InFlightRequests<Long, Instance> titleRequests = new InFlightRequests<>("titleRequests");
+  private final InFlightRequests<PackageId, Package> packageRequests = new InFlightRequests<>("packageRequests");
+  private final InFlightRequests<TitlesPageKey, Titles> titlesPageRequests =
+    new InFlightRequests<>("titlesPageRequests");
+  private final InFlightRequests<PackagesPageKey, Packages> packagesPageRequests =
+    new InFlightRequests<>("packagesPageRequests");
+
+  @Autowired
+  private HoldingsIQServiceRegistry serviceRegistry;
+  @Autowired
+  private TenantCache<Long, Instance> titleCache;
+  @Autowired
+  private TenantCache<PackageId, Package> packageCache;
+  @Autowired
+  private TenantCache<Long, ResourceNotFoundException> titleNotFoundCache;
+  @Autowired
+  private TenantCache<PackageId, ResourceNotFoundException> packageNotFoundCache;
+  @Autowired
+  private SearchPageCache<TitlesPageKey, Titles> titlesPageCache;
+  @Autowired
+  private SearchPageCache<PackagesPageKey, Packages> packagesPageCache;
+  @Autowired
+  private PaginationCalculator paginationCalculator;
+  @Autowired
+  private PrefetchScheduler prefetchScheduler;
+  @Autowired
+  private HoldingsIQCircuitBreaker circuitBreaker;
+  @Autowired
+  private HedgedRequests hedgedRequests;
+  @Autowired
+  private HoldingsIQRateLimiter rateLimiter;
+  @Autowired
+  private HoldingsIQConcurrencyLimiter concurrencyLimiter;
+
+  /**
+   * Drops everything held for the given RM API configuration: the HoldingsIQ
+   * services and all cached titles, packages and search pages.
+   */
+  public void invalidate(Configuration rmAPIConfig) {
+    serviceRegistry.invalidate(rmAPIConfig);
+    titleCache.invalidate(rmAPIConfig);
+    packageCache.invalidate(rmAPIConfig);
+    titleNotFoundCache.invalidate(rmAPIConfig);
+    packageNotFoundCache.invalidate(rmAPIConfig);
+    titlesPageCache.invalidate(rmAPIConfig);
+    packagesPageCache.invalidate(rmAPIConfig);
+  }
+
+  public CompletableFuture<Instance> getInstance(Configuration rmAPIConfig, long id, StaleData stale) {
+    return getInstance(rmAPIConfig, id, stale, Traffic.INTERACTIVE);
   }
 
-  public static CompletableFuture<Instance> getInstance(Context vertxContext, Configuration rmAPIConfig, long id) {
+  /**
+   * @param stale   marked when HoldingsIQ fails and an expired copy of the title is returned
+   * @param traffic the rate limiter capacity the lookup is taken from
+   */
+  public CompletableFuture<Instance> getInstance(Configuration rmAPIConfig, long id, StaleData stale, Traffic traffic) {
     log.info("Calling getInstance");
 
-    TitlesHoldingsIQService titlesService = new TitlesHoldingsIQServiceImpl(rmAPIConfig, vertxContext.owner());
+    Instance cachedInstance = titleCache.getValue(rmAPIConfig, id);
+    if (cachedInstance != null) {
+      log.debug("Title {} served from {}", id, titleCache);
+      return CompletableFuture.completedFuture(cachedInstance);
+    }
+    ResourceNotFoundException notFound = titleNotFoundCache.getValue(rmAPIConfig, id);
+    if (notFound != null) {
+      log.debug("Title {} is known to be missing, served from {}", id, titleNotFoundCache);
+      return CompletableFuture.failedFuture(notFound);
+    }
+
+    CompletableFuture<Instance> lookup = titleRequests.execute(rmAPIConfig, id, () -> hedgedRequests
+      .execute(rmAPIConfig, "title",
+        call -> callHoldingsIQ(rmAPIConfig, traffic, CallClass.LOOKUP, call),
+        () -> serviceRegistry.withTitlesService(rmAPIConfig, service -> service.retrieveTitle(id)))
+      .whenComplete((title, throwable) -> rememberNotFound(titleNotFoundCache, rmAPIConfig, id, throwable))
+      .thenApply(TITLE_CONVERTER::convert)
+      .thenApply(instance -> {
+        titleCache.putValue(rmAPIConfig, id, instance);
+        return instance;
+      }));
+    return serveStaleOnError(lookup, titleCache, rmAPIConfig, id, stale);
+  }
 
-    return titlesService.retrieveTitle(id)
-            .thenApply(TITLE_CONVERTER::convert);
+  public CompletableFuture<Package> getPackage(Configuration rmAPIConfig, PackageId id, StaleData stale) {
+    return getPackage(rmAPIConfig, id, stale, Traffic.INTERACTIVE);
   }
 
-  public static CompletableFuture<Package> getPackage(Context vertxContext, Configuration rmAPIConfig, PackageId id) {
+  /**
+   * @param stale   marked when HoldingsIQ fails and an expired copy of the package is returned
+   * @param traffic the rate limiter capacity the lookup is taken from
+   */
+  public CompletableFuture<Package> getPackage(Configuration rmAPIConfig, PackageId id, StaleData stale,
+                                               Traffic traffic) {
     log.info("Calling getPackage");
 
-    PackagesHoldingsIQService service = new PackagesHoldingsIQServiceImpl(rmAPIConfig, vertxContext.owner());
+    Package cachedPackage = packageCache.getValue(rmAPIConfig, id);
+    if (cachedPackage != null) {
+      log.debug("Package {} served from {}", id, packageCache);
+      return CompletableFuture.completedFuture(cachedPackage);
+    }
+    ResourceNotFoundException notFound = packageNotFoundCache.getValue(rmAPIConfig, id);
+    if (notFound != null) {
+      log.debug("Package {} is known to be missing, served from {}", id, packageNotFoundCache);
+      return CompletableFuture.failedFuture(notFound);
+    }
 
-    return service.retrievePackage(id)
-            .thenApply(PACKAGE_CONVERTER::convert);
+    CompletableFuture<Package> lookup = packageRequests.execute(rmAPIConfig, id, () -> hedgedRequests
+      .execute(rmAPIConfig, "package",
+        call -> callHoldingsIQ(rmAPIConfig, traffic, CallClass.LOOKUP, call),
+        () -> serviceRegistry.withPackagesService(rmAPIConfig, service -> service.retrievePackage(id)))
+      .whenComplete((packageData, throwable) -> rememberNotFound(packageNotFoundCache, rmAPIConfig, id, throwable))
+      .thenApply(PACKAGE_CONVERTER::convert)
+      .thenApply(packageObject -> {
+        packageCache.putValue(rmAPIConfig, id, packageObject);
+        return packageObject;
+      }));
+    return serveStaleOnError(lookup, packageCache, rmAPIConfig, id, stale);
   }
 
-  public static CompletableFuture<InstanceCollection> getInstances(TitleParameters parameters, PaginationInfo pagination, Context vertxContext,
-                                                                   Configuration rmAPIConfig) {
+  public CompletableFuture<InstanceCollection> getInstances(TitleParameters parameters, PaginationInfo pagination,
+                                                            Configuration rmAPIConfig, StaleData stale) {
     log.info("Calling getInstances");
 
     final List<CompletableFuture<Titles>> titleCfs = new ArrayList<>();
 
     for (Page page : pagination.getPages()) {
-      titleCfs.add(new TitlesHoldingsIQServiceImpl(rmAPIConfig, vertxContext.owner())
-        .retrieveTitles(parameters.getFilterQuery(), TITLE_SEARCH_TYPE, parameters.getSortType(), page.getOffset(), page.getLimit()));
+      titleCfs.add(retrieveTitles(parameters, page, rmAPIConfig, stale));
     }
 
     return CompletableFuture
@@ -87,40 +201,124 @@ public final class RMAPIToCodex {
       .thenCompose(aVoid -> {
         final List<Titles> collect = titleCfs.stream().map(CompletableFuture::join).collect(Collectors.toList());
         return convertRMTitleListToCodex(collect, pagination.getFirstObjectIndex(), pagination.getLimit());
+      })
+      .whenComplete((instances, throwable) -> {
+        if (throwable == null) {
+          prefetchNextTitles(parameters, pagination, instances.getResultInfo().getTotalRecords(), rmAPIConfig);
+        }
       });
   }
 
+  /**
+   * Searches titles with the searches of an OR query, or with a single search
+   * sorted by more than title, see {@link MergedTitleSearch}. The searches
+   * share their sort keys. The total number of records is an estimate, titles
+   * found by several searches are only subtracted once the merge has reached them.
+   */
+  public CompletableFuture<InstanceCollection> getInstances(List<TitleParameters> alternatives, int offset, int limit,
+                                                            Configuration rmAPIConfig, StaleData stale) {
+    log.info("Calling getInstances for {} searches", alternatives.size());
 
-  private static CompletableFuture<InstanceCollection> convertRMTitleListToCodex(List<Titles> titles, int index, int limit) {
-    final InstanceCollection instanceCollection = new InstanceCollection();
-      List<Instance> instances = new ArrayList<>();
-      int totalResults = 0;
-
-      for (Titles title : titles) {
-        totalResults = Math.max(totalResults, title.getTotalResults());
-        instances.addAll(title.getTitleList().stream()
-            .map(TITLE_CONVERTER::convert)
-            .collect(Collectors.toList()));
-      }
+    // the merge reads every search from its start, its pages are planned like a window from 0
+    int pageSize = paginationCalculator.getPagination(0, offset + limit).getPages().get(0).getLimit();
+    return new MergedTitleSearch(alternatives.size(), pageSize, alternatives.get(0).getSecondarySortKeys(),
+        (search, page, count) -> retrieveTitles(alternatives.get(search), new Page(page, count), rmAPIConfig, stale))
+      .merge(offset, limit)
+      .thenApply(result -> new InstanceCollection()
+        .withInstances(result.getTitles().stream().map(TITLE_CONVERTER::convert).collect(Collectors.toList()))
+        .withResultInfo(new ResultInfo().withTotalRecords(result.getTotalRecords())));
+  }
+
+  private void prefetchNextTitles(TitleParameters parameters, PaginationInfo pagination, int totalRecords,
+                                  Configuration rmAPIConfig) {
+    if (!prefetchScheduler.isEnabled()) {
+      return;
+    }
+    int nextOffset = pagination.getOffset() + pagination.getLimit();
+    if (nextOffset >= totalRecords) {
+      return;
+    }
+    for (Page page : paginationCalculator.getPagination(nextOffset, pagination.getLimit()).getPages()) {
+      prefetchScheduler.submit(rmAPIConfig, () -> retrieveTitles(parameters, page, rmAPIConfig, Traffic.PREFETCH));
+    }
+  }
+
+  /**
+   * Loads one page of a title search for an export. Export pages bypass the
+   * search page cache, they are read once and would only evict pages of
+   * interactive searches. The titles are not converted, the export writes
+   * them as Codex JSON directly.
+   */
+  public CompletableFuture<List<Title>> getTitlesPage(TitleParameters parameters, int page, int count,
+                                                      Configuration rmAPIConfig) {
+    return callHoldingsIQ(rmAPIConfig, Traffic.BULK, CallClass.EXPORT_PAGE,
+        () -> serviceRegistry.withTitlesService(rmAPIConfig, service -> service
+          .retrieveTitles(parameters.getFilterQuery(), TITLE_SEARCH_TYPE, parameters.getSortType(), page, count)))
+      .thenApply(Titles::getTitleList);
+  }
 
-    instances = getSublist(index, limit, instances);
+  private CompletableFuture<Titles> retrieveTitles(TitleParameters parameters, Page page, Configuration rmAPIConfig,
+                                                   StaleData stale) {
+    TitlesPageKey key = getTitlesPageKey(parameters, page);
+    return serveStaleOnError(retrieveTitles(key, parameters, page, rmAPIConfig, Traffic.BULK), titlesPageCache,
+      rmAPIConfig, key, stale);
+  }
 
-    instanceCollection.setInstances(instances);
-      instanceCollection.setResultInfo(new ResultInfo().withTotalRecords(totalResults));
+  private CompletableFuture<Titles> retrieveTitles(TitleParameters parameters, Page page, Configuration rmAPIConfig,
+                                                   Traffic traffic) {
+    return retrieveTitles(getTitlesPageKey(parameters, page), parameters, page, rmAPIConfig, traffic);
+  }
 
-      return CompletableFuture.completedFuture(instanceCollection);
+  private static TitlesPageKey getTitlesPageKey(TitleParameters parameters, Page page) {
+    return new TitlesPageKey(parameters.getFilterQuery(), parameters.getSortType(), page);
   }
 
-  public static CompletableFuture<PackageCollection> getPackages(PackageParameters parameters, PaginationInfo pagination,
-                                                                 Context vertxContext, Configuration rmAPIConfig) {
+  private CompletableFuture<Titles> retrieveTitles(TitlesPageKey key, TitleParameters parameters, Page page,
+                                                   Configuration rmAPIConfig, Traffic traffic) {
+    Titles cachedTitles = titlesPageCache.getValue(rmAPIConfig, key);
+    if (cachedTitles != null) {
+      log.debug("{} served from {}", key, titlesPageCache);
+      return CompletableFuture.completedFuture(cachedTitles);
+    }
+
+    return titlesPageRequests.execute(rmAPIConfig, key, () -> callHoldingsIQ(rmAPIConfig, traffic,
+        CallClass.SEARCH_PAGE, () -> serviceRegistry.withTitlesService(rmAPIConfig, service -> service
+          .retrieveTitles(parameters.getFilterQuery(), TITLE_SEARCH_TYPE, parameters.getSortType(), page.getOffset(),
+            page.getLimit())))
+      .thenApply(titles -> {
+        titlesPageCache.putValue(rmAPIConfig, key, titles);
+        return titles;
+      }));
+  }
+
+  private static CompletableFuture<InstanceCollection> convertRMTitleListToCodex(List<Titles> titles, int index, int limit) {
+    int totalResults = titles.stream()
+      .mapToInt(Titles::getTotalResults)
+      .max()
+      .orElse(0);
+
+    // only the records inside the requested window are converted, the rest of the fetched pages is skipped
+    List<Instance> instances = titles.stream()
+      .flatMap(title -> title.getTitleList().stream())
+      .skip(index)
+      .limit(limit)
+      .map(TITLE_CONVERTER::convert)
+      .collect(Collectors.toList());
+
+    final InstanceCollection instanceCollection = new InstanceCollection()
+      .withInstances(instances)
+      .withResultInfo(new ResultInfo().withTotalRecords(totalResults));
+    return CompletableFuture.completedFuture(instanceCollection);
+  }
+
+  public CompletableFuture<PackageCollection> getPackages(PackageParameters parameters, PaginationInfo pagination,
+                                                          Configuration rmAPIConfig, StaleData stale) {
     log.info("Calling getPackages");
 
     final List<CompletableFuture<Packages>> futures = new ArrayList<>();
 
     for (Page page : pagination.getPages()) {
-      futures.add(new PackagesHoldingsIQServiceImpl(rmAPIConfig, vertxContext.owner())
-        .retrievePackages(parameters.getSelection(), parameters.getFilterType(), PACKAGE_SEARCH_TYPE, null,
-          parameters.getSearchValue(), page.getOffset(), page.getLimit(), parameters.getSortType()));
+      futures.add(retrievePackages(parameters, page, rmAPIConfig, stale));
     }
 
     return CompletableFuture
@@ -128,9 +326,78 @@ public final class RMAPIToCodex {
       .thenCompose(aVoid -> {
         final List<Packages> collect = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
         return convertRMPackageListToCodex(collect, pagination.getFirstObjectIndex(), pagination.getLimit());
+      })
+      .whenComplete((packages, throwable) -> {
+        if (throwable == null) {
+          prefetchNextPackages(parameters, pagination, packages.getResultInfo().getTotalRecords(), rmAPIConfig);
+        }
       });
   }
 
+  private void prefetchNextPackages(PackageParameters parameters, PaginationInfo pagination, int totalRecords,
+                                    Configuration rmAPIConfig) {
+    if (!prefetchScheduler.isEnabled()) {
+      return;
+    }
+    int nextOffset = pagination.getOffset() + pagination.getLimit();
+    if (nextOffset >= totalRecords) {
+      return;
+    }
+    for (Page page : paginationCalculator.getPagination(nextOffset, pagination.getLimit()).getPages()) {
+      prefetchScheduler.submit(rmAPIConfig, () -> retrievePackages(parameters, page, rmAPIConfig, Traffic.PREFETCH));
+    }
+  }
+
+  /**
+   * Loads one page of a package search for an export, bypassing the search
+   * page cache like {@link #getTitlesPage}.
+   */
+  public CompletableFuture<List<Package>> getPackagesPage(PackageParameters parameters, int page, int count,
+                                                          Configuration rmAPIConfig) {
+    return callHoldingsIQ(rmAPIConfig, Traffic.BULK, CallClass.EXPORT_PAGE,
+        () -> serviceRegistry.withPackagesService(rmAPIConfig, service -> service
+          .retrievePackages(parameters.getSelection(), parameters.getFilterType(), PACKAGE_SEARCH_TYPE, null,
+            parameters.getSearchValue(), page, count, parameters.getSortType())))
+      .thenApply(packages -> packages.getPackagesList().stream()
+        .map(PACKAGE_CONVERTER::convert)
+        .collect(Collectors.toList()));
+  }
+
+  private CompletableFuture<Packages> retrievePackages(PackageParameters parameters, Page page,
+                                                       Configuration rmAPIConfig, StaleData stale) {
+    PackagesPageKey key = getPackagesPageKey(parameters, page);
+    return serveStaleOnError(retrievePackages(key, parameters, page, rmAPIConfig, Traffic.BULK), packagesPageCache,
+      rmAPIConfig, key, stale);
+  }
+
+  private CompletableFuture<Packages> retrievePackages(PackageParameters parameters, Page page,
+                                                       Configuration rmAPIConfig, Traffic traffic) {
+    return retrievePackages(getPackagesPageKey(parameters, page), parameters, page, rmAPIConfig, traffic);
+  }
+
+  private static PackagesPageKey getPackagesPageKey(PackageParameters parameters, Page page) {
+    return new PackagesPageKey(parameters.getSelection(), parameters.getFilterType(),
+      parameters.getSearchValue(), parameters.getSortType(), page);
+  }
+
+  private CompletableFuture<Packages> retrievePackages(PackagesPageKey key, PackageParameters parameters, Page page,
+                                                       Configuration rmAPIConfig, Traffic traffic) {
+    Packages cachedPackages = packagesPageCache.getValue(rmAPIConfig, key);
+    if (cachedPackages != null) {
+      log.debug("{} served from {}", key, packagesPageCache);
+      return CompletableFuture.completedFuture(cachedPackages);
+    }
+
+    return packagesPageRequests.execute(rmAPIConfig, key, () -> callHoldingsIQ(rmAPIConfig, traffic,
+        CallClass.SEARCH_PAGE, () -> serviceRegistry.withPackagesService(rmAPIConfig, service -> service
+          .retrievePackages(parameters.getSelection(), parameters.getFilterType(), PACKAGE_SEARCH_TYPE, null,
+            parameters.getSearchValue(), page.getOffset(), page.getLimit(), parameters.getSortType())))
+      .thenApply(packages -> {
+        packagesPageCache.putValue(rmAPIConfig, key, packages);
+        return packages;
+      }));
+  }
+
   private static CompletableFuture<PackageCollection> convertRMPackageListToCodex(List<Packages> packagesList, int index, int limit) {
     int totalResults = packagesList.stream()
       .mapToInt(Packages::getTotalResults)
@@ -138,19 +405,58 @@ public final class RMAPIToCodex {
 
     List<Package> packages = packagesList.stream()
       .flatMap(packagesObject -> packagesObject.getPackagesList().stream())
+      .skip(index)
+      .limit(limit)
       .map(PACKAGE_CONVERTER::convert)
       .collect(Collectors.toList());
 
     final PackageCollection packageCollection = new PackageCollection()
-      .withPackages(getSublist(index, limit, packages))
+      .withPackages(packages)
       .withResultInfo(new ResultInfo().withTotalRecords(totalResults));
     return CompletableFuture.completedFuture(packageCollection);
   }
 
-  private static <T> List<T> getSublist(int firstIndex, int amount, List<T> list) {
-    int start = Math.min(firstIndex, list.size());
-    int end = Math.min(firstIndex + amount, list.size());
-    list = list.subList(start, end);
-    return list;
+  /**
+   * Falls back to the expired copy of the cache entry when HoldingsIQ fails,
+   * marking the response as stale. Other errors, like not found, are passed on.
+   */
+  private static <K, V> CompletableFuture<V> serveStaleOnError(CompletableFuture<V> future, TenantCache<K, V> cache,
+                                                               Configuration rmAPIConfig, K key, StaleData stale) {
+    return future.handle((value, throwable) -> {
+      if (throwable == null) {
+        return CompletableFuture.completedFuture(value);
+      }
+      V staleValue = UpstreamErrors.isUpstreamFailure(throwable) ? cache.getStaleValue(rmAPIConfig, key) : null;
+      if (staleValue == null) {
+        return CompletableFuture.<V>failedFuture(throwable);
+      }
+      log.warn("HoldingsIQ failed, {} served stale from {}", key, cache, throwable);
+      stale.markServed();
+      return CompletableFuture.completedFuture(staleValue);
+    }).thenCompose(Function.identity());
+  }
+
+  /**
+   * Every call to HoldingsIQ goes through here, so that the guards around the
+   * upstream apply to all of them.
+   */
+  private <T> CompletableFuture<T> callHoldingsIQ(Configuration rmAPIConfig, Traffic traffic, CallClass callClass,
+                                                  Supplier<CompletableFuture<T>> call) {
+    return rateLimiter.execute(rmAPIConfig, traffic,
+      () -> concurrencyLimiter.execute(callClass, () -> circuitBreaker.execute(rmAPIConfig, call)));
+  }
+
+  @Override
+  public String toString() {
+    return "rmapiToCodex{" + titleRequests + ", " + packageRequests + ", " + titlesPageRequests + ", "
+      + packagesPageRequests + "}";
+  }
+
+  private static <K> void rememberNotFound(TenantCache<K, ResourceNotFoundException> notFoundCache,
+                                           Configuration rmAPIConfig, K id, Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+    if (cause instanceof ResourceNotFoundException) {
+      notFoundCache.putValue(rmAPIConfig, id, (ResourceNotFoundException) cause);
+    }
   }
 }
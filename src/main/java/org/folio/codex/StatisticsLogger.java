@@ -0,0 +1,43 @@
+package org.folio.codex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Vertx;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Logs the counters of the caches and of the guards around HoldingsIQ at a
+ * fixed interval, one line per component, e.g. the hit rates of the caches,
+ * the calls joined to one in flight, the state and failure rate of the
+ * circuits, the hedge win rate and the concurrency limit with its queue.
+ */
+public class StatisticsLogger {
+  private static final Logger log = LogManager.getLogger(StatisticsLogger.class);
+
+  private final List<Object> components;
+
+  /**
+   * @param components objects whose {@code toString()} holds their counters
+   */
+  public StatisticsLogger(List<?> components) {
+    this.components = new ArrayList<>(components);
+  }
+
+  /**
+   * @param interval time in seconds between two rounds of log lines, 0 to not log
+   */
+  public void start(Vertx vertx, long interval) {
+    if (interval > 0) {
+      vertx.setPeriodic(TimeUnit.SECONDS.toMillis(interval), timerId -> logStatistics());
+    }
+  }
+
+  void logStatistics() {
+    for (Object component : components) {
+      log.info("Statistics: {}", component);
+    }
+  }
+}
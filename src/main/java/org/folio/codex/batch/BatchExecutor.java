@@ -0,0 +1,119 @@
+package org.folio.codex.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Applies an asynchronous task to every item of a batch while keeping at most
+ * {@code concurrency} tasks in flight.
+ * <p>
+ * Every distinct item is run once: results are returned in the order in
+ * which the items first occur, repeated items get no result of their own.
+ * A failed task fails its slot only: the failure is passed to the
+ * {@code recover} function of {@link #execute(List, Function, BatchRecovery)}
+ * and the rest of the batch keeps going.
+ */
+public class BatchExecutor {
+
+  private final int concurrency;
+  private final int maxItems;
+
+  public BatchExecutor(int concurrency, int maxItems) {
+    this.concurrency = Math.max(concurrency, 1);
+    this.maxItems = maxItems;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public int getMaxItems() {
+    return maxItems;
+  }
+
+  public <T, R> CompletableFuture<List<R>> execute(List<T> items, Function<T, CompletableFuture<R>> task,
+                                                   BatchRecovery<T, R> recover) {
+    return new Run<>(items, task, recover).start();
+  }
+
+  @FunctionalInterface
+  public interface BatchRecovery<T, R> {
+    R recover(T item, Throwable throwable);
+  }
+
+  private final class Run<T, R> {
+    private final List<T> items;
+    private final Function<T, CompletableFuture<R>> task;
+    private final BatchRecovery<T, R> recover;
+    private final Object[] results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+
+    private Run(List<T> items, Function<T, CompletableFuture<R>> task, BatchRecovery<T, R> recover) {
+      this.items = new ArrayList<>(new LinkedHashSet<>(items));
+      this.task = task;
+      this.recover = recover;
+      this.results = new Object[this.items.size()];
+    }
+
+    private CompletableFuture<List<R>> start() {
+      if (items.isEmpty()) {
+        result.complete(new ArrayList<>());
+        return result;
+      }
+      int workers = Math.min(concurrency, items.size());
+      for (int i = 0; i < workers; i++) {
+        runNext();
+      }
+      return result;
+    }
+
+    /**
+     * Runs tasks until one of them has to wait. Tasks that complete right away
+     * (e.g. cache hits) are handled in the loop instead of in a callback, so a
+     * long run of them does not grow the stack.
+     */
+    private void runNext() {
+      int index;
+      while ((index = next.getAndIncrement()) < items.size()) {
+        final int current = index;
+        CompletableFuture<R> future = startTask(items.get(current));
+        if (!future.isDone()) {
+          future.whenComplete((value, throwable) -> {
+            complete(current, value, throwable);
+            runNext();
+          });
+          return;
+        }
+        future.whenComplete((value, throwable) -> complete(current, value, throwable));
+      }
+    }
+
+    private CompletableFuture<R> startTask(T item) {
+      try {
+        return task.apply(item);
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(int index, R value, Throwable throwable) {
+      try {
+        results[index] = throwable == null ? value : recover.recover(items.get(index), throwable);
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+        return;
+      }
+      if (completed.incrementAndGet() == results.length) {
+        result.complete(new ArrayList<>((List<R>) Arrays.asList(results)));
+      }
+    }
+  }
+}
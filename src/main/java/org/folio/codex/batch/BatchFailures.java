@@ -0,0 +1,45 @@
+package org.folio.codex.batch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.folio.codex.CodexResponses;
+import org.folio.codex.client.UpstreamErrors;
+import org.folio.rest.jaxrs.model.Diagnostic;
+
+/**
+ * Collects the ids of a batch lookup that could not be returned, together
+ * with the reason, and reports them as result info diagnostics. The code of
+ * a diagnostic is the status the failure would get as a single lookup, see
+ * {@link CodexResponses#statusOf(Throwable)}.
+ */
+public class BatchFailures {
+
+  private final Map<String, Diagnostic> failures = new ConcurrentHashMap<>();
+
+  /**
+   * Records a failed id, always returns {@code null} so that it can be used as
+   * the recovery of {@link BatchExecutor#execute}.
+   */
+  public <R> R add(String id, Throwable throwable) {
+    Throwable cause = UpstreamErrors.unwrap(throwable);
+    failures.put(id, new Diagnostic()
+      .withCode(String.valueOf(CodexResponses.statusOf(cause)))
+      .withMessage(cause.getMessage())
+      .withQuery(id));
+    return null;
+  }
+
+  /**
+   * @return one diagnostic per failed id, in the order of the requested ids
+   */
+  public List<Diagnostic> toDiagnostics(List<String> ids) {
+    return ids.stream().distinct()
+      .map(failures::get)
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList());
+  }
+}
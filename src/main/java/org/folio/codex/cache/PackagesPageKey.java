@@ -0,0 +1,55 @@
+package org.folio.codex.cache;
+
+import java.util.Objects;
+
+import org.folio.cql2rmapi.query.Page;
+import org.folio.holdingsiq.model.Sort;
+
+/**
+ * Identifies one upstream page of a package search.
+ */
+public final class PackagesPageKey {
+  private final String selection;
+  private final String filterType;
+  private final String searchValue;
+  private final Sort sort;
+  private final int offset;
+  private final int limit;
+
+  public PackagesPageKey(String selection, String filterType, String searchValue, Sort sort, Page page) {
+    this.selection = selection;
+    this.filterType = filterType;
+    this.searchValue = searchValue;
+    this.sort = sort;
+    this.offset = page.getOffset();
+    this.limit = page.getLimit();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PackagesPageKey that = (PackagesPageKey) o;
+    return offset == that.offset
+      && limit == that.limit
+      && sort == that.sort
+      && Objects.equals(selection, that.selection)
+      && Objects.equals(filterType, that.filterType)
+      && Objects.equals(searchValue, that.searchValue);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(selection, filterType, searchValue, sort, offset, limit);
+  }
+
+  @Override
+  public String toString() {
+    return "PackagesPageKey{selection='" + selection + "', filterType='" + filterType + "', searchValue='" + searchValue
+      + "', sort=" + sort + ", offset=" + offset + ", limit=" + limit + '}';
+  }
+}
@@ -0,0 +1,167 @@
+package org.folio.codex.cache;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.folio.codex.client.HoldingsIQClientKey;
+import org.folio.holdingsiq.model.Configuration;
+import org.folio.holdingsiq.model.OkapiData;
+import org.folio.holdingsiq.service.ConfigurationService;
+
+/**
+ * Caches the RM API configuration of each tenant and refreshes it ahead of expiry.
+ * <p>
+ * Once an entry is older than the refresh time, the next request triggers a
+ * reload in the background and is answered with the current value, so busy
+ * tenants never wait for mod-configuration. Only entries older than the
+ * expiration time are reloaded in the foreground. At most one reload per key
+ * runs at a time; concurrent requests share it.
+ * <p>
+ * Entries are keyed on the tenant, the configuration is the same for all its
+ * users; a reload is made with the Okapi data of the request that triggers
+ * it. Entries that have not been used for the expiration time are dropped and
+ * the number of entries is bounded.
+ * <p>
+ * Listeners registered with {@link #addChangeListener(Consumer)} receive the
+ * previous configuration when a reload returns different HoldingsIQ
+ * credentials for a tenant, and no other cached tenant uses the previous
+ * ones, so that state built for the old credentials can be dropped.
+ */
+public class RefreshAheadConfigurationCache {
+  private static final Logger log = LogManager.getLogger(RefreshAheadConfigurationCache.class);
+
+  private final ConfigurationService configurationService;
+  private final long expirationTime;
+  private final long refreshTime;
+  private final Ticker ticker;
+  private final Cache<String, CachedConfiguration> configurations;
+  private final ConcurrentMap<String, CompletableFuture<Configuration>> reloads = new ConcurrentHashMap<>();
+  private final List<Consumer<Configuration>> changeListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param configurationService service that loads the configuration
+   * @param expirationTime       time in seconds after which an entry is no longer served
+   * @param refreshTime          time in seconds after which an entry is reloaded in the background
+   * @param maxSize              maximum number of entries
+   */
+  public RefreshAheadConfigurationCache(ConfigurationService configurationService, long expirationTime, long refreshTime,
+                                        long maxSize) {
+    this(configurationService, expirationTime, refreshTime, maxSize, Ticker.systemTicker());
+  }
+
+  RefreshAheadConfigurationCache(ConfigurationService configurationService, long expirationTime, long refreshTime,
+                                 long maxSize, Ticker ticker) {
+    this.configurationService = configurationService;
+    this.expirationTime = TimeUnit.SECONDS.toNanos(expirationTime);
+    this.refreshTime = TimeUnit.SECONDS.toNanos(Math.min(refreshTime, expirationTime));
+    this.ticker = ticker;
+    this.configurations = CacheBuilder.newBuilder()
+      .expireAfterAccess(expirationTime, TimeUnit.SECONDS)
+      .maximumSize(maxSize)
+      .ticker(ticker)
+      .build();
+  }
+
+  public CompletableFuture<Configuration> retrieveConfiguration(OkapiData okapiData) {
+    String key = okapiData.getTenant();
+    CachedConfiguration cached = configurations.getIfPresent(key);
+    long age = cached != null ? ticker.read() - cached.loadTime : Long.MAX_VALUE;
+
+    if (age < refreshTime) {
+      return CompletableFuture.completedFuture(cached.configuration);
+    }
+    if (age < expirationTime) {
+      reload(key, okapiData).exceptionally(throwable -> {
+        log.warn("Background refresh of RM API configuration for tenant {} failed", okapiData.getTenant(), throwable);
+        return null;
+      });
+      return CompletableFuture.completedFuture(cached.configuration);
+    }
+    return reload(key, okapiData);
+  }
+
+  public void addChangeListener(Consumer<Configuration> listener) {
+    changeListeners.add(listener);
+  }
+
+  public void invalidateAll() {
+    configurations.invalidateAll();
+  }
+
+  /**
+   * @return number of cached configurations
+   */
+  public long size() {
+    configurations.cleanUp();
+    return configurations.size();
+  }
+
+  private CompletableFuture<Configuration> reload(String key, OkapiData okapiData) {
+    CompletableFuture<Configuration> result = new CompletableFuture<>();
+    CompletableFuture<Configuration> running = reloads.putIfAbsent(key, result);
+    if (running != null) {
+      return running;
+    }
+
+    try {
+      configurationService.retrieveConfiguration(okapiData).whenComplete((configuration, throwable) -> {
+        if (throwable == null) {
+          CachedConfiguration previous = configurations.asMap().put(key, new CachedConfiguration(configuration, ticker.read()));
+          notifyIfChanged(previous, configuration);
+        }
+        reloads.remove(key, result);
+        if (throwable != null) {
+          result.completeExceptionally(throwable);
+        } else {
+          result.complete(configuration);
+        }
+      });
+    } catch (RuntimeException e) {
+      reloads.remove(key, result);
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private void notifyIfChanged(CachedConfiguration previous, Configuration configuration) {
+    if (previous == null) {
+      return;
+    }
+    HoldingsIQClientKey previousKey = HoldingsIQClientKey.of(previous.configuration);
+    if (Objects.equals(previousKey, HoldingsIQClientKey.of(configuration))) {
+      return;
+    }
+    boolean stillUsed = configurations.asMap().values().stream()
+      .anyMatch(cached -> previousKey.equals(HoldingsIQClientKey.of(cached.configuration)));
+    if (stillUsed) {
+      log.info("RM API configuration changed, {} is still used by another tenant", previousKey);
+      return;
+    }
+    log.info("RM API configuration changed, dropping state of {}", previousKey);
+    for (Consumer<Configuration> listener : changeListeners) {
+      listener.accept(previous.configuration);
+    }
+  }
+
+  private static final class CachedConfiguration {
+    private final Configuration configuration;
+    private final long loadTime;
+
+    private CachedConfiguration(Configuration configuration, long loadTime) {
+      this.configuration = configuration;
+      this.loadTime = loadTime;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.folio.codex.cache;
+
+import java.util.function.ToIntFunction;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+
+/**
+ * Cache of upstream search result pages.
+ * <p>
+ * Pages differ a lot in size, so instead of counting entries every tenant
+ * partition is bounded by the total number of records held in its pages.
+ * <p>
+ * Pages are keyed on their page number and page size. The page size is chosen
+ * per request by {@link org.folio.cql2rmapi.query.PaginationCalculator}, which
+ * uses the canonical page size {@code search.page.size} for most windows, so
+ * windows at different offsets and limits share their pages. Only windows
+ * that the canonical page size would need more requests for, or far more
+ * records, get pages of their own size.
+ */
+public class SearchPageCache<K, V> extends TenantCache<K, V> {
+  private final long maxRecords;
+  private final ToIntFunction<V> recordCounter;
+
+  /**
+   * @param cacheName      name used in logs
+   * @param expirationTime time to live of a page in seconds
+   * @param maxRecords     maximum number of records per tenant
+   * @param recordCounter  returns the number of records in a page
+   */
+  public SearchPageCache(String cacheName, long expirationTime, long maxRecords, ToIntFunction<V> recordCounter) {
+    this(cacheName, expirationTime, 0, maxRecords, recordCounter);
+  }
+
+  /**
+   * @param staleTime time in seconds an expired page is kept for {@link #getStaleValue}
+   */
+  public SearchPageCache(String cacheName, long expirationTime, long staleTime, long maxRecords,
+                         ToIntFunction<V> recordCounter) {
+    this(cacheName, expirationTime, staleTime, maxRecords, recordCounter, Ticker.systemTicker());
+  }
+
+  /**
+   * @param ticker time source the expiration and stale times are measured with
+   */
+  public SearchPageCache(String cacheName, long expirationTime, long staleTime, long maxRecords,
+                         ToIntFunction<V> recordCounter, Ticker ticker) {
+    super(cacheName, expirationTime, staleTime, maxRecords, ticker);
+    this.maxRecords = maxRecords;
+    this.recordCounter = recordCounter;
+  }
+
+  @Override
+  protected Cache<K, Entry<V>> createPartition() {
+    return newPartitionBuilder()
+      .maximumWeight(maxRecords)
+      .weigher((K key, Entry<V> page) -> Math.max(1, recordCounter.applyAsInt(page.getValue())))
+      .build();
+  }
+}
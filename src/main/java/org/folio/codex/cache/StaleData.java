@@ -0,0 +1,25 @@
+package org.folio.codex.cache;
+
+/**
+ * Tells whether a response contains data that is past its cache expiration,
+ * served because HoldingsIQ failed to deliver a fresh copy.
+ * <p>
+ * One instance is passed along with a request; it is only ever switched on.
+ */
+public class StaleData {
+  /**
+   * Header marking a response as stale, see RFC 7234, section 5.5.1.
+   */
+  public static final String WARNING_HEADER = "Warning";
+  public static final String STALE_WARNING = "110 mod-codex-ekb \"Response is Stale\"";
+
+  private volatile boolean served;
+
+  public void markServed() {
+    served = true;
+  }
+
+  public boolean isServed() {
+    return served;
+  }
+}
@@ -0,0 +1,176 @@
+package org.folio.codex.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.folio.codex.client.HoldingsIQClientKey;
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Size-bounded cache with a separate partition per RM API configuration.
+ * <p>
+ * Every tenant gets its own LRU partition holding at most {@code maxSize}
+ * entries, so one busy tenant cannot push the entries of the others out. A
+ * partition is keyed on the configuration (see {@link HoldingsIQClientKey}),
+ * which means that entries loaded with an old configuration are never
+ * returned once the configuration changes; partitions that are no longer used
+ * expire on their own.
+ * <p>
+ * With a stale time, entries are kept for that long after they expired. They
+ * are no longer returned by {@link #getValue}, only by {@link #getStaleValue},
+ * for the case that they cannot be loaded again. Until then they take up
+ * heap like fresh entries: every entry is held for the expiration time plus
+ * the stale time, up to the size bound of its partition.
+ */
+public class TenantCache<K, V> {
+  private final String cacheName;
+  private final long expirationTime;
+  private final long staleTime;
+  private final long maxSize;
+  private final Ticker ticker;
+  private final Cache<HoldingsIQClientKey, Cache<K, Entry<V>>> partitions;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong staleHitCount = new AtomicLong();
+
+  /**
+   * @param cacheName      name used in logs
+   * @param expirationTime time to live of an entry in seconds
+   * @param maxSize        maximum number of entries per tenant
+   */
+  public TenantCache(String cacheName, long expirationTime, long maxSize) {
+    this(cacheName, expirationTime, 0, maxSize);
+  }
+
+  /**
+   * @param staleTime time in seconds an expired entry is kept for {@link #getStaleValue}
+   */
+  public TenantCache(String cacheName, long expirationTime, long staleTime, long maxSize) {
+    this(cacheName, expirationTime, staleTime, maxSize, Ticker.systemTicker());
+  }
+
+  /**
+   * @param ticker time source the expiration and stale times are measured with
+   */
+  public TenantCache(String cacheName, long expirationTime, long staleTime, long maxSize, Ticker ticker) {
+    this.cacheName = cacheName;
+    this.expirationTime = expirationTime;
+    this.staleTime = staleTime;
+    this.maxSize = maxSize;
+    this.ticker = ticker;
+    this.partitions = CacheBuilder.newBuilder()
+      .expireAfterAccess(expirationTime + staleTime, TimeUnit.SECONDS)
+      .ticker(ticker)
+      .build();
+  }
+
+  public V getValue(Configuration configuration, K key) {
+    Entry<V> entry = getEntry(configuration, key);
+    if (entry != null && ticker.read() - entry.writtenAt < TimeUnit.SECONDS.toNanos(expirationTime)) {
+      hitCount.incrementAndGet();
+      return entry.value;
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * @return the entry for the key even if it expired, as long as it is within the stale time
+   */
+  public V getStaleValue(Configuration configuration, K key) {
+    Entry<V> entry = getEntry(configuration, key);
+    if (entry == null) {
+      return null;
+    }
+    staleHitCount.incrementAndGet();
+    return entry.value;
+  }
+
+  public void putValue(Configuration configuration, K key, V value) {
+    getPartition(configuration).put(key, new Entry<>(value, ticker.read()));
+  }
+
+  public void invalidate(Configuration configuration, K key) {
+    Cache<K, Entry<V>> partition = partitions.getIfPresent(HoldingsIQClientKey.of(configuration));
+    if (partition != null) {
+      partition.invalidate(key);
+    }
+  }
+
+  public void invalidate(Configuration configuration) {
+    partitions.invalidate(HoldingsIQClientKey.of(configuration));
+  }
+
+  public void invalidateAll() {
+    partitions.invalidateAll();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return number of expired entries returned by {@link #getStaleValue}
+   */
+  public long getStaleHitCount() {
+    return staleHitCount.get();
+  }
+
+  public String getCacheName() {
+    return cacheName;
+  }
+
+  protected Cache<K, Entry<V>> createPartition() {
+    return newPartitionBuilder()
+      .maximumSize(maxSize)
+      .build();
+  }
+
+  /**
+   * @return a builder for a partition whose entries are dropped once they are past the stale time
+   */
+  protected CacheBuilder<Object, Object> newPartitionBuilder() {
+    return CacheBuilder.newBuilder()
+      .expireAfterWrite(expirationTime + staleTime, TimeUnit.SECONDS)
+      .ticker(ticker);
+  }
+
+  private Entry<V> getEntry(Configuration configuration, K key) {
+    Cache<K, Entry<V>> partition = partitions.getIfPresent(HoldingsIQClientKey.of(configuration));
+    return partition != null ? partition.getIfPresent(key) : null;
+  }
+
+  private Cache<K, Entry<V>> getPartition(Configuration configuration) {
+    return partitions.asMap().computeIfAbsent(HoldingsIQClientKey.of(configuration), key -> createPartition());
+  }
+
+  @Override
+  public String toString() {
+    long hits = hitCount.get();
+    long misses = missCount.get();
+    return cacheName + "{hits=" + hits + ", misses=" + misses + ", staleHits=" + staleHitCount.get()
+      + String.format(", hitRate=%.1f%%", hits + misses == 0 ? 0 : hits * 100.0 / (hits + misses)) + "}";
+  }
+
+  protected static final class Entry<V> {
+    private final V value;
+    private final long writtenAt;
+
+    private Entry(V value, long writtenAt) {
+      this.value = value;
+      this.writtenAt = writtenAt;
+    }
+
+    protected V getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package org.folio.codex.cache;
+
+import java.util.Objects;
+
+import org.folio.cql2rmapi.query.Page;
+import org.folio.holdingsiq.model.FilterQuery;
+import org.folio.holdingsiq.model.Sort;
+
+/**
+ * Identifies one upstream page of a title search.
+ */
+public final class TitlesPageKey {
+  private final FilterQuery filterQuery;
+  private final Sort sort;
+  private final int offset;
+  private final int limit;
+
+  public TitlesPageKey(FilterQuery filterQuery, Sort sort, Page page) {
+    this.filterQuery = filterQuery;
+    this.sort = sort;
+    this.offset = page.getOffset();
+    this.limit = page.getLimit();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TitlesPageKey that = (TitlesPageKey) o;
+    return offset == that.offset
+      && limit == that.limit
+      && sort == that.sort
+      && Objects.equals(filterQuery, that.filterQuery);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(filterQuery, sort, offset, limit);
+  }
+
+  @Override
+  public String toString() {
+    return "TitlesPageKey{filterQuery=" + filterQuery + ", sort=" + sort + ", offset=" + offset + ", limit=" + limit + '}';
+  }
+}
@@ -0,0 +1,11 @@
+package org.folio.codex.client;
+
+/**
+ * Thrown instead of calling HoldingsIQ while the circuit of the tenant is open.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+  public CircuitBreakerOpenException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,282 @@
+package org.folio.codex.client;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.vertx.core.Vertx;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Sends a second, identical HoldingsIQ request when the first one is slow.
+ * <p>
+ * The latencies of the last {@code windowSize} requests are kept per tenant
+ * and kind of request, e.g. title or package lookups, in arrival order and
+ * sorted, so that the percentile is read without sorting for every request.
+ * Once the window is full, a request that has not answered after the
+ * configured percentile of them is sent again and the first answer wins; a
+ * failure only wins when the other attempt failed as well.
+ * <p>
+ * Hedges are paid from a token bucket per tenant and kind: every request adds
+ * the budget percentage of a token, every hedge takes a whole one, and the
+ * bucket holds at most the budget percentage of the window. So hedges stay
+ * within the budget over any stretch of recent requests, and a long quiet
+ * period can not be saved up for a burst of hedges when HoldingsIQ slows down.
+ * <p>
+ * Every attempt, the hedge included, passes the guards given by the caller,
+ * like the rate limiter, concurrency limiter and circuit breaker, so a hedge
+ * takes its own permits like any other call, and a hedge that is refused one
+ * fails without failing the request. Only the time of the upstream call
+ * inside the guards is recorded as latency, not the wait for the permits.
+ */
+public class HedgedRequests {
+
+  private final boolean enabled;
+  private final int percentile;
+  private final int budget;
+  private final int windowSize;
+  private final double maxTokens;
+  private final Timer timer;
+  private final LongSupplier clock;
+  private final ConcurrentMap<WindowKey, Window> windows = new ConcurrentHashMap<>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+
+  /**
+   * @param percentile percentile of the recent latencies after which a request is hedged
+   * @param budget     maximum number of hedges in percent of the requests
+   * @param windowSize number of recent requests the latency percentile is computed from
+   */
+  public HedgedRequests(Vertx vertx, boolean enabled, int percentile, int budget, int windowSize) {
+    this(enabled, percentile, budget, windowSize, Timer.of(vertx), System::nanoTime);
+  }
+
+  HedgedRequests(boolean enabled, int percentile, int budget, int windowSize, Timer timer, LongSupplier clock) {
+    this.enabled = enabled;
+    this.percentile = Math.min(100, Math.max(1, percentile));
+    this.budget = budget;
+    this.windowSize = Math.max(1, windowSize);
+    this.maxTokens = Math.max(1, budget * this.windowSize / 100.0);
+    this.timer = timer;
+    this.clock = clock;
+  }
+
+  public <T> CompletableFuture<T> execute(Configuration configuration, String kind, Supplier<CompletableFuture<T>> call) {
+    return execute(configuration, kind, Supplier::get, call);
+  }
+
+  /**
+   * @param kind   kind of the request, latencies and budget are kept apart per tenant and kind
+   * @param guards makes one attempt by passing the upstream call through the guards, applied again for the hedge
+   * @param call   the upstream call, its time is the latency of the attempt
+   */
+  public <T> CompletableFuture<T> execute(Configuration configuration, String kind,
+                                          Function<Supplier<CompletableFuture<T>>, CompletableFuture<T>> guards,
+                                          Supplier<CompletableFuture<T>> call) {
+    if (!enabled) {
+      return guards.apply(call);
+    }
+    requestCount.incrementAndGet();
+    Window window = windows.computeIfAbsent(new WindowKey(HoldingsIQClientKey.of(configuration), kind), key -> new Window());
+    long delay = window.onRequest();
+
+    Attempts<T> attempts = new Attempts<>(window);
+    attempts.start(guards, call, false);
+    if (delay >= 0 && !attempts.result.isDone()) {
+      timer.schedule(delay, () -> {
+        if (window.tryAcquireHedge()) {
+          if (attempts.start(guards, call, true)) {
+            hedgeCount.incrementAndGet();
+          } else {
+            window.refundHedge();
+          }
+        }
+      });
+    }
+    return attempts.result;
+  }
+
+  /**
+   * @return number of requests sent through here, not counting hedges
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return number of hedges sent
+   */
+  public long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+  /**
+   * @return number of hedges that answered before the request they were sent for
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount.get();
+  }
+
+  /**
+   * @return share of the hedges that won, in percent
+   */
+  public double getHedgeWinRate() {
+    long hedges = hedgeCount.get();
+    return hedges == 0 ? 0 : hedgeWinCount.get() * 100.0 / hedges;
+  }
+
+  @Override
+  public String toString() {
+    return "hedgedRequests{requests=" + requestCount.get() + ", hedges=" + hedgeCount.get()
+      + ", hedgeWins=" + hedgeWinCount.get() + String.format(", hedgeWinRate=%.1f%%", getHedgeWinRate()) + "}";
+  }
+
+  private final class Window {
+    // in arrival order
+    private final long[] latencies = new long[windowSize];
+    // the first samples entries are the latencies in ascending order
+    private final long[] sorted = new long[windowSize];
+    private int next;
+    private int samples;
+    private double tokens;
+
+    /**
+     * Adds the share of a hedge the request pays for to the bucket.
+     *
+     * @return the delay in milliseconds after which the request is hedged, -1
+     * while there are not enough latencies recorded yet
+     */
+    private synchronized long onRequest() {
+      tokens = Math.min(maxTokens, tokens + budget / 100.0);
+      if (samples < latencies.length) {
+        return -1;
+      }
+      int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+      return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+
+    private synchronized void refundHedge() {
+      tokens = Math.min(maxTokens, tokens + 1);
+    }
+
+    private synchronized void recordLatency(long latency) {
+      if (samples == latencies.length) {
+        removeSorted(latencies[next]);
+      }
+      latencies[next] = latency;
+      next = (next + 1) % latencies.length;
+      insertSorted(latency);
+    }
+
+    private void removeSorted(long latency) {
+      int index = Arrays.binarySearch(sorted, 0, samples, latency);
+      System.arraycopy(sorted, index + 1, sorted, index, samples - index - 1);
+      samples--;
+    }
+
+    private void insertSorted(long latency) {
+      int index = Arrays.binarySearch(sorted, 0, samples, latency);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      System.arraycopy(sorted, index, sorted, index + 1, samples - index);
+      sorted[index] = latency;
+      samples++;
+    }
+  }
+
+  private static final class WindowKey {
+    private final HoldingsIQClientKey clientKey;
+    private final String kind;
+
+    private WindowKey(HoldingsIQClientKey clientKey, String kind) {
+      this.clientKey = clientKey;
+      this.kind = kind;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      WindowKey that = (WindowKey) o;
+      return clientKey.equals(that.clientKey) && kind.equals(that.kind);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * clientKey.hashCode() + kind.hashCode();
+    }
+  }
+
+  private final class Attempts<T> {
+    private final Window window;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private int pending;
+
+    private Attempts(Window window) {
+      this.window = window;
+    }
+
+    /**
+     * @return false if the result is already there and no attempt was started
+     */
+    private boolean start(Function<Supplier<CompletableFuture<T>>, CompletableFuture<T>> guards,
+                          Supplier<CompletableFuture<T>> call, boolean hedge) {
+      synchronized (this) {
+        if (result.isDone()) {
+          return false;
+        }
+        pending++;
+      }
+      CompletableFuture<T> attempt;
+      try {
+        attempt = guards.apply(() -> timed(call));
+      } catch (RuntimeException e) {
+        attempt = CompletableFuture.failedFuture(e);
+      }
+      attempt.whenComplete((value, throwable) -> {
+        if (throwable == null) {
+          if (result.complete(value) && hedge) {
+            hedgeWinCount.incrementAndGet();
+          }
+        } else {
+          synchronized (this) {
+            if (--pending == 0) {
+              result.completeExceptionally(throwable);
+            }
+          }
+        }
+      });
+      return true;
+    }
+
+    private CompletableFuture<T> timed(Supplier<CompletableFuture<T>> call) {
+      long start = clock.getAsLong();
+      return call.get().whenComplete((value, throwable) -> {
+        if (throwable == null) {
+          window.recordLatency(clock.getAsLong() - start);
+        }
+      });
+    }
+  }
+}
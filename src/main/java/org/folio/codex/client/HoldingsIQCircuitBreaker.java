@@ -0,0 +1,280 @@
+package org.folio.codex.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Per-tenant circuit breaker around HoldingsIQ calls.
+ * <p>
+ * The outcomes of the last {@code windowSize} calls of a tenant are kept; a
+ * call counts as failed when HoldingsIQ fails (see
+ * {@link UpstreamErrors#isUpstreamFailure(Throwable)}) or when it takes longer
+ * than the slow call duration. Once at least {@code minimumCalls} are recorded
+ * and the failure rate reaches the threshold the circuit opens, and every call
+ * of the tenant fails right away with {@link CircuitBreakerOpenException}.
+ * After the open duration the circuit is half open: a few probe calls are let
+ * through, it closes when they all succeed and opens again on the first failure.
+ * Every change of state is logged with its reason and the counters below.
+ */
+public class HoldingsIQCircuitBreaker {
+  private static final Logger log = LogManager.getLogger(HoldingsIQCircuitBreaker.class);
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final boolean enabled;
+  private final int windowSize;
+  private final int minimumCalls;
+  private final int failureRate;
+  private final long slowCallNanos;
+  private final long openNanos;
+  private final int halfOpenCalls;
+  private final LongSupplier clock;
+  private final ConcurrentMap<HoldingsIQClientKey, Circuit> circuits = new ConcurrentHashMap<>();
+  private final AtomicLong openedCount = new AtomicLong();
+  private final AtomicLong closedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong openNanosTotal = new AtomicLong();
+
+  /**
+   * @param windowSize       number of recent calls the failure rate is computed from
+   * @param minimumCalls     number of calls needed before the circuit can open
+   * @param failureRate      failure rate in percent that opens the circuit
+   * @param slowCallDuration duration in milliseconds after which a call counts as failed
+   * @param openDuration     time in seconds the circuit stays open before probing
+   * @param halfOpenCalls    number of probe calls needed to close the circuit
+   */
+  public HoldingsIQCircuitBreaker(boolean enabled, int windowSize, int minimumCalls, int failureRate,
+                                  long slowCallDuration, long openDuration, int halfOpenCalls) {
+    this(enabled, windowSize, minimumCalls, failureRate, slowCallDuration, openDuration, halfOpenCalls, System::nanoTime);
+  }
+
+  HoldingsIQCircuitBreaker(boolean enabled, int windowSize, int minimumCalls, int failureRate,
+                           long slowCallDuration, long openDuration, int halfOpenCalls, LongSupplier clock) {
+    this.enabled = enabled;
+    this.windowSize = windowSize;
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRate = failureRate;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+    this.openNanos = TimeUnit.SECONDS.toNanos(openDuration);
+    this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    this.clock = clock;
+  }
+
+  public <T> CompletableFuture<T> execute(Configuration configuration, Supplier<CompletableFuture<T>> call) {
+    if (!enabled) {
+      return call.get();
+    }
+    HoldingsIQClientKey key = HoldingsIQClientKey.of(configuration);
+    Circuit circuit = circuits.computeIfAbsent(key, Circuit::new);
+    if (!circuit.tryAcquire()) {
+      rejectedCount.incrementAndGet();
+      return CompletableFuture.failedFuture(
+        new CircuitBreakerOpenException("HoldingsIQ is unavailable, requests are paused after repeated failures"));
+    }
+
+    long start = clock.getAsLong();
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      circuit.onResult(true, start);
+      throw e;
+    }
+    return future.whenComplete((result, throwable) -> {
+      long duration = clock.getAsLong() - start;
+      circuit.onResult((throwable != null && UpstreamErrors.isUpstreamFailure(throwable)) || duration > slowCallNanos, start);
+    });
+  }
+
+  public State getState(Configuration configuration) {
+    Circuit circuit = circuits.get(HoldingsIQClientKey.of(configuration));
+    return circuit != null ? circuit.getState() : State.CLOSED;
+  }
+
+  /**
+   * @return share of the recorded calls of the tenant that failed, in percent
+   */
+  public double getFailureRate(Configuration configuration) {
+    Circuit circuit = circuits.get(HoldingsIQClientKey.of(configuration));
+    return circuit != null ? circuit.getFailureRate() : 0;
+  }
+
+  /**
+   * @return number of times a circuit opened
+   */
+  public long getOpenedCount() {
+    return openedCount.get();
+  }
+
+  /**
+   * @return number of times a circuit closed again after probing
+   */
+  public long getClosedCount() {
+    return closedCount.get();
+  }
+
+  /**
+   * @return number of calls failed right away because their circuit was open
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * @return time in milliseconds circuits spent open or half open, summed over the tenants
+   */
+  public long getOpenTime() {
+    long now = clock.getAsLong();
+    long total = openNanosTotal.get();
+    for (Circuit circuit : circuits.values()) {
+      total += circuit.getCurrentOpenNanos(now);
+    }
+    return TimeUnit.NANOSECONDS.toMillis(total);
+  }
+
+  @Override
+  public String toString() {
+    String circuitStates = circuits.values().stream()
+      .map(Circuit::getStateAndFailureRate)
+      .collect(Collectors.joining(", ", "[", "]"));
+    return "holdingsIQCircuitBreaker{" + getCounters() + ", openTime=" + getOpenTime() + "ms, circuits=" + circuitStates
+      + "}";
+  }
+
+  // without the open time, which needs the lock of every circuit
+  private String getCounters() {
+    return "opened=" + openedCount.get() + ", closed=" + closedCount.get() + ", rejected=" + rejectedCount.get();
+  }
+
+  private final class Circuit {
+    private final HoldingsIQClientKey key;
+    private final boolean[] outcomes = new boolean[windowSize];
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    // first opening, the open time counts from here until the circuit closes
+    private long openedAt;
+    // last opening, probing starts the open duration after it
+    private long reopenedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+    // calls started before the circuit last changed state are not recorded
+    private long stateChangedAt = Long.MIN_VALUE;
+
+    private Circuit(HoldingsIQClientKey key) {
+      this.key = key;
+    }
+
+    private synchronized boolean tryAcquire() {
+      if (state == State.OPEN) {
+        if (clock.getAsLong() - reopenedAt < openNanos) {
+          return false;
+        }
+        changeState(State.HALF_OPEN, "open duration passed, letting " + halfOpenCalls + " probe calls through");
+        probesInFlight = 0;
+        probesSucceeded = 0;
+      }
+      if (state == State.HALF_OPEN) {
+        if (probesInFlight + probesSucceeded >= halfOpenCalls) {
+          return false;
+        }
+        probesInFlight++;
+      }
+      return true;
+    }
+
+    private synchronized void onResult(boolean failed, long start) {
+      if (start < stateChangedAt) {
+        return;
+      }
+      if (state == State.HALF_OPEN) {
+        probesInFlight--;
+        if (failed) {
+          open();
+        } else if (++probesSucceeded >= halfOpenCalls) {
+          close();
+        }
+      } else if (state == State.CLOSED) {
+        record(failed);
+        if (calls >= minimumCalls && failures * 100 >= failureRate * calls) {
+          open();
+        }
+      }
+    }
+
+    private void record(boolean failed) {
+      if (calls == windowSize) {
+        if (outcomes[next]) {
+          failures--;
+        }
+      } else {
+        calls++;
+      }
+      outcomes[next] = failed;
+      if (failed) {
+        failures++;
+      }
+      next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+      String reason;
+      if (state == State.CLOSED) {
+        openedAt = clock.getAsLong();
+        openedCount.incrementAndGet();
+        reason = failures + " of " + calls + " calls failed";
+      } else {
+        reason = "probe call failed";
+      }
+      reopenedAt = clock.getAsLong();
+      changeState(State.OPEN, reason);
+    }
+
+    private void close() {
+      openNanosTotal.addAndGet(clock.getAsLong() - openedAt);
+      closedCount.incrementAndGet();
+      calls = 0;
+      failures = 0;
+      next = 0;
+      changeState(State.CLOSED, halfOpenCalls + " probe calls succeeded");
+    }
+
+    private void changeState(State newState, String reason) {
+      log.log(newState == State.OPEN ? Level.WARN : Level.INFO, "Circuit for {} changed from {} to {}, {} ({})",
+        key, state, newState, reason, getCounters());
+      state = newState;
+      stateChangedAt = clock.getAsLong();
+    }
+
+    private synchronized State getState() {
+      return state;
+    }
+
+    private synchronized double getFailureRate() {
+      return calls == 0 ? 0 : failures * 100.0 / calls;
+    }
+
+    private synchronized String getStateAndFailureRate() {
+      return key + String.format("=%s %.1f%%", state, getFailureRate());
+    }
+
+    private synchronized long getCurrentOpenNanos(long now) {
+      return state == State.CLOSED ? 0 : now - openedAt;
+    }
+  }
+}
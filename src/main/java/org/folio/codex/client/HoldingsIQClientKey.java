@@ -0,0 +1,59 @@
+package org.folio.codex.client;
+
+import java.util.Objects;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Identifies a HoldingsIQ account by the parts of the RM API configuration that
+ * are used to talk to it: the base URL, the customer id and the API key.
+ * Two tenants sharing the same credentials share the same key.
+ */
+public final class HoldingsIQClientKey {
+  private final String url;
+  private final String customerId;
+  private final String apiKey;
+
+  private HoldingsIQClientKey(String url, String customerId, String apiKey) {
+    this.url = url;
+    this.customerId = customerId;
+    this.apiKey = apiKey;
+  }
+
+  public static HoldingsIQClientKey of(Configuration configuration) {
+    return new HoldingsIQClientKey(configuration.getUrl(), configuration.getCustomerId(), configuration.getApiKey());
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public String getCustomerId() {
+    return customerId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    HoldingsIQClientKey that = (HoldingsIQClientKey) o;
+    return Objects.equals(url, that.url)
+      && Objects.equals(customerId, that.customerId)
+      && Objects.equals(apiKey, that.apiKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(url, customerId, apiKey);
+  }
+
+  @Override
+  public String toString() {
+    // the API key is deliberately left out, this ends up in the logs
+    return "HoldingsIQClientKey{url='" + url + "', customerId='" + customerId + "'}";
+  }
+}
@@ -0,0 +1,293 @@
+package org.folio.codex.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.vertx.core.Vertx;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Adaptive limit on the number of HoldingsIQ calls in flight.
+ * <p>
+ * The limit follows additive increase, multiplicative decrease: every call
+ * that answers in time while the limit is in use raises it by
+ * {@code 1 / limit}, so by about one per round trip. The limit is lowered by
+ * the backoff ratio when a call fails upstream (see
+ * {@link UpstreamErrors#isUpstreamFailure(Throwable)}), or when a call takes
+ * longer than the latency tolerance times the typical latency while the calls
+ * in flight are close to the limit; a slow call with the limit far from
+ * reached says something about the call, not about the load. Calls that
+ * started before the limit was last lowered do not lower it again, so it is
+ * lowered at most once per round trip.
+ * <p>
+ * A lookup by id and a page of 100 titles take very different times, so the
+ * typical latency is kept per {@link CallClass}: it is the average latency of
+ * the first {@code windowSize} calls of the class, then moved towards every
+ * further call by {@code 1 / windowSize} of the difference, so that it
+ * follows lasting changes of the upstream but not single slow calls. Until
+ * a class has seen {@code windowSize} calls, its latencies are not judged.
+ * <p>
+ * Calls beyond the limit wait in a queue and are started as calls in flight
+ * finish. When the queue is full, or a call has waited longer than the
+ * maximum queue wait, it fails with {@link RateLimitExceededException}.
+ * Changes of the limit, and when calls start and stop being rejected, are
+ * logged with the current numbers.
+ */
+public class HoldingsIQConcurrencyLimiter {
+  private static final Logger log = LogManager.getLogger(HoldingsIQConcurrencyLimiter.class);
+  // shorter latencies are too noisy to tell congestion from
+  private static final long MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  // share of the limit in flight from which slow calls count as congestion
+  private static final double NEAR_LIMIT_RATIO = 0.8;
+
+  /**
+   * Kinds of calls with their own typical latency.
+   */
+  public enum CallClass {
+    LOOKUP, SEARCH_PAGE, EXPORT_PAGE
+  }
+
+  private final boolean enabled;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final int windowSize;
+  private final int maxQueueSize;
+  private final long maxQueueWait;
+  private final Timer timer;
+  private final LongSupplier clock;
+  private final Queue<QueuedCall> queue = new ArrayDeque<>();
+  private final Map<CallClass, Baseline> baselines = new EnumMap<>(CallClass.class);
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private double limit;
+  private int inFlight;
+  private boolean rejecting;
+  // number of times the limit was lowered
+  private long generation;
+
+  /**
+   * @param initialLimit     number of calls in flight allowed at start
+   * @param minLimit         lowest the limit can go
+   * @param maxLimit         highest the limit can go
+   * @param backoffRatio     factor the limit is multiplied with on congestion, between 0 and 1
+   * @param latencyTolerance multiple of the typical latency above which a call counts as congested
+   * @param windowSize       number of calls of a class the typical latency is averaged over
+   * @param maxQueueSize     number of calls that can wait for a slot
+   * @param maxQueueWait     time in milliseconds a call waits for a slot before it is rejected
+   */
+  public HoldingsIQConcurrencyLimiter(Vertx vertx, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                                      double backoffRatio, double latencyTolerance, int windowSize, int maxQueueSize,
+                                      long maxQueueWait) {
+    this(enabled, initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, windowSize, maxQueueSize,
+      maxQueueWait, Timer.of(vertx), System::nanoTime);
+  }
+
+  HoldingsIQConcurrencyLimiter(boolean enabled, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                               double latencyTolerance, int windowSize, int maxQueueSize, long maxQueueWait,
+                               Timer timer, LongSupplier clock) {
+    this.enabled = enabled;
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    this.backoffRatio = backoffRatio;
+    this.latencyTolerance = latencyTolerance;
+    this.windowSize = Math.max(1, windowSize);
+    this.maxQueueSize = maxQueueSize;
+    this.maxQueueWait = maxQueueWait;
+    this.timer = timer;
+    this.clock = clock;
+    for (CallClass callClass : CallClass.values()) {
+      baselines.put(callClass, new Baseline());
+    }
+  }
+
+  public <T> CompletableFuture<T> execute(CallClass callClass, Supplier<CompletableFuture<T>> call) {
+    if (!enabled) {
+      return call.get();
+    }
+    CompletableFuture<T> result = new CompletableFuture<>();
+    QueuedCall queued = new QueuedCall(() -> run(callClass, call, result), result);
+    synchronized (this) {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        accepting();
+      } else if (queue.size() < maxQueueSize) {
+        queue.add(queued);
+        accepting();
+        timer.schedule(maxQueueWait, () -> expire(queued));
+        return result;
+      } else {
+        reject("the queue is full");
+        return CompletableFuture.failedFuture(
+          new RateLimitExceededException("Too many requests to HoldingsIQ are waiting, try again later"));
+      }
+    }
+    queued.start.run();
+    return result;
+  }
+
+  /**
+   * @return current number of calls allowed in flight
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return number of calls waiting for a slot
+   */
+  public synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return number of calls rejected because the queue was full or they waited too long
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "holdingsIQConcurrencyLimiter{limit=" + getLimit() + ", inFlight=" + getInFlight()
+      + ", queued=" + getQueueDepth() + ", rejected=" + rejectedCount.get() + "}";
+  }
+
+  private <T> void run(CallClass callClass, Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+    long startGeneration = getGeneration();
+    long start = clock.getAsLong();
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      future = CompletableFuture.failedFuture(e);
+    }
+    future.whenComplete((value, throwable) -> {
+      onComplete(callClass, startGeneration, clock.getAsLong() - start, throwable);
+      if (throwable != null) {
+        result.completeExceptionally(throwable);
+      } else {
+        result.complete(value);
+      }
+    });
+  }
+
+  private synchronized long getGeneration() {
+    return generation;
+  }
+
+  private void onComplete(CallClass callClass, long startGeneration, long latency, Throwable throwable) {
+    List<Runnable> next = new ArrayList<>();
+    synchronized (this) {
+      adjustLimit(callClass, startGeneration, latency, throwable);
+      inFlight--;
+      while (inFlight < (int) limit && !queue.isEmpty()) {
+        inFlight++;
+        next.add(queue.poll().start);
+      }
+    }
+    next.forEach(Runnable::run);
+  }
+
+  private void expire(QueuedCall queued) {
+    synchronized (this) {
+      if (!queue.remove(queued)) {
+        return;
+      }
+      reject("a call waited more than " + maxQueueWait + " ms");
+    }
+    queued.result.completeExceptionally(
+      new RateLimitExceededException("Waited too long for a request to HoldingsIQ, try again later"));
+  }
+
+  private void reject(String reason) {
+    rejectedCount.incrementAndGet();
+    if (!rejecting) {
+      rejecting = true;
+      log.warn("Rejecting HoldingsIQ calls, {}: {}", reason, this);
+    }
+  }
+
+  private void accepting() {
+    if (rejecting) {
+      rejecting = false;
+      log.info("Accepting HoldingsIQ calls again: {}", this);
+    }
+  }
+
+  private void adjustLimit(CallClass callClass, long startGeneration, long latency, Throwable throwable) {
+    Throwable cause = throwable != null ? UpstreamErrors.unwrap(throwable) : null;
+    if (cause instanceof CircuitBreakerOpenException) {
+      // HoldingsIQ was not called, there is nothing to learn from it
+      return;
+    }
+    Baseline baseline = baselines.get(callClass);
+    boolean failed = cause != null && UpstreamErrors.isUpstreamFailure(cause);
+    boolean slow = baseline.isKnown()
+      && latency > latencyTolerance * Math.max(MIN_LATENCY_NANOS, baseline.latency);
+    baseline.record(latency);
+
+    double previous = limit;
+    boolean congested = failed || (slow && isNearLimit());
+    if (congested) {
+      if (startGeneration == generation) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+        generation++;
+      }
+    } else if (!slow && (inFlight >= (int) limit || !queue.isEmpty())) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+    if ((int) previous != (int) limit) {
+      log.info("Concurrency limit {} after a {} call of {} ms: {}", congested ? "lowered" : "raised", callClass,
+        TimeUnit.NANOSECONDS.toMillis(latency), this);
+    }
+  }
+
+  private boolean isNearLimit() {
+    return !queue.isEmpty() || inFlight >= Math.ceil(NEAR_LIMIT_RATIO * (int) limit);
+  }
+
+  private static final class QueuedCall {
+    private final Runnable start;
+    private final CompletableFuture<?> result;
+
+    private QueuedCall(Runnable start, CompletableFuture<?> result) {
+      this.start = start;
+      this.result = result;
+    }
+  }
+
+  /**
+   * Typical latency of one class of calls.
+   */
+  private final class Baseline {
+    private double latency;
+    private int samples;
+
+    private void record(long sample) {
+      if (samples < windowSize) {
+        samples++;
+      }
+      latency += (sample - latency) / samples;
+    }
+
+    private boolean isKnown() {
+      return samples == windowSize;
+    }
+  }
+}
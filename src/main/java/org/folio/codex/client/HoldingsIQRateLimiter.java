@@ -0,0 +1,197 @@
+package org.folio.codex.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.vertx.core.Vertx;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Per-customer token bucket rate limiter for HoldingsIQ calls.
+ * <p>
+ * HoldingsIQ enforces its request quota per customer id, so the buckets are
+ * keyed on the customer id of the configuration rather than on the tenant.
+ * Interactive lookups by id and search or bulk traffic get a bucket each, so
+ * that a large export cannot use up the capacity needed for single records;
+ * the sum of both rates should stay within the quota of the customer.
+ * Prefetches have no capacity of their own: they are only made while the bulk
+ * bucket is more than half full and never wait for a token, so that they use
+ * spare capacity and give way to the searches and bulk jobs of clients.
+ * <p>
+ * A call that finds its bucket empty reserves the next token and is delayed
+ * until it is due, as long as that is within the maximum wait. Beyond it the
+ * call fails right away with {@link RateLimitExceededException}.
+ */
+public class HoldingsIQRateLimiter {
+
+  public enum Traffic {
+    INTERACTIVE, BULK, PREFETCH
+  }
+
+  private final boolean enabled;
+  private final double interactiveRate;
+  private final int interactiveBurst;
+  private final double bulkRate;
+  private final int bulkBurst;
+  private final long maxWaitNanos;
+  private final Timer timer;
+  private final LongSupplier clock;
+  private final ConcurrentMap<String, Buckets> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong delayedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong droppedPrefetchCount = new AtomicLong();
+
+  /**
+   * @param interactiveRate  calls per second for lookups by id
+   * @param interactiveBurst number of lookups by id that can be made at once after a quiet period
+   * @param bulkRate         calls per second for searches and bulk jobs
+   * @param bulkBurst        number of search and bulk calls that can be made at once after a quiet period
+   * @param maxWait          time in milliseconds a call waits for a token before it is rejected
+   */
+  public HoldingsIQRateLimiter(Vertx vertx, boolean enabled, double interactiveRate, int interactiveBurst,
+                               double bulkRate, int bulkBurst, long maxWait) {
+    this(enabled, interactiveRate, interactiveBurst, bulkRate, bulkBurst, maxWait, Timer.of(vertx), System::nanoTime);
+  }
+
+  HoldingsIQRateLimiter(boolean enabled, double interactiveRate, int interactiveBurst, double bulkRate, int bulkBurst,
+                        long maxWait, Timer timer, LongSupplier clock) {
+    this.enabled = enabled;
+    this.interactiveRate = interactiveRate;
+    this.interactiveBurst = Math.max(1, interactiveBurst);
+    this.bulkRate = bulkRate;
+    this.bulkBurst = Math.max(1, bulkBurst);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+    this.timer = timer;
+    this.clock = clock;
+  }
+
+  public <T> CompletableFuture<T> execute(Configuration configuration, Traffic traffic, Supplier<CompletableFuture<T>> call) {
+    if (!enabled) {
+      return call.get();
+    }
+    Buckets customerBuckets = buckets.computeIfAbsent(configuration.getCustomerId(), customerId -> new Buckets());
+    if (traffic == Traffic.PREFETCH) {
+      if (!customerBuckets.bulk.takeSpare(clock.getAsLong())) {
+        droppedPrefetchCount.incrementAndGet();
+        return CompletableFuture.failedFuture(
+          new RateLimitExceededException("No spare capacity for a HoldingsIQ prefetch for this customer"));
+      }
+      return call.get();
+    }
+    Bucket bucket = traffic == Traffic.INTERACTIVE ? customerBuckets.interactive : customerBuckets.bulk;
+    long wait = bucket.reserve(clock.getAsLong());
+    if (wait < 0) {
+      rejectedCount.incrementAndGet();
+      return CompletableFuture.failedFuture(
+        new RateLimitExceededException("Too many requests to HoldingsIQ for this customer, try again later"));
+    }
+    if (wait == 0) {
+      return call.get();
+    }
+
+    delayedCount.incrementAndGet();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    timer.schedule(TimeUnit.NANOSECONDS.toMillis(wait - 1) + 1, () -> {
+      try {
+        call.get().whenComplete((value, throwable) -> {
+          if (throwable != null) {
+            result.completeExceptionally(throwable);
+          } else {
+            result.complete(value);
+          }
+        });
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return number of calls that had to wait for a token
+   */
+  public long getDelayedCount() {
+    return delayedCount.get();
+  }
+
+  /**
+   * @return number of calls rejected because the wait for a token was too long
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * @return number of prefetches dropped because the bulk bucket was not more than half full
+   */
+  public long getDroppedPrefetchCount() {
+    return droppedPrefetchCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "holdingsIQRateLimiter{delayed=" + delayedCount.get() + ", rejected=" + rejectedCount.get()
+      + ", droppedPrefetches=" + droppedPrefetchCount.get() + "}";
+  }
+
+  private final class Buckets {
+    private final Bucket interactive = new Bucket(interactiveRate, interactiveBurst);
+    private final Bucket bulk = new Bucket(bulkRate, bulkBurst);
+  }
+
+  private final class Bucket {
+    private final double tokensPerNano;
+    private final int burst;
+    private double tokens;
+    private long updatedAt;
+
+    private Bucket(double rate, int burst) {
+      this.tokensPerNano = rate / TimeUnit.SECONDS.toNanos(1);
+      this.burst = burst;
+      this.tokens = burst;
+      this.updatedAt = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token, going into debt when there is none.
+     *
+     * @return the time in nanoseconds until the token is due, -1 if that is longer than the maximum wait
+     */
+    private synchronized long reserve(long now) {
+      refill(now);
+      if (tokens >= 1) {
+        tokens--;
+        return 0;
+      }
+      long wait = (long) Math.ceil((1 - tokens) / tokensPerNano);
+      if (wait > maxWaitNanos) {
+        return -1;
+      }
+      tokens--;
+      return wait;
+    }
+
+    /**
+     * Takes a token only if more than half of the burst is left after it.
+     */
+    private synchronized boolean takeSpare(long now) {
+      refill(now);
+      if (tokens - 1 < burst / 2.0) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+
+    private void refill(long now) {
+      tokens = Math.min(burst, tokens + (now - updatedAt) * tokensPerNano);
+      updatedAt = now;
+    }
+  }
+}
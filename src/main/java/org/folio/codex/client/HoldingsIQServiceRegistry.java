@@ -0,0 +1,158 @@
+package org.folio.codex.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.vertx.core.Vertx;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.folio.holdingsiq.model.Configuration;
+import org.folio.holdingsiq.service.PackagesHoldingsIQService;
+import org.folio.holdingsiq.service.TitlesHoldingsIQService;
+import org.folio.holdingsiq.service.impl.PackagesHoldingsIQServiceImpl;
+import org.folio.holdingsiq.service.impl.TitlesHoldingsIQServiceImpl;
+
+/**
+ * Keeps long-lived HoldingsIQ services, one set per RM API configuration, so
+ * that consecutive requests of a tenant reuse the same service objects instead
+ * of setting them up per call.
+ * <p>
+ * Entries are keyed on {@link HoldingsIQClientKey}, so a tenant whose
+ * configuration changes gets a fresh set of services; the old set is removed
+ * once it has not been used for the configured expiration time, when the
+ * registry is full, or right away through {@link #invalidate(Configuration)}.
+ * <p>
+ * Services are only handed to a call through {@link #withTitlesService} and
+ * {@link #withPackagesService}, which count the calls in flight per set. A
+ * removed set is closed, if its services hold resources, that is if they are
+ * {@link AutoCloseable}, once its last call has finished; calls that come in
+ * after the removal get a fresh set.
+ */
+public class HoldingsIQServiceRegistry {
+  private static final Logger log = LogManager.getLogger(HoldingsIQServiceRegistry.class);
+
+  private final Vertx vertx;
+  private final Cache<HoldingsIQClientKey, HoldingsIQServices> services;
+
+  public HoldingsIQServiceRegistry(Vertx vertx, long expirationTime, long maxSize) {
+    this.vertx = vertx;
+    this.services = CacheBuilder.newBuilder()
+      .expireAfterAccess(expirationTime, TimeUnit.SECONDS)
+      .maximumSize(maxSize)
+      .removalListener(this::onRemoval)
+      .build();
+  }
+
+  public <T> CompletableFuture<T> withTitlesService(Configuration configuration,
+                                                    Function<TitlesHoldingsIQService, CompletableFuture<T>> call) {
+    HoldingsIQServices acquired = acquire(configuration);
+    return acquired.run(() -> call.apply(acquired.titlesService));
+  }
+
+  public <T> CompletableFuture<T> withPackagesService(Configuration configuration,
+                                                      Function<PackagesHoldingsIQService, CompletableFuture<T>> call) {
+    HoldingsIQServices acquired = acquire(configuration);
+    return acquired.run(() -> call.apply(acquired.packagesService));
+  }
+
+  public void invalidate(Configuration configuration) {
+    services.invalidate(HoldingsIQClientKey.of(configuration));
+  }
+
+  private HoldingsIQServices acquire(Configuration configuration) {
+    while (true) {
+      HoldingsIQServices current = services.asMap().computeIfAbsent(HoldingsIQClientKey.of(configuration), key -> {
+        log.info("Creating HoldingsIQ services for {}", key);
+        return new HoldingsIQServices(key, configuration, vertx);
+      });
+      if (current.tryAcquire()) {
+        return current;
+      }
+      // closed after it was removed, the next round finds or creates its successor
+    }
+  }
+
+  private void onRemoval(RemovalNotification<HoldingsIQClientKey, HoldingsIQServices> notification) {
+    HoldingsIQServices removed = notification.getValue();
+    if (removed != null) {
+      log.info("Releasing HoldingsIQ services for {} ({})", notification.getKey(), notification.getCause());
+      removed.retire();
+    }
+  }
+
+  private static final class HoldingsIQServices {
+    private final HoldingsIQClientKey key;
+    private final TitlesHoldingsIQService titlesService;
+    private final PackagesHoldingsIQService packagesService;
+    private int inFlight;
+    private boolean retired;
+    private boolean closed;
+
+    private HoldingsIQServices(HoldingsIQClientKey key, Configuration configuration, Vertx vertx) {
+      this.key = key;
+      this.titlesService = new TitlesHoldingsIQServiceImpl(configuration, vertx);
+      this.packagesService = new PackagesHoldingsIQServiceImpl(configuration, vertx);
+    }
+
+    private synchronized boolean tryAcquire() {
+      if (closed) {
+        return false;
+      }
+      inFlight++;
+      return true;
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> call) {
+      CompletableFuture<T> future;
+      try {
+        future = call.get();
+      } catch (RuntimeException e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      return future.whenComplete((value, throwable) -> release());
+    }
+
+    private void release() {
+      synchronized (this) {
+        inFlight--;
+        if (!retired || inFlight > 0 || closed) {
+          return;
+        }
+        closed = true;
+      }
+      close();
+    }
+
+    private void retire() {
+      synchronized (this) {
+        retired = true;
+        if (inFlight > 0 || closed) {
+          return;
+        }
+        closed = true;
+      }
+      close();
+    }
+
+    private void close() {
+      close(titlesService);
+      close(packagesService);
+    }
+
+    private void close(Object service) {
+      if (service instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) service).close();
+        } catch (Exception e) {
+          log.warn("Failed to close HoldingsIQ service for {}", key, e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.folio.codex.client;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Collapses identical concurrent upstream calls into one.
+ * <p>
+ * While a call for a given configuration and key is in flight, every other
+ * caller asking for the same key gets the future of that call instead of
+ * starting its own. The entry is removed as soon as the call completes, so
+ * results are shared only between requests that actually overlap; caching
+ * finished results is left to the caches.
+ */
+public class InFlightRequests<K, V> {
+  private final String name;
+  private final ConcurrentMap<RequestKey<K>, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong executedCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  public InFlightRequests(String name) {
+    this.name = name;
+  }
+
+  public CompletableFuture<V> execute(Configuration configuration, K key, Supplier<CompletableFuture<V>> call) {
+    RequestKey<K> requestKey = new RequestKey<>(HoldingsIQClientKey.of(configuration), key);
+    CompletableFuture<V> result = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(requestKey, result);
+    if (existing != null) {
+      coalescedCount.incrementAndGet();
+      return existing;
+    }
+
+    executedCount.incrementAndGet();
+    try {
+      call.get().whenComplete((value, throwable) -> {
+        inFlight.remove(requestKey, result);
+        if (throwable != null) {
+          result.completeExceptionally(throwable);
+        } else {
+          result.complete(value);
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlight.remove(requestKey, result);
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /**
+   * @return number of calls that were actually sent upstream
+   */
+  public long getExecutedCount() {
+    return executedCount.get();
+  }
+
+  /**
+   * @return number of calls that were served by joining a call already in flight
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  @Override
+  public String toString() {
+    return name + "{executed=" + executedCount.get() + ", coalesced=" + coalescedCount.get()
+      + ", inFlight=" + inFlight.size() + "}";
+  }
+
+  private static final class RequestKey<K> {
+    private final HoldingsIQClientKey clientKey;
+    private final K key;
+
+    private RequestKey(HoldingsIQClientKey clientKey, K key) {
+      this.clientKey = clientKey;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RequestKey<?> that = (RequestKey<?>) o;
+      return clientKey.equals(that.clientKey) && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(clientKey, key);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.folio.codex.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.vertx.core.Vertx;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.folio.holdingsiq.model.Configuration;
+
+/**
+ * Runs opt-in background prefetches of search pages.
+ * <p>
+ * Prefetches are best effort: a prefetch is dropped instead of queued when
+ * the global limit of concurrent prefetches or the budget of the tenant is
+ * used up, so that prefetching never competes with client requests for long.
+ * <p>
+ * An accepted prefetch is started on the event loop as a task of its own,
+ * after the request that submitted it has been answered, instead of in the
+ * completion of that request.
+ */
+public class PrefetchScheduler {
+  private static final Logger log = LogManager.getLogger(PrefetchScheduler.class);
+
+  private final boolean enabled;
+  private final int maxConcurrent;
+  private final int maxConcurrentPerTenant;
+  private final Executor dispatcher;
+  private final AtomicInteger running = new AtomicInteger();
+  private final ConcurrentMap<HoldingsIQClientKey, AtomicInteger> runningPerTenant = new ConcurrentHashMap<>();
+  private final AtomicLong startedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  public PrefetchScheduler(Vertx vertx, boolean enabled, int maxConcurrent, int maxConcurrentPerTenant) {
+    this(enabled, maxConcurrent, maxConcurrentPerTenant, task -> vertx.runOnContext(v -> task.run()));
+  }
+
+  PrefetchScheduler(boolean enabled, int maxConcurrent, int maxConcurrentPerTenant, Executor dispatcher) {
+    this.enabled = enabled;
+    this.maxConcurrent = maxConcurrent;
+    this.maxConcurrentPerTenant = maxConcurrentPerTenant;
+    this.dispatcher = dispatcher;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void submit(Configuration configuration, Supplier<CompletableFuture<?>> prefetch) {
+    if (!enabled) {
+      return;
+    }
+    HoldingsIQClientKey key = HoldingsIQClientKey.of(configuration);
+    AtomicInteger tenantRunning = runningPerTenant.computeIfAbsent(key, k -> new AtomicInteger());
+    if (!tryAcquire(running, maxConcurrent)) {
+      droppedCount.incrementAndGet();
+      return;
+    }
+    if (!tryAcquire(tenantRunning, maxConcurrentPerTenant)) {
+      running.decrementAndGet();
+      droppedCount.incrementAndGet();
+      return;
+    }
+
+    startedCount.incrementAndGet();
+    dispatcher.execute(() -> run(key, tenantRunning, prefetch));
+  }
+
+  public long getStartedCount() {
+    return startedCount.get();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  public int getRunning() {
+    return running.get();
+  }
+
+  @Override
+  public String toString() {
+    return "prefetchScheduler{started=" + startedCount.get() + ", dropped=" + droppedCount.get()
+      + ", running=" + running.get() + "}";
+  }
+
+  private void run(HoldingsIQClientKey key, AtomicInteger tenantRunning, Supplier<CompletableFuture<?>> prefetch) {
+    try {
+      prefetch.get().whenComplete((result, throwable) -> {
+        release(tenantRunning);
+        if (throwable != null) {
+          log.debug("Prefetch for {} failed", key, throwable);
+        }
+      });
+    } catch (RuntimeException e) {
+      release(tenantRunning);
+      log.debug("Prefetch for {} failed", key, e);
+    }
+  }
+
+  private void release(AtomicInteger tenantRunning) {
+    running.decrementAndGet();
+    tenantRunning.decrementAndGet();
+  }
+
+  private static boolean tryAcquire(AtomicInteger counter, int max) {
+    int current;
+    do {
+      current = counter.get();
+      if (current >= max) {
+        return false;
+      }
+    } while (!counter.compareAndSet(current, current + 1));
+    return true;
+  }
+}
@@ -0,0 +1,12 @@
+package org.folio.codex.client;
+
+/**
+ * Thrown instead of calling HoldingsIQ when a call would have to wait too
+ * long, see {@link HoldingsIQRateLimiter} and {@link HoldingsIQConcurrencyLimiter}.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+  public RateLimitExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,18 @@
+package org.folio.codex.client;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Runs a task after a delay, see {@link Vertx#setTimer}.
+ */
+interface Timer {
+
+  /**
+   * @param delay delay in milliseconds
+   */
+  void schedule(long delay, Runnable task);
+
+  static Timer of(Vertx vertx) {
+    return (delay, task) -> vertx.setTimer(Math.max(1, delay), id -> task.run());
+  }
+}
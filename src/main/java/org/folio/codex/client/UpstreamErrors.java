@@ -0,0 +1,50 @@
+package org.folio.codex.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import io.vertx.core.http.HttpClosedException;
+import io.vertx.core.impl.NoStackTraceTimeoutException;
+
+import org.folio.holdingsiq.service.exception.ServiceResponseException;
+
+/**
+ * Tells failures of HoldingsIQ itself apart from answers to bad requests.
+ */
+public final class UpstreamErrors {
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private UpstreamErrors() {
+  }
+
+  /**
+   * @return the cause of a {@link CompletionException}, the throwable itself otherwise
+   */
+  public static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+      ? throwable.getCause() : throwable;
+  }
+
+  /**
+   * @return true if the call failed because HoldingsIQ answered with a 5xx or
+   * 429, could not be reached or timed out; false for not found, unauthorized
+   * and other 4xx answers, for calls this module did not send because its own
+   * rate or concurrency limit was reached, and for errors of the module itself
+   */
+  public static boolean isUpstreamFailure(Throwable throwable) {
+    Throwable cause = unwrap(throwable);
+    if (cause instanceof ServiceResponseException) {
+      int code = ((ServiceResponseException) cause).getCode();
+      return code >= 500 || code == TOO_MANY_REQUESTS;
+    }
+    for (Throwable current = cause; current != null; current = current.getCause()) {
+      // Vert.x fails HTTP requests past their timeout with NoStackTraceTimeoutException
+      if (current instanceof IOException || current instanceof TimeoutException
+        || current instanceof NoStackTraceTimeoutException || current instanceof HttpClosedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,176 @@
+package org.folio.codex.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+import org.folio.codex.json.CodexJsonWriter;
+
+/**
+ * Streams a whole result set as newline-delimited JSON by walking the
+ * upstream pages in order, see PgUtil.streamGet for the same approach on
+ * top of the database.
+ * <p>
+ * At most {@code pagesInFlight} upstream pages are requested ahead of the
+ * page that is being written, and every page is written to the response as
+ * one chunk as soon as it is its turn. While the write queue of the response
+ * is full no page is written and no page is requested; the export goes on
+ * when the client has read enough of it. So memory per export stays at a
+ * few pages whatever the size of the result set.
+ * <p>
+ * Results that are not paged, like a lookup by id, are written as a single
+ * page with {@link #exportRecords}.
+ * <p>
+ * The status and headers are only sent with the first page, so a failure
+ * until then can still be answered with an error status. A failure after
+ * that can only end the response early.
+ */
+public class NdjsonExporter {
+
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  private final int pageSize;
+  private final int pagesInFlight;
+
+  public NdjsonExporter(int pageSize, int pagesInFlight) {
+    this.pageSize = pageSize;
+    this.pagesInFlight = Math.max(pagesInFlight, 1);
+  }
+
+  /**
+   * @return the number of records written, once the response has been ended
+   */
+  public <T> CompletableFuture<Integer> export(PageLoader<T> loader, RecordWriter<T> recordWriter,
+                                               HttpServerResponse response) {
+    return new Run<>(loader, pageSize, pagesInFlight, recordWriter, response).start();
+  }
+
+  /**
+   * Writes all records of a result that is loaded at once.
+   *
+   * @return the number of records written, once the response has been ended
+   */
+  public <T> CompletableFuture<Integer> exportRecords(CompletableFuture<List<T>> records, RecordWriter<T> recordWriter,
+                                                      HttpServerResponse response) {
+    return new Run<>((page, count) -> records, Integer.MAX_VALUE, 1, recordWriter, response).start();
+  }
+
+  private final class Run<T> {
+    private final PageLoader<T> loader;
+    private final int pageSize;
+    private final int pagesInFlight;
+    private final RecordWriter<T> recordWriter;
+    private final HttpServerResponse response;
+    private final Deque<CompletableFuture<List<T>>> inFlight = new ArrayDeque<>();
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private int nextPage = 1;
+    private int written;
+
+    private Run(PageLoader<T> loader, int pageSize, int pagesInFlight, RecordWriter<T> recordWriter,
+                HttpServerResponse response) {
+      this.loader = loader;
+      this.pageSize = pageSize;
+      this.pagesInFlight = pagesInFlight;
+      this.recordWriter = recordWriter;
+      this.response = response;
+    }
+
+    private CompletableFuture<Integer> start() {
+      response.closeHandler(v -> result.completeExceptionally(new IllegalStateException("Export closed by the client")));
+      requestPages();
+      writeNextPage();
+      return result;
+    }
+
+    private void requestPages() {
+      while (inFlight.size() < pagesInFlight) {
+        inFlight.add(load(nextPage++));
+      }
+    }
+
+    private CompletableFuture<List<T>> load(int page) {
+      try {
+        return loader.load(page, pageSize);
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+
+    private void writeNextPage() {
+      inFlight.peek().whenComplete((records, throwable) -> {
+        inFlight.poll();
+        if (result.isDone()) {
+          return;
+        }
+        if (throwable != null) {
+          result.completeExceptionally(throwable);
+          return;
+        }
+        Buffer chunk;
+        try {
+          chunk = encode(records);
+        } catch (IOException | RuntimeException e) {
+          result.completeExceptionally(e instanceof IOException ? new UncheckedIOException((IOException) e) : e);
+          return;
+        }
+        if (!response.headWritten()) {
+          response.setStatusCode(200)
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, NDJSON_CONTENT_TYPE);
+        }
+        written += records.size();
+        if (records.size() < pageSize) {
+          response.end(chunk);
+          result.complete(written);
+          return;
+        }
+        response.write(chunk);
+        if (response.writeQueueFull()) {
+          response.drainHandler(v -> writeMore());
+        } else {
+          writeMore();
+        }
+      });
+    }
+
+    private void writeMore() {
+      requestPages();
+      writeNextPage();
+    }
+
+    private Buffer encode(List<T> records) throws IOException {
+      Buffer chunk = Buffer.buffer();
+      try (JsonGenerator generator = CodexJsonWriter.createGenerator(chunk)) {
+        for (T record : records) {
+          recordWriter.write(generator, record);
+          generator.writeRaw('\n');
+        }
+      }
+      return chunk;
+    }
+  }
+
+  /**
+   * Loads one upstream page, {@code page} is 1-based.
+   */
+  @FunctionalInterface
+  public interface PageLoader<T> {
+    CompletableFuture<List<T>> load(int page, int count);
+  }
+
+  /**
+   * Writes one record as a JSON value, the exporter adds the line separator.
+   */
+  @FunctionalInterface
+  public interface RecordWriter<T> {
+    void write(JsonGenerator generator, T record) throws IOException;
+  }
+}
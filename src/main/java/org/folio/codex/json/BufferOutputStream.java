@@ -0,0 +1,26 @@
+package org.folio.codex.json;
+
+import java.io.OutputStream;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Lets a {@link com.fasterxml.jackson.core.JsonGenerator} write straight into a Vert.x {@link Buffer}.
+ */
+public final class BufferOutputStream extends OutputStream {
+  private final Buffer buffer;
+
+  public BufferOutputStream(Buffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void write(int b) {
+    buffer.appendByte((byte) b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    buffer.appendBytes(bytes, offset, length);
+  }
+}
@@ -0,0 +1,236 @@
+package org.folio.codex.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import io.vertx.core.buffer.Buffer;
+import org.springframework.stereotype.Component;
+
+import org.folio.rest.jaxrs.model.Contributor;
+import org.folio.rest.jaxrs.model.Coverage;
+import org.folio.rest.jaxrs.model.Diagnostic;
+import org.folio.rest.jaxrs.model.Identifier;
+import org.folio.rest.jaxrs.model.Instance;
+import org.folio.rest.jaxrs.model.InstanceCollection;
+import org.folio.rest.jaxrs.model.Package;
+import org.folio.rest.jaxrs.model.PackageCollection;
+import org.folio.rest.jaxrs.model.ResultInfo;
+import org.folio.rest.jaxrs.model.Subject;
+
+/**
+ * Writes instance and package collections straight into a {@link Buffer} with
+ * a streaming {@link JsonGenerator} instead of going through databind.
+ * <p>
+ * Field names are encoded once. The writer covers the fields that the
+ * HoldingsIQ converters fill, null fields are left out the same way the
+ * generated models do.
+ */
+@Component
+public class CodexJsonWriter {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  static final SerializableString ID = new SerializedString("id");
+  static final SerializableString TITLE = new SerializedString("title");
+  static final SerializableString CONTRIBUTOR = new SerializedString("contributor");
+  static final SerializableString PUBLISHER = new SerializedString("publisher");
+  static final SerializableString TYPE = new SerializedString("type");
+  static final SerializableString FORMAT = new SerializedString("format");
+  static final SerializableString IDENTIFIER = new SerializedString("identifier");
+  static final SerializableString SOURCE = new SerializedString("source");
+  static final SerializableString VERSION = new SerializedString("version");
+  static final SerializableString SUBJECT = new SerializedString("subject");
+  static final SerializableString NAME = new SerializedString("name");
+  static final SerializableString VALUE = new SerializedString("value");
+  static final SerializableString PROVIDER = new SerializedString("provider");
+  static final SerializableString PROVIDER_ID = new SerializedString("providerId");
+  static final SerializableString IS_SELECTED = new SerializedString("isSelected");
+  static final SerializableString COVERAGE = new SerializedString("coverage");
+  static final SerializableString BEGIN_COVERAGE = new SerializedString("beginCoverage");
+  static final SerializableString END_COVERAGE = new SerializedString("endCoverage");
+  static final SerializableString ITEM_COUNT = new SerializedString("itemCount");
+  static final SerializableString INSTANCES = new SerializedString("instances");
+  static final SerializableString PACKAGES = new SerializedString("packages");
+  static final SerializableString RESULT_INFO = new SerializedString("resultInfo");
+  static final SerializableString TOTAL_RECORDS = new SerializedString("totalRecords");
+  static final SerializableString FACETS = new SerializedString("facets");
+  static final SerializableString DIAGNOSTICS = new SerializedString("diagnostics");
+  static final SerializableString CODE = new SerializedString("code");
+  static final SerializableString MESSAGE = new SerializedString("message");
+  static final SerializableString MODULE = new SerializedString("module");
+  static final SerializableString RECORD_COUNT = new SerializedString("recordCount");
+  static final SerializableString QUERY = new SerializedString("query");
+
+  public static JsonGenerator createGenerator(Buffer buffer) throws IOException {
+    return JSON_FACTORY.createGenerator(new BufferOutputStream(buffer));
+  }
+
+  public Buffer write(InstanceCollection collection) {
+    Buffer buffer = Buffer.buffer();
+    try (JsonGenerator generator = createGenerator(buffer)) {
+      generator.writeStartObject();
+      if (collection.getInstances() != null) {
+        generator.writeFieldName(INSTANCES);
+        generator.writeStartArray();
+        for (Instance instance : collection.getInstances()) {
+          writeInstance(generator, instance);
+        }
+        generator.writeEndArray();
+      }
+      writeResultInfo(generator, collection.getResultInfo());
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer;
+  }
+
+  public Buffer write(PackageCollection collection) {
+    Buffer buffer = Buffer.buffer();
+    try (JsonGenerator generator = createGenerator(buffer)) {
+      generator.writeStartObject();
+      if (collection.getPackages() != null) {
+        generator.writeFieldName(PACKAGES);
+        generator.writeStartArray();
+        for (Package packageObject : collection.getPackages()) {
+          writePackage(generator, packageObject);
+        }
+        generator.writeEndArray();
+      }
+      writeResultInfo(generator, collection.getResultInfo());
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer;
+  }
+
+  public void writeInstance(JsonGenerator generator, Instance instance) throws IOException {
+    generator.writeStartObject();
+    writeString(generator, ID, instance.getId());
+    writeString(generator, TITLE, instance.getTitle());
+    if (instance.getContributor() != null) {
+      generator.writeFieldName(CONTRIBUTOR);
+      generator.writeStartArray();
+      for (Contributor contributor : instance.getContributor()) {
+        generator.writeStartObject();
+        writeString(generator, NAME, contributor.getName());
+        writeString(generator, TYPE, contributor.getType());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    }
+    writeString(generator, PUBLISHER, instance.getPublisher());
+    if (instance.getType() != null) {
+      writeString(generator, TYPE, instance.getType().value());
+    }
+    writeString(generator, FORMAT, instance.getFormat());
+    if (instance.getIdentifier() != null) {
+      generator.writeFieldName(IDENTIFIER);
+      generator.writeStartArray();
+      for (Identifier identifier : instance.getIdentifier()) {
+        generator.writeStartObject();
+        writeString(generator, VALUE, identifier.getValue());
+        writeString(generator, TYPE, identifier.getType());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    }
+    writeString(generator, SOURCE, instance.getSource());
+    writeString(generator, VERSION, instance.getVersion());
+    if (instance.getSubject() != null) {
+      generator.writeFieldName(SUBJECT);
+      generator.writeStartArray();
+      for (Subject subject : instance.getSubject()) {
+        generator.writeStartObject();
+        writeString(generator, NAME, subject.getName());
+        writeString(generator, TYPE, subject.getType());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    }
+    generator.writeEndObject();
+  }
+
+  public void writePackage(JsonGenerator generator, Package packageObject) throws IOException {
+    generator.writeStartObject();
+    writeString(generator, ID, packageObject.getId());
+    writeString(generator, NAME, packageObject.getName());
+    writeString(generator, PROVIDER, packageObject.getProvider());
+    writeString(generator, PROVIDER_ID, packageObject.getProviderId());
+    if (packageObject.getIsSelected() != null) {
+      writeString(generator, IS_SELECTED, packageObject.getIsSelected().value());
+    }
+    Coverage coverage = packageObject.getCoverage();
+    if (coverage != null) {
+      generator.writeFieldName(COVERAGE);
+      generator.writeStartObject();
+      writeString(generator, BEGIN_COVERAGE, coverage.getBeginCoverage());
+      writeString(generator, END_COVERAGE, coverage.getEndCoverage());
+      generator.writeEndObject();
+    }
+    if (packageObject.getItemCount() != null) {
+      generator.writeFieldName(ITEM_COUNT);
+      generator.writeNumber(packageObject.getItemCount());
+    }
+    if (packageObject.getType() != null) {
+      writeString(generator, TYPE, packageObject.getType().value());
+    }
+    writeString(generator, SOURCE, packageObject.getSource());
+    generator.writeEndObject();
+  }
+
+  private static void writeResultInfo(JsonGenerator generator, ResultInfo resultInfo) throws IOException {
+    if (resultInfo == null) {
+      return;
+    }
+    generator.writeFieldName(RESULT_INFO);
+    generator.writeStartObject();
+    if (resultInfo.getTotalRecords() != null) {
+      generator.writeFieldName(TOTAL_RECORDS);
+      generator.writeNumber(resultInfo.getTotalRecords());
+    }
+    if (resultInfo.getFacets() != null) {
+      // this module never computes facets, only the empty default list is written
+      generator.writeFieldName(FACETS);
+      generator.writeStartArray();
+      generator.writeEndArray();
+    }
+    writeDiagnostics(generator, resultInfo.getDiagnostics());
+    generator.writeEndObject();
+  }
+
+  private static void writeDiagnostics(JsonGenerator generator, Collection<Diagnostic> diagnostics) throws IOException {
+    if (diagnostics == null) {
+      return;
+    }
+    generator.writeFieldName(DIAGNOSTICS);
+    generator.writeStartArray();
+    for (Diagnostic diagnostic : diagnostics) {
+      generator.writeStartObject();
+      writeString(generator, SOURCE, diagnostic.getSource());
+      writeString(generator, CODE, diagnostic.getCode());
+      writeString(generator, MESSAGE, diagnostic.getMessage());
+      writeString(generator, MODULE, diagnostic.getModule());
+      if (diagnostic.getRecordCount() != null) {
+        generator.writeFieldName(RECORD_COUNT);
+        generator.writeNumber(diagnostic.getRecordCount());
+      }
+      writeString(generator, QUERY, diagnostic.getQuery());
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+  }
+
+  static void writeString(JsonGenerator generator, SerializableString name, String value) throws IOException {
+    if (value != null) {
+      generator.writeFieldName(name);
+      generator.writeString(value);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.folio.codex.json;
+
+import static org.folio.codex.json.CodexJsonWriter.CONTRIBUTOR;
+import static org.folio.codex.json.CodexJsonWriter.FORMAT;
+import static org.folio.codex.json.CodexJsonWriter.ID;
+import static org.folio.codex.json.CodexJsonWriter.IDENTIFIER;
+import static org.folio.codex.json.CodexJsonWriter.NAME;
+import static org.folio.codex.json.CodexJsonWriter.PUBLISHER;
+import static org.folio.codex.json.CodexJsonWriter.SOURCE;
+import static org.folio.codex.json.CodexJsonWriter.SUBJECT;
+import static org.folio.codex.json.CodexJsonWriter.TITLE;
+import static org.folio.codex.json.CodexJsonWriter.TYPE;
+import static org.folio.codex.json.CodexJsonWriter.VALUE;
+import static org.folio.codex.json.CodexJsonWriter.VERSION;
+import static org.folio.codex.json.CodexJsonWriter.writeString;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.stereotype.Component;
+
+import org.folio.converter.hld2cdx.TitleMapping;
+import org.folio.holdingsiq.model.Contributor;
+import org.folio.holdingsiq.model.Identifier;
+import org.folio.holdingsiq.model.Subject;
+import org.folio.holdingsiq.model.Title;
+
+/**
+ * Writes a HoldingsIQ {@link Title} as Codex instance JSON without building
+ * the intermediate {@link org.folio.rest.jaxrs.model.Instance} model.
+ * <p>
+ * The values come from {@link TitleMapping}, which the
+ * {@link org.folio.converter.hld2cdx.TitleConverter} and its identifier,
+ * contributor and subject converters use as well. Duplicates are dropped the
+ * same way the sets of the model drop them.
+ * <p>
+ * Only the export uses it. Search responses are small, and they are built
+ * from cached Instance models and merged searches, so they keep the model.
+ */
+@Component
+public class TitleJsonTranscoder {
+
+  public void writeInstance(JsonGenerator generator, Title title) throws IOException {
+    generator.writeStartObject();
+    writeString(generator, ID, TitleMapping.id(title));
+    writeString(generator, TITLE, title.getTitleName());
+    writeContributors(generator, title.getContributorsList());
+    writeString(generator, PUBLISHER, title.getPublisherName());
+    writeString(generator, TYPE, TitleMapping.type(title).value());
+    writeString(generator, FORMAT, TitleMapping.E_RESOURCE_FORMAT);
+    writeIdentifiers(generator, title.getIdentifiersList());
+    writeString(generator, SOURCE, TitleMapping.E_RESOURCE_SOURCE);
+    writeString(generator, VERSION, title.getEdition());
+    writeSubjects(generator, title.getSubjectsList());
+    generator.writeEndObject();
+  }
+
+  private static void writeIdentifiers(JsonGenerator generator, List<Identifier> identifiers) throws IOException {
+    generator.writeFieldName(IDENTIFIER);
+    generator.writeStartArray();
+    if (identifiers != null) {
+      Set<String> written = identifiers.size() > 1 ? new HashSet<>() : null;
+      for (Identifier identifier : identifiers) {
+        String codexType = TitleMapping.identifierType(identifier);
+        if (codexType == null) {
+          continue;
+        }
+        if (written == null || written.add(codexType + '\u0000' + TitleMapping.identifierValue(identifier))) {
+          generator.writeStartObject();
+          writeString(generator, VALUE, TitleMapping.identifierValue(identifier));
+          writeString(generator, TYPE, codexType);
+          generator.writeEndObject();
+        }
+      }
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeContributors(JsonGenerator generator, List<Contributor> contributors) throws IOException {
+    generator.writeFieldName(CONTRIBUTOR);
+    generator.writeStartArray();
+    if (contributors != null) {
+      Set<String> written = contributors.size() > 1 ? new HashSet<>() : null;
+      for (Contributor contributor : contributors) {
+        String name = TitleMapping.contributorName(contributor);
+        String type = TitleMapping.contributorType(contributor);
+        if (written == null || written.add(name + '\u0000' + type)) {
+          generator.writeStartObject();
+          writeString(generator, NAME, name);
+          writeString(generator, TYPE, type);
+          generator.writeEndObject();
+        }
+      }
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeSubjects(JsonGenerator generator, List<Subject> subjects) throws IOException {
+    generator.writeFieldName(SUBJECT);
+    generator.writeStartArray();
+    if (subjects != null) {
+      Set<String> written = subjects.size() > 1 ? new HashSet<>() : null;
+      for (Subject subject : subjects) {
+        String name = TitleMapping.subjectName(subject);
+        String type = TitleMapping.subjectType(subject);
+        if (written == null || written.add(name + '\u0000' + type)) {
+          generator.writeStartObject();
+          writeString(generator, NAME, name);
+          writeString(generator, TYPE, type);
+          generator.writeEndObject();
+        }
+      }
+    }
+    generator.writeEndArray();
+  }
+}
@@ -10,8 +10,8 @@ public class ContributorConverter implements Converter<org.folio.holdingsiq.mode
   @Override
   public Contributor convert(@NonNull org.folio.holdingsiq.model.Contributor source) {
     return new Contributor()
-      .withName(source.getTitleContributor())
-      .withType(source.getType());
+      .withName(TitleMapping.contributorName(source))
+      .withType(TitleMapping.contributorType(source));
   }
 
 }
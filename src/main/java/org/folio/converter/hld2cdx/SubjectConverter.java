@@ -10,7 +10,7 @@ public class SubjectConverter implements Converter<org.folio.holdingsiq.model.Su
   @Override
   public Subject convert(@NonNull org.folio.holdingsiq.model.Subject source) {
     return new Subject()
-      .withName(source.getValue())
-      .withType(source.getType());
+      .withName(TitleMapping.subjectName(source))
+      .withType(TitleMapping.subjectType(source));
   }
 }
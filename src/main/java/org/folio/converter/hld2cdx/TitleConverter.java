@@ -10,7 +10,6 @@ import org.folio.holdingsiq.model.Title;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.lang.NonNull;
 
-import org.folio.codex.PubType;
 import org.folio.rest.jaxrs.model.Contributor;
 import org.folio.rest.jaxrs.model.Identifier;
 import org.folio.rest.jaxrs.model.Instance;
@@ -18,9 +17,6 @@ import org.folio.rest.jaxrs.model.Subject;
 
 public class TitleConverter implements Converter<Title, Instance> {
 
-  private static final String E_RESOURCE_FORMAT = "Electronic Resource";
-  private static final String E_RESOURCE_SOURCE = "kb";
-
   private Converter<org.folio.holdingsiq.model.Identifier, Identifier> identifierConverter;
   private Converter<org.folio.holdingsiq.model.Contributor, Contributor> contributorConverter;
   private Converter<org.folio.holdingsiq.model.Subject, Subject> subjectConverter;
@@ -38,12 +34,12 @@ public class TitleConverter implements Converter<Title, Instance> {
   public Instance convert(@NonNull Title source) {
     final Instance codexInstance = new Instance();
 
-    codexInstance.setId(Integer.toString(source.getTitleId()));
+    codexInstance.setId(TitleMapping.id(source));
     codexInstance.setTitle(source.getTitleName());
     codexInstance.setPublisher(source.getPublisherName());
-    codexInstance.setType(PubType.fromRMAPI(source.getPubType()).getCodex());
-    codexInstance.setFormat(E_RESOURCE_FORMAT);
-    codexInstance.setSource(E_RESOURCE_SOURCE);
+    codexInstance.setType(TitleMapping.type(source));
+    codexInstance.setFormat(TitleMapping.E_RESOURCE_FORMAT);
+    codexInstance.setSource(TitleMapping.E_RESOURCE_SOURCE);
     codexInstance.setVersion(source.getEdition());
 
     if (isNotEmpty(source.getIdentifiersList())) {
@@ -0,0 +1,70 @@
+package org.folio.converter.hld2cdx;
+
+import org.folio.codex.IdentifierSubType;
+import org.folio.codex.IdentifierType;
+import org.folio.codex.PubType;
+import org.folio.holdingsiq.model.Contributor;
+import org.folio.holdingsiq.model.Identifier;
+import org.folio.holdingsiq.model.Subject;
+import org.folio.holdingsiq.model.Title;
+import org.folio.rest.jaxrs.model.Instance;
+
+/**
+ * Maps the fields of a HoldingsIQ {@link Title} to Codex instance values.
+ * <p>
+ * Shared by {@link TitleConverter} and its identifier, contributor and subject
+ * converters, which build the Instance model, and by
+ * {@link org.folio.codex.json.TitleJsonTranscoder}, which writes the same
+ * values as JSON directly.
+ */
+public final class TitleMapping {
+
+  public static final String E_RESOURCE_FORMAT = "Electronic Resource";
+  public static final String E_RESOURCE_SOURCE = "kb";
+
+  private TitleMapping() {
+  }
+
+  public static String id(Title title) {
+    return Integer.toString(title.getTitleId());
+  }
+
+  public static Instance.Type type(Title title) {
+    return PubType.fromRMAPI(title.getPubType()).getCodex();
+  }
+
+  /**
+   * @return the Codex type of the identifier, with the subtype in parentheses
+   * when it is known; null for identifiers of unknown type, which are not mapped
+   */
+  public static String identifierType(Identifier identifier) {
+    final IdentifierType type = IdentifierType.valueOf(identifier.type);
+    if (type == IdentifierType.UNKNOWN) {
+      return null;
+    }
+    final IdentifierSubType subType = IdentifierSubType.valueOf(identifier.subtype);
+    return subType == IdentifierSubType.UNKNOWN
+      ? type.getDisplayName()
+      : type.getDisplayName() + '(' + subType.getDisplayName() + ')';
+  }
+
+  public static String identifierValue(Identifier identifier) {
+    return identifier.id;
+  }
+
+  public static String contributorName(Contributor contributor) {
+    return contributor.getTitleContributor();
+  }
+
+  public static String contributorType(Contributor contributor) {
+    return contributor.getType();
+  }
+
+  public static String subjectName(Subject subject) {
+    return subject.getValue();
+  }
+
+  public static String subjectType(Subject subject) {
+    return subject.getType();
+  }
+}
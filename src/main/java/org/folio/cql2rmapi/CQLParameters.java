@@ -1,14 +1,17 @@
 package org.folio.cql2rmapi;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.z3950.zing.cql.CQLAndNode;
 import org.z3950.zing.cql.CQLBooleanNode;
 import org.z3950.zing.cql.CQLNode;
+import org.z3950.zing.cql.CQLOrNode;
 import org.z3950.zing.cql.CQLParseException;
 import org.z3950.zing.cql.CQLParser;
 import org.z3950.zing.cql.CQLSortNode;
@@ -21,31 +24,68 @@ public class CQLParameters {
   private static final String ERROR = "Unsupported Query Format : ";
   private static final String UNSUPPORTED = " is not supported.";
 
+  private static final int MAX_ALTERNATIVES = 10;
+
   private Map<String, String> parameters = new HashMap<>();
   private String sort;
+  private List<String> sortKeys = Collections.emptyList();
   private boolean idSearch;
   private String idSearchValue;
+  private List<CQLParameters> alternatives = Collections.emptyList();
 
   public CQLParameters(Map<String, String> parameters, String sort, boolean idSearch, String idSearchValue) {
     this.parameters = parameters;
     this.sort = sort;
+    this.sortKeys = sort != null ? Collections.singletonList(sort) : Collections.emptyList();
     this.idSearch = idSearch;
     this.idSearchValue = idSearchValue;
   }
 
   public CQLParameters(String query) throws QueryValidationException {
     CQLNode node = initCQLParser(query);
-    parseNode(node);
+    List<Map<String, String>> branches = parseNode(node);
+    if (branches.size() == 1) {
+      // parsed parameters may be shared through ParsedQueryCache
+      parameters = Collections.unmodifiableMap(branches.get(0));
+      // branches keep the order of the query, the last id term wins
+      for (Map.Entry<String, String> entry : parameters.entrySet()) {
+        if (ID.equals(entry.getKey()) || CODEX_ID.equals(entry.getKey())) {
+          idSearch = true;
+          idSearchValue = entry.getValue();
+        }
+      }
+    } else {
+      parameters = Collections.emptyMap();
+      alternatives = toAlternatives(branches);
+    }
+  }
+
+  /**
+   * Parses simple queries with {@link SimpleCQLParser} and everything else with the full CQL parser.
+   */
+  public static CQLParameters parse(String query) throws QueryValidationException {
+    CQLParameters parameters = query != null ? SimpleCQLParser.parse(query) : null;
+    return parameters != null ? parameters : new CQLParameters(query);
   }
 
   public Map<String, String> getParameters() {
     return parameters;
   }
 
+  /**
+   * @return the first sort key, or null if the query is not sorted
+   */
   public String getSort() {
     return sort;
   }
 
+  /**
+   * @return all sort keys of the query in order, empty if the query is not sorted
+   */
+  public List<String> getSortKeys() {
+    return sortKeys;
+  }
+
   public boolean isIdSearch() {
     return idSearch;
   }
@@ -54,32 +94,59 @@ public class CQLParameters {
     return idSearchValue;
   }
 
-  private void parseNode(CQLNode node) throws QueryValidationException {
+  /**
+   * @return true if the query combines several searches with OR, see {@link #getAlternatives()}
+   */
+  public boolean isOrQuery() {
+    return !alternatives.isEmpty();
+  }
+
+  /**
+   * The searches of an OR query, each of them without OR. AND is distributed
+   * over OR, so {@code (title=a or title=b) and ext.selected=true} gives
+   * {@code title=a and ext.selected=true} and {@code title=b and ext.selected=true}.
+   *
+   * @return the searches of an OR query, empty for any other query
+   */
+  public List<CQLParameters> getAlternatives() {
+    return alternatives;
+  }
+
+  private List<CQLParameters> toAlternatives(List<Map<String, String>> branches) throws QueryValidationException {
+    List<CQLParameters> result = new ArrayList<>();
+    for (Map<String, String> branch : branches) {
+      if (branch.containsKey(ID) || branch.containsKey(CODEX_ID)) {
+        throw new QueryUnsupportedFeatureException(ERROR + "Search by id combined with OR" + UNSUPPORTED);
+      }
+      CQLParameters alternative = new CQLParameters(Collections.unmodifiableMap(branch), sort, false, null);
+      alternative.sortKeys = sortKeys;
+      result.add(alternative);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  private List<Map<String, String>> parseNode(CQLNode node) throws QueryValidationException {
     if (node instanceof CQLTermNode) {
-      parseCQLTermNode((CQLTermNode) node);
+      return parseCQLTermNode((CQLTermNode) node);
     }
     if (node instanceof CQLBooleanNode) {
-      parseCQLBooleanNode((CQLBooleanNode) node);
+      return parseCQLBooleanNode((CQLBooleanNode) node);
     }
     if (node instanceof CQLSortNode) {
-      parseCQLSortNode((CQLSortNode) node);
+      return parseCQLSortNode((CQLSortNode) node);
     }
+    return Collections.singletonList(new LinkedHashMap<>());
   }
 
-  private void parseCQLTermNode(CQLTermNode node) throws QueryValidationException {
+  private List<Map<String, String>> parseCQLTermNode(CQLTermNode node) throws QueryValidationException {
     //Check if comparison operator is valid
     checkComparisonOperator(node);
 
     final String indexNode = node.getIndex(); // gives the search field
     final String termNode = node.getTerm(); // gives the search value
-    if (Arrays.asList(ID, CODEX_ID).contains(indexNode)) {
-      idSearch = true;
-      idSearchValue = termNode;
-    }
-    if(parameters.get(indexNode) !=null){
-      throw new QueryValidationException(ERROR + "Duplicated field " + indexNode + UNSUPPORTED);
-    }
-    parameters.put(indexNode, termNode);
+    Map<String, String> branch = new LinkedHashMap<>();
+    branch.put(indexNode, termNode);
+    return Collections.singletonList(branch);
   }
 
   private void checkComparisonOperator(CQLTermNode node) throws QueryValidationException {
@@ -90,30 +157,54 @@ public class CQLParameters {
     }
   }
 
-  private void parseCQLSortNode(CQLSortNode node) throws QueryValidationException {
-    final List<ModifierSet> sortIndexes = node.getSortIndexes();
-    if (sortIndexes.size() > 1) {
-      throw new QueryValidationException(ERROR + "Sorting on multiple keys" + UNSUPPORTED);
-    }
-    // At this point RM API supports only sort by title and relevance
-    // Inventory does not support relevance, so we only sort by title
-    for (final ModifierSet ms : sortIndexes) {
-      sort = ms.getBase();
+  private List<Map<String, String>> parseCQLSortNode(CQLSortNode node) throws QueryValidationException {
+    // The first key is the order of the RM API search, which only supports title (name) and relevance.
+    // Further keys are applied by the module, see TitleParameters
+    final List<String> keys = new ArrayList<>();
+    for (final ModifierSet ms : node.getSortIndexes()) {
+      keys.add(ms.getBase());
     }
+    sortKeys = Collections.unmodifiableList(keys);
+    sort = keys.isEmpty() ? null : keys.get(0);
 
     // Get the search field and search value from sort node
-    parseNode(node.getSubtree());
+    return parseNode(node.getSubtree());
   }
 
-  private void parseCQLBooleanNode(CQLBooleanNode node) throws QueryValidationException {
-    if (node instanceof CQLAndNode) {
-      final CQLNode leftNode = node.getLeftOperand();
-      final CQLNode rightNode = node.getRightOperand();
-      parseNode(leftNode);
-      parseNode(rightNode);
-    } else {
-      throw new QueryUnsupportedFeatureException(ERROR + "Boolean operators OR, NOT and PROX are unsupported.");
+  private List<Map<String, String>> parseCQLBooleanNode(CQLBooleanNode node) throws QueryValidationException {
+    if (!(node instanceof CQLAndNode) && !(node instanceof CQLOrNode)) {
+      throw new QueryUnsupportedFeatureException(ERROR + "Boolean operators NOT and PROX are unsupported.");
+    }
+    final List<Map<String, String>> left = parseNode(node.getLeftOperand());
+    final List<Map<String, String>> right = parseNode(node.getRightOperand());
+    int size = node instanceof CQLOrNode ? left.size() + right.size() : left.size() * right.size();
+    if (size > MAX_ALTERNATIVES) {
+      throw new QueryUnsupportedFeatureException(ERROR + "More than " + MAX_ALTERNATIVES + " searches combined with OR" + UNSUPPORTED);
+    }
+    if (node instanceof CQLOrNode) {
+      List<Map<String, String>> result = new ArrayList<>(left);
+      result.addAll(right);
+      return result;
+    }
+    // AND is distributed over the searches combined with OR on either side
+    List<Map<String, String>> result = new ArrayList<>();
+    for (Map<String, String> leftBranch : left) {
+      for (Map<String, String> rightBranch : right) {
+        result.add(merge(leftBranch, rightBranch));
+      }
+    }
+    return result;
+  }
+
+  private static Map<String, String> merge(Map<String, String> left, Map<String, String> right) throws QueryValidationException {
+    Map<String, String> result = new LinkedHashMap<>(left);
+    for (Map.Entry<String, String> entry : right.entrySet()) {
+      if (result.containsKey(entry.getKey())) {
+        throw new QueryValidationException(ERROR + "Duplicated field " + entry.getKey() + UNSUPPORTED);
+      }
+      result.put(entry.getKey(), entry.getValue());
     }
+    return result;
   }
 
   private CQLNode initCQLParser(String query) throws QueryValidationException {
@@ -25,7 +25,7 @@ public abstract class CommonParameters {
       "true", "selected",
       "false", "notselected"
     );
-  private static final String CODEX_PREFIX = "codex.";
+  protected static final String CODEX_PREFIX = "codex.";
   protected Sort sortType;
 
   public Sort getSortType() {
@@ -25,7 +25,13 @@ public class PackageParameters extends CommonParameters {
   private String filterType;
   private final PackageParametersValidator parametersValidator = new PackageParametersValidator();
 
-  public PackageParameters(CQLParameters cqlParameters) {
+  public PackageParameters(CQLParameters cqlParameters) throws QueryUnsupportedFeatureException {
+    if (cqlParameters.isOrQuery()) {
+      throw new QueryUnsupportedFeatureException(ERROR + "Boolean operator OR" + UNSUPPORTED);
+    }
+    if (cqlParameters.getSortKeys().size() > 1) {
+      throw new QueryUnsupportedFeatureException(ERROR + "Sorting on multiple keys" + UNSUPPORTED);
+    }
     parseCqlParameters(cqlParameters);
   }
 
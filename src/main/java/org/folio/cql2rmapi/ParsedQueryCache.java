@@ -0,0 +1,148 @@
+package org.folio.cql2rmapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.ValidationException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Size-bounded cache from raw CQL query strings to the parsed and validated
+ * parameters.
+ * <p>
+ * Rejected queries are cached too: the exception raised by the first parse is
+ * rethrown for every later request with the same query string. Cached
+ * parameters are shared between requests and must not be modified.
+ * <p>
+ * Title and package parameters are built from the cached CQL parameters;
+ * hits and misses are only counted for the lookup the caller made, not for
+ * the CQL parameters looked up to build them.
+ */
+public class ParsedQueryCache {
+  private final Cache<String, Parsed<CQLParameters>> cqlParameters;
+  private final Cache<String, Parsed<TitleParameters>> titleParameters;
+  private final Cache<String, Parsed<PackageParameters>> packageParameters;
+  private final Cache<String, Parsed<List<TitleParameters>>> titleAlternatives;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * @param maxSize maximum number of query strings kept per kind of parameters
+   */
+  public ParsedQueryCache(long maxSize) {
+    this.cqlParameters = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    this.titleParameters = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    this.packageParameters = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    this.titleAlternatives = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  public CQLParameters getCQLParameters(String query) throws QueryValidationException {
+    return get(cqlParameters, query, CQLParameters::parse, true);
+  }
+
+  public TitleParameters getTitleParameters(String query) throws QueryValidationException {
+    return get(titleParameters, query, q -> new TitleParameters(getCQLParametersUncounted(q)), true);
+  }
+
+  public PackageParameters getPackageParameters(String query) throws QueryValidationException {
+    return get(packageParameters, query, q -> new PackageParameters(getCQLParametersUncounted(q)), true);
+  }
+
+  /**
+   * @return title parameters for each search of an OR query, see {@link CQLParameters#getAlternatives()}
+   */
+  public List<TitleParameters> getTitleAlternatives(String query) throws QueryValidationException {
+    return get(titleAlternatives, query, q -> {
+      List<TitleParameters> alternatives = new ArrayList<>();
+      for (CQLParameters alternative : getCQLParametersUncounted(q).getAlternatives()) {
+        alternatives.add(new TitleParameters(alternative));
+      }
+      return Collections.unmodifiableList(alternatives);
+    }, true);
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 1.0 : (double) hits / total;
+  }
+
+  public void invalidateAll() {
+    cqlParameters.invalidateAll();
+    titleParameters.invalidateAll();
+    packageParameters.invalidateAll();
+    titleAlternatives.invalidateAll();
+  }
+
+  private CQLParameters getCQLParametersUncounted(String query) throws QueryValidationException {
+    return get(cqlParameters, query, CQLParameters::parse, false);
+  }
+
+  private <T> T get(Cache<String, Parsed<T>> cache, String query, Parser<T> parser, boolean counted)
+    throws QueryValidationException {
+    Parsed<T> parsed = cache.getIfPresent(query);
+    if (parsed != null) {
+      if (counted) {
+        hitCount.incrementAndGet();
+      }
+    } else {
+      if (counted) {
+        missCount.incrementAndGet();
+      }
+      parsed = parse(query, parser);
+      cache.put(query, parsed);
+    }
+    return parsed.get();
+  }
+
+  private static <T> Parsed<T> parse(String query, Parser<T> parser) {
+    try {
+      return new Parsed<>(parser.parse(query), null);
+    } catch (QueryValidationException | ValidationException e) {
+      return new Parsed<>(null, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "parsedQueryCache{hits=" + hitCount.get() + ", misses=" + missCount.get()
+      + String.format(", hitRate=%.1f%%", getHitRate() * 100) + "}";
+  }
+
+  @FunctionalInterface
+  private interface Parser<T> {
+    T parse(String query) throws QueryValidationException;
+  }
+
+  private static final class Parsed<T> {
+    private final T value;
+    private final Exception exception;
+
+    private Parsed(T value, Exception exception) {
+      this.value = value;
+      this.exception = exception;
+    }
+
+    private T get() throws QueryValidationException {
+      if (exception instanceof QueryValidationException) {
+        throw (QueryValidationException) exception;
+      }
+      if (exception != null) {
+        throw (ValidationException) exception;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package org.folio.cql2rmapi;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Recognizes the simple queries that make up most of the traffic without
+ * going through the full CQL parser:
+ * <pre>
+ *   index=term [and index=term ...] [sortby index]
+ * </pre>
+ * where a term is a single word or a double-quoted string without escapes.
+ * <p>
+ * Anything else, including every query the full parser would reject, is left
+ * to the full parser: {@link #parse(String)} returns {@code null} for it, so
+ * results and error messages stay the same.
+ */
+final class SimpleCQLParser {
+  private static final String ID = "id";
+  private static final String CODEX_ID = "codex.id";
+  private static final String AND = "and";
+  private static final String SORTBY = "sortby";
+
+  private final String query;
+  private int position;
+
+  private SimpleCQLParser(String query) {
+    this.query = query;
+  }
+
+  /**
+   * @return the parameters of a simple query, or {@code null} if the query has to go through the full parser
+   */
+  static CQLParameters parse(String query) {
+    return new SimpleCQLParser(query).parseQuery();
+  }
+
+  private CQLParameters parseQuery() {
+    Map<String, String> parameters = new HashMap<>();
+    String idSearchValue = null;
+    boolean idSearch = false;
+
+    do {
+      String index = readWord();
+      if (index == null || isKeyword(index) || !readEquals()) {
+        return null;
+      }
+      String term = readTerm();
+      if (term == null || parameters.containsKey(index)) {
+        return null;
+      }
+      if (ID.equals(index) || CODEX_ID.equals(index)) {
+        idSearch = true;
+        idSearchValue = term;
+      }
+      parameters.put(index, term);
+    } while (readKeyword(AND));
+
+    String sort = null;
+    if (readKeyword(SORTBY)) {
+      sort = readWord();
+      if (sort == null || isKeyword(sort)) {
+        return null;
+      }
+    }
+
+    skipWhitespace();
+    if (position != query.length()) {
+      return null;
+    }
+    return new CQLParameters(Collections.unmodifiableMap(parameters), sort, idSearch, idSearchValue);
+  }
+
+  private boolean readEquals() {
+    skipWhitespace();
+    if (position >= query.length() || query.charAt(position) != '=') {
+      return false;
+    }
+    position++;
+    // "==" and relation modifiers are left to the full parser
+    return position < query.length() && query.charAt(position) != '=' && query.charAt(position) != '/';
+  }
+
+  private String readTerm() {
+    skipWhitespace();
+    if (position < query.length() && query.charAt(position) == '"') {
+      int end = query.indexOf('"', position + 1);
+      if (end < 0) {
+        return null;
+      }
+      String term = query.substring(position + 1, end);
+      if (term.indexOf('\\') >= 0) {
+        return null;
+      }
+      position = end + 1;
+      return term;
+    }
+    String term = readWord();
+    return term == null || isKeyword(term) ? null : term;
+  }
+
+  private boolean readKeyword(String keyword) {
+    int start = position;
+    String word = readWord();
+    if (word != null && word.equalsIgnoreCase(keyword)) {
+      return true;
+    }
+    position = start;
+    return false;
+  }
+
+  private String readWord() {
+    skipWhitespace();
+    int start = position;
+    while (position < query.length() && isWordChar(query.charAt(position))) {
+      position++;
+    }
+    return position > start ? query.substring(start, position) : null;
+  }
+
+  private void skipWhitespace() {
+    while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+      position++;
+    }
+  }
+
+  private static boolean isWordChar(char c) {
+    switch (c) {
+      case '(':
+      case ')':
+      case '=':
+      case '<':
+      case '>':
+      case '"':
+      case '/':
+        return false;
+      default:
+        return !Character.isWhitespace(c);
+    }
+  }
+
+  private static boolean isKeyword(String word) {
+    return AND.equalsIgnoreCase(word) || SORTBY.equalsIgnoreCase(word)
+      || "or".equalsIgnoreCase(word) || "not".equalsIgnoreCase(word) || "prox".equalsIgnoreCase(word);
+  }
+}
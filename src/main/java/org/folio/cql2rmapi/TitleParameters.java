@@ -1,7 +1,10 @@
 package org.folio.cql2rmapi;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -13,7 +16,7 @@ import org.folio.holdingsiq.model.Sort;
 import org.folio.holdingsiq.service.validator.TitleParametersValidator;
 
 public class TitleParameters extends CommonParameters {
-  private static final String RESOURCE_TYPE = "resourceType";
+  public static final String RESOURCE_TYPE = "resourceType";
   private static final String CODEX_RESOURCE_TYPE = "codex.resourceType";
   private static final String CQL_SERVER_CHOICE = "cql.serverChoice";
   private static final String TITLE = "title";
@@ -22,7 +25,7 @@ public class TitleParameters extends CommonParameters {
   private static final String CODEX_IDENTIFIER = "codex.identifier";
   private static final String SUBJECT = "subject";
   private static final String CODEX_SUBJECT = "codex.subject";
-  private static final String PUBLISHER = "publisher";
+  public static final String PUBLISHER = "publisher";
   private static final String CODEX_PUBLISHER = "codex.publisher";
   private static final String ID = "id";
   private static final String CODEX_ID = "codex.id";
@@ -32,10 +35,19 @@ public class TitleParameters extends CommonParameters {
       TITLE, CODEX_TITLE, IDENTIFIER, CODEX_IDENTIFIER, SUBJECT, CODEX_SUBJECT, PUBLISHER, CODEX_PUBLISHER, ID, CODEX_ID);
 
   private FilterQuery filterQuery;
+  private List<String> secondarySortKeys;
 
   private final TitleParametersValidator validator = new TitleParametersValidator();
 
-  public TitleParameters(CQLParameters cqlParameters) {
+  /**
+   * @param cqlParameters a query without OR, the searches of an OR query are
+   *                      turned into parameters one by one, see {@link CQLParameters#getAlternatives()}
+   */
+  public TitleParameters(CQLParameters cqlParameters) throws QueryUnsupportedFeatureException {
+    if (cqlParameters.isOrQuery()) {
+      throw new QueryUnsupportedFeatureException(ERROR + "Boolean operator OR is not supported by this request,"
+        + " send each of the searches combined with OR as a query of its own.");
+    }
     parseCqlParameters(cqlParameters);
   }
 
@@ -43,6 +55,16 @@ public class TitleParameters extends CommonParameters {
     return filterQuery;
   }
 
+  /**
+   * Sort keys after title, {@link #PUBLISHER} or {@link #RESOURCE_TYPE}. RM API only sorts
+   * by title, titles with the same name are ordered by these keys in the module.
+   *
+   * @return the sort keys after title, empty if titles are only sorted by title
+   */
+  public List<String> getSecondarySortKeys() {
+    return secondarySortKeys;
+  }
+
   private void parseCqlParameters(CQLParameters cqlParameters) {
     FilterQuery.FilterQueryBuilder builder = FilterQuery.builder();
     Optional<String> unsupportedParameter = cqlParameters.getParameters().keySet().stream()
@@ -64,6 +86,7 @@ public class TitleParameters extends CommonParameters {
     } else {
       throw new ValidationException(ERROR + "Sorting on " + cqlSort + " is unsupported.");
     }
+    secondarySortKeys = parseSecondarySortKeys(cqlParameters.getSortKeys());
 
     String type = null;
     String codexType = getCodexParameter(RESOURCE_TYPE, parameters);
@@ -84,6 +107,21 @@ public class TitleParameters extends CommonParameters {
     validator.validate(filterQuery, sortType.getValue());
   }
 
+  private List<String> parseSecondarySortKeys(List<String> sortKeys) {
+    List<String> keys = new ArrayList<>();
+    for (String sortKey : sortKeys.subList(Math.min(1, sortKeys.size()), sortKeys.size())) {
+      String key = sortKey.toLowerCase().startsWith(CODEX_PREFIX) ? sortKey.substring(CODEX_PREFIX.length()) : sortKey;
+      if (PUBLISHER.equalsIgnoreCase(key)) {
+        keys.add(PUBLISHER);
+      } else if (RESOURCE_TYPE.equalsIgnoreCase(key)) {
+        keys.add(RESOURCE_TYPE);
+      } else {
+        throw new ValidationException(ERROR + "Sorting on " + sortKey + " is unsupported.");
+      }
+    }
+    return Collections.unmodifiableList(keys);
+  }
+
   private String getFilterValuesByType(String termNode) {
     try {
       return PubType.fromCodex(termNode).getRmAPI();
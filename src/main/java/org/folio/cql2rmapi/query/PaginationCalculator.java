@@ -3,28 +3,75 @@ package org.folio.cql2rmapi.query;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Plans the HoldingsIQ pages needed to return the objects in [offset, offset + limit).
+ * <p>
+ * HoldingsIQ only supports page number and page size (count) parameters, so the window
+ * requested by a client has to be covered by consecutive pages of one size. The size is
+ * chosen to need as few upstream requests as possible and, among the sizes that need the
+ * same number of requests, to fetch as few records as possible. The page size never
+ * exceeds the HoldingsIQ maximum of {@value RM_API_MAX_COUNT} records.
+ * <p>
+ * Cached pages are only shared by windows planned with the same page size. So when a
+ * canonical page size is set, it is used instead whenever it needs no more requests and
+ * fetches at most {@code maxExtraRecords} records more than the smallest plan; windows of
+ * most limits and offsets then share the same pages.
+ */
 public class PaginationCalculator {
   private static final int RM_API_MAX_COUNT = 100;
 
+  private final int canonicalPageSize;
+  private final int maxExtraRecords;
+
+  /**
+   * Plans the smallest pages only, without a canonical page size.
+   */
+  public PaginationCalculator() {
+    this(0, 0);
+  }
+
+  /**
+   * @param canonicalPageSize page size preferred when it costs little more, 0 for none
+   * @param maxExtraRecords   number of records the canonical page size may fetch more
+   */
+  public PaginationCalculator(int canonicalPageSize, int maxExtraRecords) {
+    this.canonicalPageSize = Math.min(canonicalPageSize, RM_API_MAX_COUNT);
+    this.maxExtraRecords = maxExtraRecords;
+  }
+
   public PaginationInfo getPagination(int offset, int limit) {
-    List<Page> pages = new ArrayList<>();
-    int rmAPILimit = Math.min(limit, RM_API_MAX_COUNT);
-    int pageOffsetRMAPI = computePageOffsetForRMAPI(offset, rmAPILimit);
-    pages.add(new Page(pageOffsetRMAPI, rmAPILimit));
-    while (checkIfSecondQueryIsNeeded(offset, limit, rmAPILimit, pageOffsetRMAPI)) {
-      pages.add(new Page(++pageOffsetRMAPI, rmAPILimit));
+    int lastIndex = offset + Math.max(limit, 1) - 1;
+
+    int bestPageSize = RM_API_MAX_COUNT;
+    int bestPageCount = getPageCount(offset, lastIndex, RM_API_MAX_COUNT);
+    for (int pageSize = 1; pageSize < RM_API_MAX_COUNT; pageSize++) {
+      int pageCount = getPageCount(offset, lastIndex, pageSize);
+      if (pageCount < bestPageCount
+        || (pageCount == bestPageCount && pageCount * pageSize < bestPageCount * bestPageSize)) {
+        bestPageSize = pageSize;
+        bestPageCount = pageCount;
+      }
     }
-    return new PaginationInfo(pages, offset % rmAPILimit, limit);
-  }
 
-  private int computePageOffsetForRMAPI(int offset, int limit) {
-    final float value = offset / (float) limit;
-    final double floor = Math.floor(value);
-    final double pageOffset = floor + 1;
-    return (int) pageOffset;
+    if (canonicalPageSize > 0) {
+      int canonicalPageCount = getPageCount(offset, lastIndex, canonicalPageSize);
+      if (canonicalPageCount <= bestPageCount
+        && canonicalPageCount * canonicalPageSize - bestPageCount * bestPageSize <= maxExtraRecords) {
+        bestPageSize = canonicalPageSize;
+        bestPageCount = canonicalPageCount;
+      }
+    }
+
+    // HoldingsIQ page numbers start with 1
+    int firstPage = offset / bestPageSize;
+    List<Page> pages = new ArrayList<>(bestPageCount);
+    for (int i = 0; i < bestPageCount; i++) {
+      pages.add(new Page(firstPage + i + 1, bestPageSize));
+    }
+    return new PaginationInfo(pages, offset - firstPage * bestPageSize, limit);
   }
 
-  private boolean checkIfSecondQueryIsNeeded(int offset, int limit, int limitRMAPI, int pageOffsetRMAPI) {
-    return (offset + limit) > (pageOffsetRMAPI * limitRMAPI);
+  private int getPageCount(int firstIndex, int lastIndex, int pageSize) {
+    return lastIndex / pageSize - firstIndex / pageSize + 1;
   }
 }
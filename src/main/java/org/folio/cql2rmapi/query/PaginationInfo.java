@@ -38,4 +38,15 @@ public class PaginationInfo {
   public int getLimit() {
     return limit;
   }
+
+  /**
+   * @return index of the first object to return within the whole result set
+   */
+  public int getOffset() {
+    if (pages.isEmpty()) {
+      return firstObjectIndex;
+    }
+    Page firstPage = pages.get(0);
+    return (firstPage.getOffset() - 1) * firstPage.getLimit() + firstObjectIndex;
+  }
 }
@@ -2,11 +2,19 @@ package org.folio.rest.impl;
 
 import static io.vertx.core.Future.succeededFuture;
 
+import static org.folio.codex.CodexResponses.endWithError;
+import static org.folio.codex.CodexResponses.errorResponse;
+import static org.folio.codex.CodexResponses.jsonResponse;
+import static org.folio.codex.CodexResponses.withStaleWarning;
+
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
 
 import javax.validation.ValidationException;
 import javax.ws.rs.core.Response;
@@ -15,26 +23,40 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.folio.codex.RMAPIToCodex;
+import org.folio.codex.batch.BatchExecutor;
+import org.folio.codex.batch.BatchFailures;
+import org.folio.codex.client.HoldingsIQRateLimiter.Traffic;
+import org.folio.codex.client.UpstreamErrors;
+import org.folio.codex.export.NdjsonExporter;
+import org.folio.codex.json.CodexJsonWriter;
+import org.folio.codex.json.TitleJsonTranscoder;
+import org.folio.codex.cache.RefreshAheadConfigurationCache;
+import org.folio.codex.cache.StaleData;
 import org.folio.cql2rmapi.CQLParameters;
+import org.folio.cql2rmapi.ParsedQueryCache;
 import org.folio.cql2rmapi.QueryValidationException;
 import org.folio.cql2rmapi.TitleParameters;
 import org.folio.cql2rmapi.query.PaginationCalculator;
 import org.folio.cql2rmapi.query.PaginationInfo;
 import org.folio.holdingsiq.model.Configuration;
 import org.folio.holdingsiq.model.OkapiData;
-import org.folio.holdingsiq.service.ConfigurationService;
-import org.folio.holdingsiq.service.exception.ConfigurationServiceException;
 import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
 import org.folio.parser.IdParser;
 import org.folio.rest.annotations.Validate;
+import org.folio.rest.jaxrs.model.Instance;
+import org.folio.rest.jaxrs.model.InstanceBatchRequest;
 import org.folio.rest.jaxrs.model.InstanceCollection;
 import org.folio.rest.jaxrs.model.ResultInfo;
 import org.folio.rest.jaxrs.resource.CodexInstances;
+import org.folio.rest.jaxrs.resource.CodexInstancesBatch;
+import org.folio.rest.jaxrs.resource.CodexInstancesExport;
 import org.folio.rest.jaxrs.resource.CodexInstancesSources;
 import org.folio.spring.SpringContextUtil;
 import org.folio.validator.QueryValidator;
@@ -44,16 +66,32 @@ import org.folio.validator.QueryValidator;
  *
  * @author mreno
  */
-public final class CodexInstancesImpl implements CodexInstances, CodexInstancesSources {
+public final class CodexInstancesImpl implements CodexInstances, CodexInstancesSources, CodexInstancesBatch,
+  CodexInstancesExport {
+
 
   private final Logger log = LogManager.getLogger(CodexInstancesImpl.class);
 
   @Autowired
-  private ConfigurationService configurationService;
+  private RefreshAheadConfigurationCache configurationCache;
   @Autowired
   private QueryValidator queryValidator;
   @Autowired
   private IdParser idParser;
+  @Autowired
+  private RMAPIToCodex rmapiToCodex;
+  @Autowired
+  private ParsedQueryCache parsedQueryCache;
+  @Autowired
+  private PaginationCalculator paginationCalculator;
+  @Autowired
+  private BatchExecutor batchExecutor;
+  @Autowired
+  private NdjsonExporter ndjsonExporter;
+  @Autowired
+  private CodexJsonWriter codexJsonWriter;
+  @Autowired
+  private TitleJsonTranscoder titleJsonTranscoder;
 
   public CodexInstancesImpl() {
     SpringContextUtil.autowireDependencies(this, Vertx.currentContext());
@@ -69,23 +107,18 @@ public final class CodexInstancesImpl implements CodexInstances, CodexInstancesS
                                 Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     log.info("method call: getCodexInstances");
 
+    StaleData stale = new StaleData();
     CompletableFuture.completedFuture(null)
       .thenCompose(o -> {
         queryValidator.validate(query, limit);
-        return configurationService.retrieveConfiguration(new OkapiData(okapiHeaders));
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
       })
-      .thenCompose(rmAPIConfig -> getCodexInstances(query, offset, limit, vertxContext, rmAPIConfig))
+      .thenCompose(rmAPIConfig -> getCodexInstances(query, offset, limit, rmAPIConfig, stale))
       .thenAccept(instances ->
-         asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesResponse.respond200WithApplicationJson(instances))))
+         asyncResultHandler.handle(succeededFuture(withStaleWarning(jsonResponse(codexJsonWriter.write(instances)), stale))))
       .exceptionally(throwable -> {
         log.error("getCodexInstances failed!", throwable);
-        if (throwable.getCause() instanceof ValidationException || throwable.getCause() instanceof QueryValidationException) {
-          asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesResponse.respond400WithTextPlain(throwable.getCause().getMessage())));
-        } else if (throwable.getCause() instanceof ConfigurationServiceException && ((ConfigurationServiceException) throwable.getCause()).getStatusCode() == 401) {
-          asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesResponse.respond401WithTextPlain(throwable.getCause().getMessage())));
-        } else {
-          asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesResponse.respond500WithTextPlain(throwable.getCause().getMessage())));
-        }
+        asyncResultHandler.handle(succeededFuture(errorResponse(throwable)));
         return null;
       });
   }
@@ -97,54 +130,143 @@ public final class CodexInstancesImpl implements CodexInstances, CodexInstancesS
 
     log.info("method call: getCodexInstancesById");
 
-    configurationService.retrieveConfiguration(new OkapiData(okapiHeaders))
+    StaleData stale = new StaleData();
+    configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders))
       .thenCompose(rmAPIConfig ->
-        RMAPIToCodex.getInstance(vertxContext, rmAPIConfig, idParser.parseTitleId(id))
+        rmapiToCodex.getInstance(rmAPIConfig, idParser.parseTitleId(id), stale)
       ).thenApply(instance -> {
       asyncResultHandler.handle(
-            succeededFuture(CodexInstances.GetCodexInstancesByIdResponse.respond200WithApplicationJson(instance)));
+            succeededFuture(withStaleWarning(CodexInstances.GetCodexInstancesByIdResponse.respond200WithApplicationJson(instance), stale)));
       return instance;
     }).exceptionally(throwable -> {
       log.error("getCodexInstancesById failed!", throwable);
-      if (throwable.getCause() instanceof ResourceNotFoundException
-        || throwable.getCause() instanceof ValidationException) {
-        asyncResultHandler.handle(
-              succeededFuture(CodexInstances.GetCodexInstancesByIdResponse.respond404WithTextPlain(id)));
-      } else if (throwable.getCause() instanceof ConfigurationServiceException && ((ConfigurationServiceException) throwable.getCause()).getStatusCode() == 401) {
-        	asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesResponse.respond401WithTextPlain(throwable.getCause().getMessage())));
-      } else {
-        	asyncResultHandler.handle(succeededFuture(CodexInstances.GetCodexInstancesByIdResponse.respond500WithTextPlain(throwable.getCause().getMessage())));
-      }
+      asyncResultHandler.handle(succeededFuture(errorResponse(throwable, id)));
       return null;
     });
   }
 
+  @Override
+  @Validate
+  public void postCodexInstancesBatch(String lang, InstanceBatchRequest entity, Map<String, String> okapiHeaders,
+                                      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    log.info("method call: postCodexInstancesBatch");
+
+    StaleData stale = new StaleData();
+    CompletableFuture.completedFuture(null)
+      .thenCompose(o -> {
+        if (entity.getIds().size() > batchExecutor.getMaxItems()) {
+          throw new ValidationException("Too many ids, at most " + batchExecutor.getMaxItems() + " are allowed");
+        }
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
+      })
+      .thenCompose(rmAPIConfig -> getInstancesByIds(entity.getIds(), rmAPIConfig, stale))
+      .thenAccept(instances ->
+        asyncResultHandler.handle(succeededFuture(withStaleWarning(jsonResponse(codexJsonWriter.write(instances)), stale))))
+      .exceptionally(throwable -> {
+        log.error("postCodexInstancesBatch failed!", throwable);
+        asyncResultHandler.handle(succeededFuture(errorResponse(throwable)));
+        return null;
+      });
+  }
+
+  private CompletableFuture<InstanceCollection> getInstancesByIds(List<String> ids, Configuration rmAPIConfig,
+                                                                  StaleData stale) {
+    BatchFailures failures = new BatchFailures();
+    return batchExecutor.<String, Instance>execute(ids,
+        id -> rmapiToCodex.getInstance(rmAPIConfig, idParser.parseTitleId(id), stale, Traffic.BULK),
+        failures::add)
+      .thenApply(results -> {
+        List<Instance> instances = results.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        return new InstanceCollection()
+          .withInstances(instances)
+          .withResultInfo(new ResultInfo()
+            .withTotalRecords(instances.size())
+            .withDiagnostics(failures.toDiagnostics(ids)));
+      });
+  }
+
+  @Override
+  @Validate
+  public void getCodexInstancesExport(String query, String lang, RoutingContext routingContext,
+                                      Map<String, String> okapiHeaders,
+                                      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    log.info("method call: getCodexInstancesExport");
+
+    HttpServerResponse response = routingContext.response();
+    CompletableFuture.completedFuture(null)
+      .thenCompose(o -> {
+        queryValidator.validate(query);
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
+      })
+      .thenCompose(rmAPIConfig -> exportInstances(query, rmAPIConfig, response))
+      .thenAccept(records -> log.info("Exported {} instances", records))
+      .exceptionally(throwable -> {
+        log.error("getCodexInstancesExport failed!", throwable);
+        endWithError(response, throwable);
+        return null;
+      });
+  }
+
+  private CompletionStage<Integer> exportInstances(String query, Configuration rmAPIConfig, HttpServerResponse response) {
+    try {
+      CQLParameters cqlParameters = parsedQueryCache.getCQLParameters(query);
+      if (cqlParameters.isIdSearch()) {
+        return ndjsonExporter.exportRecords(getInstanceById(rmAPIConfig, cqlParameters, new StaleData())
+          .thenApply(InstanceCollection::getInstances)
+          .toCompletableFuture(), codexJsonWriter::writeInstance, response);
+      }
+
+      TitleParameters parameters = parsedQueryCache.getTitleParameters(query);
+      if (!parameters.getSecondarySortKeys().isEmpty()) {
+        // the export streams the RM API order, titles are not buffered to sort them
+        throw new ValidationException("Sorting on multiple keys is not supported by the export.");
+      }
+      return ndjsonExporter.export((page, count) -> rmapiToCodex.getTitlesPage(parameters, page, count, rmAPIConfig),
+        titleJsonTranscoder::writeInstance, response);
+    } catch (QueryValidationException e) {
+      throw new CompletionException(e);
+    }
+  }
+
   private CompletionStage<InstanceCollection> getCodexInstances(String query, int offset, int limit,
-                                                                Context vertxContext, Configuration rmAPIConfig) {
+                                                                Configuration rmAPIConfig, StaleData stale) {
     try {
-      CQLParameters cqlParameters = new CQLParameters(query);
+      CQLParameters cqlParameters = parsedQueryCache.getCQLParameters(query);
       if (cqlParameters.isIdSearch()) {
-        return getInstanceById(vertxContext, rmAPIConfig, cqlParameters);
+        return getInstanceById(rmAPIConfig, cqlParameters, stale);
+      }
+      if (cqlParameters.isOrQuery()) {
+        return rmapiToCodex.getInstances(parsedQueryCache.getTitleAlternatives(query), offset, limit, rmAPIConfig, stale);
       }
 
-      TitleParameters parameters = new TitleParameters(cqlParameters);
+      TitleParameters parameters = parsedQueryCache.getTitleParameters(query);
+
+      if (!parameters.getSecondarySortKeys().isEmpty()) {
+        return rmapiToCodex.getInstances(Collections.singletonList(parameters), offset, limit, rmAPIConfig, stale);
+      }
 
-      PaginationInfo pagination = new PaginationCalculator().getPagination(offset, limit);
-      return RMAPIToCodex.getInstances(parameters, pagination, vertxContext, rmAPIConfig);
+      PaginationInfo pagination = paginationCalculator.getPagination(offset, limit);
+      return rmapiToCodex.getInstances(parameters, pagination, rmAPIConfig, stale);
     } catch (QueryValidationException e) {
       throw new CompletionException(e);
     }
   }
 
-  private CompletionStage<InstanceCollection> getInstanceById(Context vertxContext, Configuration rmAPIConfig, CQLParameters cqlParameters) {
-    return RMAPIToCodex.getInstance(vertxContext, rmAPIConfig, idParser.parseTitleId(cqlParameters.getIdSearchValue()))
+  private CompletionStage<InstanceCollection> getInstanceById(Configuration rmAPIConfig, CQLParameters cqlParameters,
+                                                              StaleData stale) {
+    return rmapiToCodex.getInstance(rmAPIConfig, idParser.parseTitleId(cqlParameters.getIdSearchValue()), stale)
       .thenApply(instance ->
         new InstanceCollection()
           .withInstances(Collections.singletonList(instance))
           .withResultInfo(new ResultInfo().withTotalRecords(1))
-      ).exceptionally(throwable ->
-        new InstanceCollection().withResultInfo(new ResultInfo().withTotalRecords(0))
-      );
+      ).exceptionally(throwable -> {
+        // an unknown id is an empty result, any other failure fails the search
+        Throwable cause = UpstreamErrors.unwrap(throwable);
+        if (cause instanceof ResourceNotFoundException) {
+          return new InstanceCollection().withResultInfo(new ResultInfo().withTotalRecords(0));
+        }
+        throw new CompletionException(cause);
+      });
   }
 
   @Override
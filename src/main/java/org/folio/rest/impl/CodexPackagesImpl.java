@@ -2,11 +2,19 @@ package org.folio.rest.impl;
 
 import static io.vertx.core.Future.succeededFuture;
 
+import static org.folio.codex.CodexResponses.endWithError;
+import static org.folio.codex.CodexResponses.errorResponse;
+import static org.folio.codex.CodexResponses.jsonResponse;
+import static org.folio.codex.CodexResponses.withStaleWarning;
+
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
 
 import javax.validation.ValidationException;
 import javax.ws.rs.core.Response;
@@ -15,29 +23,41 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.folio.codex.RMAPIToCodex;
+import org.folio.codex.batch.BatchExecutor;
+import org.folio.codex.batch.BatchFailures;
+import org.folio.codex.client.HoldingsIQRateLimiter.Traffic;
+import org.folio.codex.client.UpstreamErrors;
+import org.folio.codex.export.NdjsonExporter;
+import org.folio.codex.json.CodexJsonWriter;
+import org.folio.codex.cache.RefreshAheadConfigurationCache;
+import org.folio.codex.cache.StaleData;
 import org.folio.cql2rmapi.CQLParameters;
 import org.folio.cql2rmapi.PackageParameters;
+import org.folio.cql2rmapi.ParsedQueryCache;
 import org.folio.cql2rmapi.QueryValidationException;
 import org.folio.cql2rmapi.query.PaginationCalculator;
 import org.folio.cql2rmapi.query.PaginationInfo;
 import org.folio.holdingsiq.model.Configuration;
 import org.folio.holdingsiq.model.OkapiData;
-import org.folio.holdingsiq.service.ConfigurationService;
-import org.folio.holdingsiq.service.exception.ConfigurationServiceException;
 import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
 import org.folio.parser.IdParser;
 import org.folio.rest.annotations.Validate;
 import org.folio.rest.jaxrs.model.Package;
+import org.folio.rest.jaxrs.model.PackageBatchRequest;
 import org.folio.rest.jaxrs.model.PackageCollection;
 import org.folio.rest.jaxrs.model.ResultInfo;
 import org.folio.rest.jaxrs.model.Source;
 import org.folio.rest.jaxrs.model.SourceCollection;
 import org.folio.rest.jaxrs.resource.CodexPackages;
+import org.folio.rest.jaxrs.resource.CodexPackagesBatch;
+import org.folio.rest.jaxrs.resource.CodexPackagesExport;
 import org.folio.rest.jaxrs.resource.CodexPackagesSources;
 import org.folio.rest.tools.PomReader;
 import org.folio.spring.SpringContextUtil;
@@ -46,16 +66,29 @@ import org.folio.validator.QueryValidator;
 /**
  * Package related codex APIs.
  */
-public final class CodexPackagesImpl implements CodexPackages, CodexPackagesSources {
+public final class CodexPackagesImpl implements CodexPackages, CodexPackagesSources, CodexPackagesBatch,
+  CodexPackagesExport {
 
   private static final String MODULE_SOURCE = "kb";
   private final Logger log = LogManager.getLogger(CodexPackagesImpl.class);
   @Autowired
-  private ConfigurationService configurationService;
+  private RefreshAheadConfigurationCache configurationCache;
   @Autowired
   private IdParser idParser;
   @Autowired
   private QueryValidator queryValidator;
+  @Autowired
+  private RMAPIToCodex rmapiToCodex;
+  @Autowired
+  private ParsedQueryCache parsedQueryCache;
+  @Autowired
+  private PaginationCalculator paginationCalculator;
+  @Autowired
+  private BatchExecutor batchExecutor;
+  @Autowired
+  private NdjsonExporter ndjsonExporter;
+  @Autowired
+  private CodexJsonWriter codexJsonWriter;
 
   public CodexPackagesImpl() {
     SpringContextUtil.autowireDependencies(this, Vertx.currentContext());
@@ -64,13 +97,14 @@ public final class CodexPackagesImpl implements CodexPackages, CodexPackagesSour
   @Override
   @Validate
   public void getCodexPackages(String query, int offset, int limit, String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    StaleData stale = new StaleData();
     CompletableFuture.completedFuture(null)
       .thenCompose(o -> {
         queryValidator.validate(query, limit);
-        return configurationService.retrieveConfiguration(new OkapiData(okapiHeaders));
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
       })
-      .thenCompose(rmAPIConfig -> getPackages(query, offset, limit, vertxContext, rmAPIConfig))
-      .thenAccept(packages -> successfulPackages(packages, asyncResultHandler))
+      .thenCompose(rmAPIConfig -> getPackages(query, offset, limit, rmAPIConfig, stale))
+      .thenAccept(packages -> successfulPackages(packages, stale, asyncResultHandler))
       .exceptionally(e -> failedPackages(e, asyncResultHandler));
   }
 
@@ -78,51 +112,114 @@ public final class CodexPackagesImpl implements CodexPackages, CodexPackagesSour
   public void getCodexPackagesById(String id, String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     log.info("method call: getCodexPackagesById");
 
-    configurationService.retrieveConfiguration(new OkapiData(okapiHeaders))
-      .thenCompose(config -> RMAPIToCodex.getPackage(vertxContext, config, idParser.parsePackageId(id)))
-      .thenAccept(pkg -> successfulPkgById(pkg, asyncResultHandler))
+    StaleData stale = new StaleData();
+    configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders))
+      .thenCompose(config -> rmapiToCodex.getPackage(config, idParser.parsePackageId(id), stale))
+      .thenAccept(pkg -> successfulPkgById(pkg, stale, asyncResultHandler))
       .exceptionally(throwable -> failedPkgById(id, throwable, asyncResultHandler));
   }
 
-  private void successfulPkgById(Package pkg, Handler<AsyncResult<Response>> handler) {
-    handler.handle(succeededFuture(GetCodexPackagesByIdResponse.respond200WithApplicationJson(pkg)));
+  @Override
+  @Validate
+  public void postCodexPackagesBatch(String lang, PackageBatchRequest entity, Map<String, String> okapiHeaders,
+                                     Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    log.info("method call: postCodexPackagesBatch");
+
+    StaleData stale = new StaleData();
+    CompletableFuture.completedFuture(null)
+      .thenCompose(o -> {
+        if (entity.getIds().size() > batchExecutor.getMaxItems()) {
+          throw new ValidationException("Too many ids, at most " + batchExecutor.getMaxItems() + " are allowed");
+        }
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
+      })
+      .thenCompose(config -> getPackagesByIds(entity.getIds(), config, stale))
+      .thenAccept(packages -> asyncResultHandler.handle(
+        succeededFuture(withStaleWarning(jsonResponse(codexJsonWriter.write(packages)), stale))))
+      .exceptionally(throwable -> failedPackagesBatch(throwable, asyncResultHandler));
   }
 
-  private void successfulPackages(PackageCollection packages, Handler<AsyncResult<Response>> handler) {
-    handler.handle(succeededFuture(GetCodexPackagesResponse.respond200WithApplicationJson(packages)));
+  private CompletableFuture<PackageCollection> getPackagesByIds(List<String> ids, Configuration rmAPIConfig, StaleData stale) {
+    BatchFailures failures = new BatchFailures();
+    return batchExecutor.<String, Package>execute(ids,
+        id -> rmapiToCodex.getPackage(rmAPIConfig, idParser.parsePackageId(id), stale, Traffic.BULK),
+        failures::add)
+      .thenApply(results -> {
+        List<Package> packages = results.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        return new PackageCollection()
+          .withPackages(packages)
+          .withResultInfo(new ResultInfo()
+            .withTotalRecords(packages.size())
+            .withDiagnostics(failures.toDiagnostics(ids)));
+      });
   }
 
-  private Void failedPkgById(String id, Throwable throwable, Handler<AsyncResult<Response>> handler) {
-    log.error("getCodexPackagesById failed!", throwable);
+  @Override
+  @Validate
+  public void getCodexPackagesExport(String query, String lang, RoutingContext routingContext,
+                                     Map<String, String> okapiHeaders,
+                                     Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    log.info("method call: getCodexPackagesExport");
+
+    HttpServerResponse response = routingContext.response();
+    CompletableFuture.completedFuture(null)
+      .thenCompose(o -> {
+        queryValidator.validate(query);
+        return configurationCache.retrieveConfiguration(new OkapiData(okapiHeaders));
+      })
+      .thenCompose(config -> exportPackages(query, config, response))
+      .thenAccept(records -> log.info("Exported {} packages", records))
+      .exceptionally(throwable -> failedExport(throwable, response));
+  }
 
-    Response response;
-    if (throwable.getCause() instanceof ResourceNotFoundException ||
-        throwable.getCause() instanceof ValidationException) {
-      response = GetCodexPackagesByIdResponse.respond404WithTextPlain(id);
-    } else if (throwable.getCause() instanceof ConfigurationServiceException &&
-        ((ConfigurationServiceException) throwable.getCause()).getStatusCode() == 401) {
-      response = GetCodexPackagesByIdResponse.respond401WithTextPlain(throwable.getCause().getMessage());
-    } else {
-      response = GetCodexPackagesByIdResponse.respond500WithTextPlain(throwable.getCause().getMessage());
+  private CompletionStage<Integer> exportPackages(String query, Configuration rmAPIConfig, HttpServerResponse response) {
+    try {
+      CQLParameters cqlParameters = parsedQueryCache.getCQLParameters(query);
+      if (cqlParameters.isIdSearch()) {
+        return ndjsonExporter.exportRecords(getPackageById(rmAPIConfig, cqlParameters.getIdSearchValue(), new StaleData())
+          .thenApply(PackageCollection::getPackages)
+          .toCompletableFuture(), codexJsonWriter::writePackage, response);
+      }
+      PackageParameters parameters = parsedQueryCache.getPackageParameters(query);
+      return ndjsonExporter.export((page, count) -> rmapiToCodex.getPackagesPage(parameters, page, count, rmAPIConfig),
+        codexJsonWriter::writePackage, response);
+    } catch (QueryValidationException e) {
+      throw new CompletionException(e);
     }
+  }
 
-    handler.handle(succeededFuture(response));
+  private Void failedExport(Throwable throwable, HttpServerResponse response) {
+    log.error("getCodexPackagesExport failed!", throwable);
+    endWithError(response, throwable);
+
+    return null;
+  }
+
+  private void successfulPkgById(Package pkg, StaleData stale, Handler<AsyncResult<Response>> handler) {
+    handler.handle(succeededFuture(withStaleWarning(GetCodexPackagesByIdResponse.respond200WithApplicationJson(pkg), stale)));
+  }
+
+  private void successfulPackages(PackageCollection packages, StaleData stale, Handler<AsyncResult<Response>> handler) {
+    handler.handle(succeededFuture(withStaleWarning(jsonResponse(codexJsonWriter.write(packages)), stale)));
+  }
+
+  private Void failedPkgById(String id, Throwable throwable, Handler<AsyncResult<Response>> handler) {
+    log.error("getCodexPackagesById failed!", throwable);
+    handler.handle(succeededFuture(errorResponse(throwable, id)));
 
     return null;
   }
 
   private Void failedPackages(Throwable throwable, Handler<AsyncResult<Response>> handler) {
     log.error("getCodexPackages failed!", throwable);
+    handler.handle(succeededFuture(errorResponse(throwable)));
 
-    Response response;
-    if (throwable.getCause() instanceof ValidationException || throwable.getCause() instanceof QueryValidationException) {
-      response = CodexPackages.GetCodexPackagesResponse.respond400WithTextPlain(throwable.getCause().getMessage());
-    } else if (throwable.getCause() instanceof ConfigurationServiceException && ((ConfigurationServiceException) throwable.getCause()).getStatusCode() == 401) {
-      response = CodexPackages.GetCodexPackagesResponse.respond401WithTextPlain(throwable.getCause().getMessage());
-    } else {
-      response = CodexPackages.GetCodexPackagesResponse.respond500WithTextPlain(throwable.getCause().getMessage());
-    }
-    handler.handle(succeededFuture(response));
+    return null;
+  }
+
+  private Void failedPackagesBatch(Throwable throwable, Handler<AsyncResult<Response>> handler) {
+    log.error("postCodexPackagesBatch failed!", throwable);
+    handler.handle(succeededFuture(errorResponse(throwable)));
 
     return null;
   }
@@ -140,28 +237,34 @@ public final class CodexPackagesImpl implements CodexPackages, CodexPackagesSour
       )))));
   }
 
-  private CompletionStage<PackageCollection> getPackages(String query, int offset, int limit, Context vertxContext, Configuration rmAPIConfig) {
+  private CompletionStage<PackageCollection> getPackages(String query, int offset, int limit, Configuration rmAPIConfig,
+                                                        StaleData stale) {
     try {
-      CQLParameters cqlParameters = new CQLParameters(query);
+      CQLParameters cqlParameters = parsedQueryCache.getCQLParameters(query);
       if (cqlParameters.isIdSearch()) {
-        return getPackageById(vertxContext, rmAPIConfig, cqlParameters.getIdSearchValue());
+        return getPackageById(rmAPIConfig, cqlParameters.getIdSearchValue(), stale);
       }
-      PackageParameters parameters = new PackageParameters(cqlParameters);
-      PaginationInfo pagination = new PaginationCalculator().getPagination(offset, limit);
-      return RMAPIToCodex.getPackages(parameters, pagination, vertxContext, rmAPIConfig);
+      PackageParameters parameters = parsedQueryCache.getPackageParameters(query);
+      PaginationInfo pagination = paginationCalculator.getPagination(offset, limit);
+      return rmapiToCodex.getPackages(parameters, pagination, rmAPIConfig, stale);
     } catch (QueryValidationException e) {
       throw new CompletionException(e);
     }
   }
 
-  private CompletionStage<PackageCollection> getPackageById(Context vertxContext, Configuration rmAPIConfig, String id) {
-    return RMAPIToCodex.getPackage(vertxContext, rmAPIConfig, idParser.parsePackageId(id))
+  private CompletionStage<PackageCollection> getPackageById(Configuration rmAPIConfig, String id, StaleData stale) {
+    return rmapiToCodex.getPackage(rmAPIConfig, idParser.parsePackageId(id), stale)
       .thenApply(packageObject ->
         new PackageCollection()
           .withPackages(Collections.singletonList(packageObject))
           .withResultInfo(new ResultInfo().withTotalRecords(1))
-      ).exceptionally(throwable ->
-        new PackageCollection().withResultInfo(new ResultInfo().withTotalRecords(0))
-      );
+      ).exceptionally(throwable -> {
+        // an unknown id is an empty result, any other failure fails the search
+        Throwable cause = UpstreamErrors.unwrap(throwable);
+        if (cause instanceof ResourceNotFoundException) {
+          return new PackageCollection().withResultInfo(new ResultInfo().withTotalRecords(0));
+        }
+        throw new CompletionException(cause);
+      });
   }
 }
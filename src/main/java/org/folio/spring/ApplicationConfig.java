@@ -1,10 +1,36 @@
 package org.folio.spring;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Ticker;
 import io.vertx.core.Vertx;
-import org.folio.cache.VertxCache;
+import org.folio.codex.RMAPIToCodex;
+import org.folio.codex.StatisticsLogger;
+import org.folio.codex.batch.BatchExecutor;
+import org.folio.codex.cache.PackagesPageKey;
+import org.folio.codex.cache.RefreshAheadConfigurationCache;
+import org.folio.codex.cache.SearchPageCache;
+import org.folio.codex.cache.TenantCache;
+import org.folio.codex.cache.TitlesPageKey;
+import org.folio.codex.client.HedgedRequests;
+import org.folio.codex.client.HoldingsIQCircuitBreaker;
+import org.folio.codex.client.HoldingsIQConcurrencyLimiter;
+import org.folio.codex.client.HoldingsIQRateLimiter;
+import org.folio.codex.client.HoldingsIQServiceRegistry;
+import org.folio.codex.client.PrefetchScheduler;
+import org.folio.codex.export.NdjsonExporter;
+import org.folio.cql2rmapi.ParsedQueryCache;
+import org.folio.cql2rmapi.query.PaginationCalculator;
+import org.folio.holdingsiq.model.PackageId;
+import org.folio.holdingsiq.model.Packages;
+import org.folio.holdingsiq.model.Titles;
 import org.folio.holdingsiq.service.ConfigurationService;
-import org.folio.holdingsiq.service.impl.ConfigurationServiceCache;
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
 import org.folio.holdingsiq.service.impl.ConfigurationServiceImpl;
+import org.folio.rest.jaxrs.model.Instance;
+import org.folio.rest.jaxrs.model.Package;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -28,15 +54,166 @@ public class ApplicationConfig {
   }
 
   @Bean
-  public VertxCache<String, org.folio.holdingsiq.model.Configuration> rmApiConfigurationCache(Vertx vertx, @Value("${configuration.cache.expire}") long expirationTime) {
-    return new VertxCache<>(vertx, expirationTime, "rmApiConfigurationCache");
+  public ConfigurationService configurationService(Vertx vertx) {
+    return new ConfigurationServiceImpl(vertx);
+  }
+
+  @Bean
+  public RefreshAheadConfigurationCache configurationCache(ConfigurationService configurationService, RMAPIToCodex rmapiToCodex,
+                                                           @Value("${configuration.cache.expire}") long expirationTime,
+                                                           @Value("${configuration.cache.refresh}") long refreshTime,
+                                                           @Value("${configuration.cache.size}") long maxSize) {
+    RefreshAheadConfigurationCache configurationCache =
+      new RefreshAheadConfigurationCache(configurationService, expirationTime, refreshTime, maxSize);
+    configurationCache.addChangeListener(rmapiToCodex::invalidate);
+    return configurationCache;
+  }
+
+  @Bean
+  public HoldingsIQServiceRegistry holdingsIQServiceRegistry(Vertx vertx,
+                                                             @Value("${holdingsiq.client.cache.expire}") long expirationTime,
+                                                             @Value("${holdingsiq.client.cache.size}") long maxSize) {
+    return new HoldingsIQServiceRegistry(vertx, expirationTime, maxSize);
+  }
+
+  @Bean
+  public Ticker cacheTicker() {
+    return Ticker.systemTicker();
+  }
+
+  @Bean
+  public TenantCache<Long, Instance> titleCache(@Value("${title.cache.expire}") long expirationTime,
+                                                @Value("${cache.stale.time}") long staleTime,
+                                                @Value("${title.cache.size}") long maxSize, Ticker cacheTicker) {
+    return new TenantCache<>("titleCache", expirationTime, staleTime, maxSize, cacheTicker);
+  }
+
+  @Bean
+  public TenantCache<PackageId, Package> packageCache(@Value("${package.cache.expire}") long expirationTime,
+                                                      @Value("${cache.stale.time}") long staleTime,
+                                                      @Value("${package.cache.size}") long maxSize, Ticker cacheTicker) {
+    return new TenantCache<>("packageCache", expirationTime, staleTime, maxSize, cacheTicker);
+  }
+
+  @Bean
+  public TenantCache<Long, ResourceNotFoundException> titleNotFoundCache(@Value("${notfound.cache.expire}") long expirationTime,
+                                                                         @Value("${notfound.cache.size}") long maxSize) {
+    return new TenantCache<>("titleNotFoundCache", expirationTime, maxSize);
+  }
+
+  @Bean
+  public TenantCache<PackageId, ResourceNotFoundException> packageNotFoundCache(@Value("${notfound.cache.expire}") long expirationTime,
+                                                                                @Value("${notfound.cache.size}") long maxSize) {
+    return new TenantCache<>("packageNotFoundCache", expirationTime, maxSize);
+  }
+
+  @Bean
+  public SearchPageCache<TitlesPageKey, Titles> titlesPageCache(@Value("${search.cache.expire}") long expirationTime,
+                                                                @Value("${cache.stale.time}") long staleTime,
+                                                                @Value("${search.cache.records}") long maxRecords,
+                                                                Ticker cacheTicker) {
+    return new SearchPageCache<>("titlesPageCache", expirationTime, staleTime, maxRecords,
+      titles -> titles.getTitleList() != null ? titles.getTitleList().size() : 0, cacheTicker);
+  }
+
+  @Bean
+  public SearchPageCache<PackagesPageKey, Packages> packagesPageCache(@Value("${search.cache.expire}") long expirationTime,
+                                                                      @Value("${cache.stale.time}") long staleTime,
+                                                                      @Value("${search.cache.records}") long maxRecords,
+                                                                      Ticker cacheTicker) {
+    return new SearchPageCache<>("packagesPageCache", expirationTime, staleTime, maxRecords,
+      packages -> packages.getPackagesList() != null ? packages.getPackagesList().size() : 0, cacheTicker);
+  }
+
+  @Bean
+  public PaginationCalculator paginationCalculator(@Value("${search.page.size}") int canonicalPageSize,
+                                                   @Value("${search.page.max.extra.records}") int maxExtraRecords) {
+    return new PaginationCalculator(canonicalPageSize, maxExtraRecords);
+  }
+
+  @Bean
+  public PrefetchScheduler prefetchScheduler(Vertx vertx, @Value("${search.prefetch.enabled}") boolean enabled,
+                                             @Value("${search.prefetch.max.concurrent}") int maxConcurrent,
+                                             @Value("${search.prefetch.tenant.max.concurrent}") int maxConcurrentPerTenant) {
+    return new PrefetchScheduler(vertx, enabled, maxConcurrent, maxConcurrentPerTenant);
+  }
+
+  @Bean
+  public BatchExecutor batchExecutor(@Value("${batch.concurrency}") int concurrency,
+                                     @Value("${batch.max.ids}") int maxIds) {
+    return new BatchExecutor(concurrency, maxIds);
+  }
+
+  @Bean
+  public NdjsonExporter ndjsonExporter(@Value("${export.page.size}") int pageSize,
+                                       @Value("${export.pages.in.flight}") int pagesInFlight) {
+    return new NdjsonExporter(pageSize, pagesInFlight);
+  }
+
+  @Bean
+  public ParsedQueryCache parsedQueryCache(@Value("${query.cache.size}") long maxSize) {
+    return new ParsedQueryCache(maxSize);
+  }
+
+  @Bean
+  public HoldingsIQCircuitBreaker holdingsIQCircuitBreaker(@Value("${circuit.breaker.enabled}") boolean enabled,
+                                                           @Value("${circuit.breaker.window.size}") int windowSize,
+                                                           @Value("${circuit.breaker.minimum.calls}") int minimumCalls,
+                                                           @Value("${circuit.breaker.failure.rate}") int failureRate,
+                                                           @Value("${circuit.breaker.slow.call.duration}") long slowCallDuration,
+                                                           @Value("${circuit.breaker.open.duration}") long openDuration,
+                                                           @Value("${circuit.breaker.half.open.calls}") int halfOpenCalls) {
+    return new HoldingsIQCircuitBreaker(enabled, windowSize, minimumCalls, failureRate, slowCallDuration, openDuration,
+      halfOpenCalls);
+  }
+
+  @Bean
+  public HedgedRequests hedgedRequests(Vertx vertx,
+                                       @Value("${hedging.enabled}") boolean enabled,
+                                       @Value("${hedging.latency.percentile}") int percentile,
+                                       @Value("${hedging.budget}") int budget,
+                                       @Value("${hedging.window.size}") int windowSize) {
+    return new HedgedRequests(vertx, enabled, percentile, budget, windowSize);
+  }
+
+  @Bean
+  public HoldingsIQRateLimiter holdingsIQRateLimiter(Vertx vertx,
+                                                     @Value("${rate.limit.enabled}") boolean enabled,
+                                                     @Value("${rate.limit.interactive.rate}") double interactiveRate,
+                                                     @Value("${rate.limit.interactive.burst}") int interactiveBurst,
+                                                     @Value("${rate.limit.bulk.rate}") double bulkRate,
+                                                     @Value("${rate.limit.bulk.burst}") int bulkBurst,
+                                                     @Value("${rate.limit.max.wait}") long maxWait) {
+    return new HoldingsIQRateLimiter(vertx, enabled, interactiveRate, interactiveBurst, bulkRate, bulkBurst, maxWait);
+  }
+
+  @Bean
+  public HoldingsIQConcurrencyLimiter holdingsIQConcurrencyLimiter(Vertx vertx,
+                                                                   @Value("${concurrency.limit.enabled}") boolean enabled,
+                                                                   @Value("${concurrency.limit.initial}") int initialLimit,
+                                                                   @Value("${concurrency.limit.min}") int minLimit,
+                                                                   @Value("${concurrency.limit.max}") int maxLimit,
+                                                                   @Value("${concurrency.limit.backoff.ratio}") double backoffRatio,
+                                                                   @Value("${concurrency.limit.latency.tolerance}") double latencyTolerance,
+                                                                   @Value("${concurrency.limit.window.size}") int windowSize,
+                                                                   @Value("${concurrency.limit.max.queue}") int maxQueueSize,
+                                                                   @Value("${concurrency.limit.max.queue.wait}") long maxQueueWait) {
+    return new HoldingsIQConcurrencyLimiter(vertx, enabled, initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance,
+      windowSize, maxQueueSize, maxQueueWait);
   }
 
   @Bean
-  public ConfigurationService configurationService(Vertx vertx, @Value("${configuration.cache.expire}") long expirationTime) {
-    return new ConfigurationServiceCache(
-      new ConfigurationServiceImpl(vertx),
-      new VertxCache<>(vertx, expirationTime, "rmApiConfigurationCache")
-    );
+  public StatisticsLogger statisticsLogger(Vertx vertx, @Value("${statistics.log.interval}") long interval,
+                                           List<TenantCache<?, ?>> caches, ParsedQueryCache parsedQueryCache,
+                                           RMAPIToCodex rmapiToCodex, PrefetchScheduler prefetchScheduler,
+                                           HoldingsIQCircuitBreaker circuitBreaker, HedgedRequests hedgedRequests,
+                                           HoldingsIQRateLimiter rateLimiter,
+                                           HoldingsIQConcurrencyLimiter concurrencyLimiter) {
+    List<Object> components = new ArrayList<>(caches);
+    components.addAll(Arrays.asList(parsedQueryCache, rmapiToCodex, prefetchScheduler, circuitBreaker, hedgedRequests,
+      rateLimiter, concurrencyLimiter));
+    StatisticsLogger statisticsLogger = new StatisticsLogger(components);
+    statisticsLogger.start(vertx, interval);
+    return statisticsLogger;
   }
 }
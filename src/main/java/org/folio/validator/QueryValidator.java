@@ -14,4 +14,15 @@ public class QueryValidator {
     }
 
   }
+
+  /**
+   * Validates a query whose results are not limited, like an export.
+   */
+  public void validate(String query) {
+
+    if (Objects.isNull(query)) {
+      throw new ValidationException("Unsupported Query Format : Query is required.");
+    }
+
+  }
 }
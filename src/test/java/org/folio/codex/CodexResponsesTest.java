@@ -0,0 +1,87 @@
+package org.folio.codex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CompletionException;
+
+import javax.validation.ValidationException;
+import javax.ws.rs.core.Response;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import org.folio.codex.cache.StaleData;
+import org.folio.codex.client.CircuitBreakerOpenException;
+import org.folio.codex.client.RateLimitExceededException;
+import org.folio.cql2rmapi.QueryValidationException;
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
+import org.folio.rest.tools.utils.BinaryOutStream;
+
+public class CodexResponsesTest {
+
+  @Test
+  public void shouldMapFailuresToStatuses() {
+    assertEquals(404, CodexResponses.statusOf(mock(ResourceNotFoundException.class)));
+    assertEquals(400, CodexResponses.statusOf(new ValidationException("bad id")));
+    assertEquals(400, CodexResponses.statusOf(new QueryValidationException("bad query")));
+    assertEquals(503, CodexResponses.statusOf(new CircuitBreakerOpenException("open")));
+    assertEquals(429, CodexResponses.statusOf(new RateLimitExceededException("slow down")));
+    assertEquals(500, CodexResponses.statusOf(new IllegalStateException("broken")));
+  }
+
+  @Test
+  public void shouldUnwrapCompletionExceptions() {
+    Response response = CodexResponses.errorResponse(new CompletionException(new RateLimitExceededException("slow down")));
+
+    assertEquals(429, response.getStatus());
+    assertEquals("slow down", response.getEntity());
+  }
+
+  @Test
+  public void shouldAnswerLookupOfMalformedIdWithNotFound() {
+    Response response = CodexResponses.errorResponse(new CompletionException(new ValidationException("bad id")), "abc");
+
+    assertEquals(404, response.getStatus());
+    assertEquals("abc", response.getEntity());
+  }
+
+  @Test
+  public void shouldAnswerLookupFailuresLikeOtherRequests() {
+    Response response = CodexResponses.errorResponse(new CircuitBreakerOpenException("open"), "123");
+
+    assertEquals(503, response.getStatus());
+    assertEquals("open", response.getEntity());
+  }
+
+  @Test
+  public void shouldAnswerThrottledLookupWithTooManyRequests() {
+    Response response = CodexResponses.errorResponse(new CompletionException(new RateLimitExceededException("slow down")), "123");
+
+    assertEquals(429, response.getStatus());
+    assertEquals("slow down", response.getEntity());
+  }
+
+  @Test
+  public void shouldHandJsonBytesToRmb() {
+    Buffer json = Buffer.buffer("{\"title\":\"Crème brûlée\"}");
+
+    Response response = CodexResponses.jsonResponse(json);
+
+    assertEquals(200, response.getStatus());
+    assertArrayEquals(json.getBytes(), ((BinaryOutStream) response.getEntity()).getData());
+  }
+
+  @Test
+  public void shouldAddWarningOnlyToStaleResponses() {
+    StaleData stale = new StaleData();
+    assertNull(CodexResponses.withStaleWarning(Response.ok().build(), stale).getHeaderString(StaleData.WARNING_HEADER));
+
+    stale.markServed();
+
+    assertEquals(StaleData.STALE_WARNING,
+      CodexResponses.withStaleWarning(Response.ok().build(), stale).getHeaderString(StaleData.WARNING_HEADER));
+  }
+}
@@ -0,0 +1,166 @@
+package org.folio.codex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import io.vertx.core.json.Json;
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Title;
+import org.folio.holdingsiq.model.Titles;
+
+public class MergedTitleSearchTest {
+
+  @Test
+  public void shouldMergeSearchesInTitleOrder() {
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "apple", 3, "Cherry", 5, "elderberry"),
+      titles(2, "Banana", 4, "date"));
+
+    MergedTitleSearch.Result result = merge(searches, 2, 0, 10, new AtomicInteger());
+
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids(result));
+    assertEquals(5, result.getTotalRecords());
+  }
+
+  @Test
+  public void shouldMergePagesSortedWithOtherCollation() {
+    // pages sorted case-sensitively, with capital letters first
+    List<List<Title>> searches = Arrays.asList(
+      titles(2, "Banana", 1, "apple", 4, "Date", 3, "cherry"),
+      titles(5, "Elderberry", 6, "fig"));
+
+    MergedTitleSearch.Result result = merge(searches, 2, 0, 10, new AtomicInteger());
+
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(result));
+  }
+
+  @Test
+  public void shouldMergeNameGroupSpanningPageBoundary() {
+    // HoldingsIQ puts "Banana" before "banana", the titles with that name continue on the second page
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "apple", 4, "Banana", 3, "banana", 6, "cherry"),
+      titles(5, "banana", 7, "date"));
+
+    MergedTitleSearch.Result result = merge(searches, 2, 0, 10, new AtomicInteger());
+
+    assertEquals(Arrays.asList(1, 3, 4, 5, 6, 7), ids(result));
+  }
+
+  @Test
+  public void shouldReturnTitleFoundBySeveralSearchesOnce() {
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "apple", 2, "banana", 3, "cherry"),
+      titles(2, "banana", 4, "date"));
+
+    MergedTitleSearch.Result result = merge(searches, 10, 0, 10, new AtomicInteger());
+
+    assertEquals(Arrays.asList(1, 2, 3, 4), ids(result));
+    assertEquals(4, result.getTotalRecords());
+  }
+
+  @Test
+  public void shouldSkipTitlesFoundBySeveralSearchesBeforeWindow() {
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "apple", 2, "banana", 3, "cherry"),
+      titles(2, "banana", 4, "date"));
+
+    MergedTitleSearch.Result result = merge(searches, 10, 2, 2, new AtomicInteger());
+
+    assertEquals(Arrays.asList(3, 4), ids(result));
+  }
+
+  @Test
+  public void shouldReturnRequestedWindow() {
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "a", 3, "c", 5, "e"),
+      titles(2, "b", 4, "d", 6, "f"));
+
+    MergedTitleSearch.Result result = merge(searches, 10, 2, 3, new AtomicInteger());
+
+    assertEquals(Arrays.asList(3, 4, 5), ids(result));
+  }
+
+  @Test
+  public void shouldLoadOnlyPagesNeededForWindow() {
+    List<List<Title>> searches = Arrays.asList(
+      titles(1, "a", 3, "c", 5, "e", 7, "g"),
+      titles(2, "b", 4, "d", 6, "f", 8, "h"));
+    AtomicInteger loadedPages = new AtomicInteger();
+
+    MergedTitleSearch.Result result = merge(searches, 2, 0, 2, loadedPages);
+
+    assertEquals(Arrays.asList(1, 2), ids(result));
+    assertEquals(2, loadedPages.get());
+    assertEquals(8, result.getTotalRecords());
+  }
+
+  @Test
+  public void shouldSortTitlesWithSameNameBySecondaryKeysAcrossPages() {
+    List<List<Title>> searches = Collections.singletonList(Arrays.asList(
+      title(1, "alpha", "Zeta Press"),
+      title(2, "Moby Dick", "Penguin"),
+      title(3, "moby dick", "Oxford"),
+      title(4, "Moby Dick", "Bantam"),
+      title(5, "Walden", "Beacon")));
+
+    MergedTitleSearch.Result result = merge(searches, 2, Collections.singletonList("publisher"), 0, 10, new AtomicInteger());
+
+    assertEquals(Arrays.asList(1, 4, 3, 2, 5), ids(result));
+    assertEquals(5, result.getTotalRecords());
+  }
+
+  @Test
+  public void shouldMergeSearchesBySecondaryKeys() {
+    List<List<Title>> searches = Arrays.asList(
+      Arrays.asList(title(1, "Moby Dick", "Penguin"), title(2, "Walden", "Beacon")),
+      Arrays.asList(title(3, "Moby Dick", "Bantam"), title(4, "Moby Dick", "Oxford")));
+
+    MergedTitleSearch.Result result = merge(searches, 10, Collections.singletonList("publisher"), 1, 2, new AtomicInteger());
+
+    assertEquals(Arrays.asList(4, 1), ids(result));
+  }
+
+  private static MergedTitleSearch.Result merge(List<List<Title>> searches, int pageSize, int offset, int limit,
+                                                AtomicInteger loadedPages) {
+    return merge(searches, pageSize, Collections.emptyList(), offset, limit, loadedPages);
+  }
+
+  private static MergedTitleSearch.Result merge(List<List<Title>> searches, int pageSize, List<String> secondarySortKeys,
+                                                int offset, int limit, AtomicInteger loadedPages) {
+    return new MergedTitleSearch(searches.size(), pageSize, secondarySortKeys, (search, page, count) -> {
+      loadedPages.incrementAndGet();
+      List<Title> all = searches.get(search);
+      int from = Math.min((page - 1) * count, all.size());
+      int to = Math.min(from + count, all.size());
+      Titles titles = Json.decodeValue("{\"totalResults\": " + all.size() + ", \"titles\": []}", Titles.class);
+      titles.getTitleList().addAll(all.subList(from, to));
+      return CompletableFuture.completedFuture(titles);
+    }).merge(offset, limit).join();
+  }
+
+  private static List<Title> titles(Object... idsAndNames) {
+    List<Title> titles = new ArrayList<>();
+    for (int i = 0; i < idsAndNames.length; i += 2) {
+      titles.add(Json.decodeValue(
+        "{\"titleId\": " + idsAndNames[i] + ", \"titleName\": \"" + idsAndNames[i + 1] + "\"}", Title.class));
+    }
+    return titles;
+  }
+
+  private static Title title(int id, String name, String publisher) {
+    return Json.decodeValue(
+      "{\"titleId\": " + id + ", \"titleName\": \"" + name + "\", \"publisherName\": \"" + publisher + "\"}", Title.class);
+  }
+
+  private static List<Integer> ids(MergedTitleSearch.Result result) {
+    return result.getTitles().stream().map(Title::getTitleId).collect(Collectors.toList());
+  }
+}
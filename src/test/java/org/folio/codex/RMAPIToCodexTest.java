@@ -2,14 +2,16 @@ package org.folio.codex;
 
 import static org.folio.utils.Utils.readMockFile;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -20,17 +22,23 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import org.folio.codex.cache.StaleData;
+import org.folio.codex.cache.TenantCache;
+import org.folio.codex.client.UpstreamErrors;
 import org.folio.cql2rmapi.CQLParameters;
 import org.folio.cql2rmapi.QueryValidationException;
 import org.folio.cql2rmapi.TitleParameters;
 import org.folio.cql2rmapi.query.PaginationCalculator;
 import org.folio.cql2rmapi.query.PaginationInfo;
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
 import org.folio.rest.RestVerticle;
 import org.folio.rest.jaxrs.model.Contributor;
 import org.folio.rest.jaxrs.model.Identifier;
 import org.folio.rest.jaxrs.model.Instance;
 import org.folio.rest.jaxrs.model.Subject;
+import org.folio.spring.SpringContextUtil;
 import org.folio.utils.Utils;
 
 /**
@@ -40,11 +48,24 @@ import org.folio.utils.Utils;
 @RunWith(VertxUnitRunner.class)
 public class RMAPIToCodexTest {
   private static final String MOCK_RMAPI_INSTANCE_TITLE_404_FILE = "RMAPIService/TitleNotFound.json";
+  private static final String MOCK_RMAPI_SEARCH_TITLES_MOBY_DICK_FILE = "RMAPIService/SearchTitlesMobyDick.json";
+  private static final String MOCK_RMAPI_SEARCH_TITLES_DIALOGUE_FILE = "RMAPIService/SearchTitlesDialogue.json";
+  private static final String MOBY_DICK_SEARCH = "moby%20dick";
+  private static final String DIALOGUE_SEARCH = "dialogue";
 
   private final Logger logger = LogManager.getLogger("okapi");
 
   private Vertx vertx;
 
+  @Autowired
+  private RMAPIToCodex rmapiToCodex;
+  @Autowired
+  private PaginationCalculator paginationCalculator;
+  @Autowired
+  private TenantCache<Long, ResourceNotFoundException> titleNotFoundCache;
+
+  private final Map<String, AtomicInteger> upstreamCalls = new ConcurrentHashMap<>();
+
   private static final String API_KEY = "8675309";
   private static final String CUSTOMER_ID = "test";
   private static final String URL = "http://localhost:51234";
@@ -70,7 +91,7 @@ public class RMAPIToCodexTest {
 
     DeploymentOptions opt = new DeploymentOptions().setConfig(conf);
     vertx.deployVerticle(RestVerticle.class.getName(), opt,
-        context.asyncAssertSuccess());
+        context.asyncAssertSuccess(id -> SpringContextUtil.autowireDependenciesFromFirstContext(this, vertx)));
 
     final int serverPort = Integer.parseInt(System.getProperty("serverPort",
         Integer.toString(51234)));
@@ -79,23 +100,13 @@ public class RMAPIToCodexTest {
     Async async = context.async();
     HttpServer server = vertx.createHttpServer();
     server.requestHandler(req -> {
+      upstreamCalls.computeIfAbsent(req.path(), path -> new AtomicInteger()).incrementAndGet();
       switch (req.path()) {
         case "/rm/rmaccounts/test/titles":
-          if ("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=moby%2520dick&offset=1&count=5&orderby=titlename"
-            .equals(req.query())) {
-            req.response().setStatusCode(200).end(
-              "{\"totalResults\": 524, \"titles\": [   {   \"titleId\": 9950115,   \"titleName\": \"[Resolute Dick]\",   \"publisherName\": \"Unspecified\",   \"identifiersList\": [   {   \"id\": \"4667067\",   \"source\": \"AtoZ\",   \"subtype\": 0,   \"type\": 9 } ],   \"subjectsList\": null,   \"isTitleCustom\": false,   \"pubType\": \"Journal\",   \"customerResourcesList\": [   {   \"titleId\": 13611278,   \"packageId\": 8537,   \"packageName\": \"Eighteenth Century Collections Online - Part II\",   \"isPackageCustom\": false,   \"vendorId\": 18,   \"vendorName\": \"Gale | Cengage\",   \"locationId\": 30087973,   \"isSelected\": false,   \"isTokenNeeded\": true,   \"packageType\": \"Complete\",   \"visibilityData\": {   \"isHidden\": false,   \"reason\": \"\" },   \"proxy\": null,   \"managedCoverageList\": [],   \"customCoverageList\": [],   \"coverageStatement\": null,   \"managedEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"customEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"url\": \"https://infotrac.gale.com/itweb/[[galesiteid]]?db=ECCO\",   \"userDefinedField1\": null,   \"userDefinedField2\": null,   \"userDefinedField3\": null,   \"userDefinedField4\": null,   \"userDefinedField5\": null } ] },   {   \"titleId\": 1816494,   \"titleName\": \"1851 - Herman Melville's Moby Dick is Published\",   \"publisherName\": \"Unspecified\",   \"identifiersList\": [   {   \"id\": \"1816494\",   \"source\": \"AtoZ\",   \"subtype\": 0,   \"type\": 9 } ],   \"subjectsList\": null,   \"isTitleCustom\": false,   \"pubType\": \"StreamingVideo\",   \"customerResourcesList\": [   {   \"titleId\": 1816494,   \"packageId\": 7349,   \"packageName\": \"Ambrose Video 2.0\",   \"packageType\": \"Variable\",   \"isPackageCustom\": false,   \"vendorId\": 933,   \"vendorName\": \"Ambrose Video Publishing, Inc.\",   \"locationId\": 5735819,   \"isSelected\": false,   \"isTokenNeeded\": true,   \"visibilityData\": {   \"isHidden\": false,   \"reason\": \"\" },   \"managedCoverageList\": [],   \"customCoverageList\": [],   \"coverageStatement\": null,   \"managedEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"customEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"url\": \"http://dma.iriseducation.org/?license=[[license code]]&DMA2&src=XLS&segment=300496&pid=2037&sku=GAA-002-03\",   \"userDefinedField1\": null,   \"userDefinedField2\": null,   \"userDefinedField3\": null,   \"userDefinedField4\": null,   \"userDefinedField5\": null } ] },   {   \"titleId\": 4634949,   \"titleName\": \"60 minutes. Dick Clarke\",   \"publisherName\": \"Unspecified\",   \"identifiersList\": [   {   \"id\": \"3140739\",   \"source\": \"AtoZ\",   \"subtype\": 0,   \"type\": 9 } ],   \"subjectsList\": null,   \"isTitleCustom\": false,   \"pubType\": \"Journal\",   \"customerResourcesList\": [   {   \"titleId\": 4634949,   \"packageId\": 1367800,   \"packageName\": \"60 Minutes 1997-2014\",   \"packageType\": \"Complete\",   \"isPackageCustom\": false,   \"vendorId\": 413,   \"vendorName\": \"Alexander Street Press\",   \"locationId\": 12526676,   \"isSelected\": false,   \"isTokenNeeded\": false,   \"visibilityData\": {   \"isHidden\": false,   \"reason\": \"\" },   \"managedCoverageList\": [   {   \"beginCoverage\": \"2008-01-01\",   \"endCoverage\": \"2008-12-31\" } ],   \"customCoverageList\": [],   \"coverageStatement\": null,   \"managedEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"customEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"url\": \"http://www.aspresolver.com/aspresolver.asp?CBSV;2774880\",   \"userDefinedField1\": null,   \"userDefinedField2\": null,   \"userDefinedField3\": null,   \"userDefinedField4\": null,   \"userDefinedField5\": null } ] },   {   \"titleId\": 4635334,   \"titleName\": \"60 minutes. The vice president [Dick Cheney]\",   \"publisherName\": \"Unspecified\",   \"identifiersList\": [   {   \"id\": \"3141124\",   \"source\": \"AtoZ\",   \"subtype\": 0,   \"type\": 9 } ],   \"subjectsList\": null,   \"isTitleCustom\": false,   \"pubType\": \"Journal\",   \"customerResourcesList\": [   {   \"titleId\": 4635334,   \"packageId\": 1367800,   \"packageName\": \"60 Minutes 1997-2014\",   \"packageType\": \"Complete\",   \"isPackageCustom\": false,   \"vendorId\": 413,   \"vendorName\": \"Alexander Street Press\",   \"locationId\": 12527074,   \"isSelected\": false,   \"isTokenNeeded\": false,   \"visibilityData\": {   \"isHidden\": false,   \"reason\": \"\" },   \"managedCoverageList\": [   {   \"beginCoverage\": \"2001-01-01\",   \"endCoverage\": \"2001-12-31\" } ],   \"customCoverageList\": [],   \"coverageStatement\": null,   \"managedEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"customEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"url\": \"http://www.aspresolver.com/aspresolver.asp?CBSV;2774149\",   \"userDefinedField1\": null,   \"userDefinedField2\": null,   \"userDefinedField3\": null,   \"userDefinedField4\": null,   \"userDefinedField5\": null } ] },   {   \"titleId\": 9948551,   \"titleName\": \"A catalogue of books in several faculties and languages, Consisting of a choice collection in divinity, philosophy, philology, phisick, cosmography, history, mathematicks and chronology. Together with\",   \"publisherName\": \"Unspecified\",   \"identifiersList\": [   {   \"id\": \"4665550\",   \"source\": \"AtoZ\",   \"subtype\": 0,   \"type\": 9 } ],   \"subjectsList\": null,   \"isTitleCustom\": false,   \"pubType\": \"Journal\",   \"customerResourcesList\": [   {   \"titleId\": 13609761,   \"packageId\": 8537,   \"packageName\": \"Eighteenth Century Collections Online - Part II\",   \"isPackageCustom\": false,   \"vendorId\": 18,   \"vendorName\": \"Gale | Cengage\",   \"locationId\": 30086146,   \"isSelected\": false,   \"isTokenNeeded\": true,   \"packageType\": \"Complete\",   \"visibilityData\": {   \"isHidden\": false,   \"reason\": \"\" },   \"proxy\": null,   \"managedCoverageList\": [],   \"customCoverageList\": [],   \"coverageStatement\": null,   \"managedEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"customEmbargoPeriod\": {   \"embargoUnit\": null,   \"embargoValue\": 0 },   \"url\": \"https://infotrac.gale.com/itweb/[[galesiteid]]?db=ECCO\",   \"userDefinedField1\": null,   \"userDefinedField2\": null,   \"userDefinedField3\": null,   \"userDefinedField4\": null,   \"userDefinedField5\": null } ] } ]}");
-          } else if ("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=moby%2520dick&offset=2&count=5&orderby=titlename"
-            .equals(req.query())) {
-            req.response().setStatusCode(200).end(
-              "{\"totalResults\":524,\"titles\":[{\"titleId\":1550515,\"titleName\":\"A Dialogue about the French government wars, cruelties, armies, fleet, &c. between Tom and Dick, two seamen.\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1550515\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1550515,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4974961,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1690-01-01\",\"endCoverage\":\"1690-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:7916128\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":9909627,\"titleName\":\"A dialogue between Dick --- and Tom ---, Esqrs; relating to the present divisions in I-d\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"4575830\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Journal\",\"customerResourcesList\":[{\"titleId\":9909627,\"packageId\":4205,\"packageName\":\"Eighteenth Century Collections Online\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":18,\"vendorName\":\"Gale Group\",\"locationId\":19683097,\"isSelected\":false,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://find.galegroup.com/menu/start.do?prodId=ECCO&userGroupName=[[galesiteid]]\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1533310,\"titleName\":\"A Dialogue between Tom and Dick over a dish of coffee concerning matters of religion and government.\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1533310\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1533310,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4957756,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1680-01-01\",\"endCoverage\":\"1680-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:10178611\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1548192,\"titleName\":\"A dialogue between Dick and Tom, concerning the present posture of affairs in England\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1548192\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1548192,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4972638,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1689-01-01\",\"endCoverage\":\"1689-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:11759671\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1568257,\"titleName\":\"A dialogue between Dick Brazenface the card-maker, and Tim. Meanwell, the clothier; being the dispute between the card-maker and the clothier fairly stated, in order to set the merits of that cause in\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1568257\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1568257,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4992703,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1711-01-01\",\"endCoverage\":\"1711-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:99893561\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]}]}");
-          } else if ("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=moby%2520dick&offset=1&count=10&orderby=titlename"
-            .equals(req.query())) {
-            req.response().setStatusCode(200).end(
-              "{\"totalResults\":5,\"titles\":[{\"titleId\":1550515,\"titleName\":\"A Dialogue about the French government wars, cruelties, armies, fleet, &c. between Tom and Dick, two seamen.\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1550515\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1550515,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4974961,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1690-01-01\",\"endCoverage\":\"1690-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:7916128\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":9909627,\"titleName\":\"A dialogue between Dick --- and Tom ---, Esqrs; relating to the present divisions in I-d\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"4575830\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Journal\",\"customerResourcesList\":[{\"titleId\":9909627,\"packageId\":4205,\"packageName\":\"Eighteenth Century Collections Online\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":18,\"vendorName\":\"Gale Group\",\"locationId\":19683097,\"isSelected\":false,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://find.galegroup.com/menu/start.do?prodId=ECCO&userGroupName=[[galesiteid]]\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1533310,\"titleName\":\"A Dialogue between Tom and Dick over a dish of coffee concerning matters of religion and government.\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1533310\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1533310,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4957756,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1680-01-01\",\"endCoverage\":\"1680-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:10178611\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1548192,\"titleName\":\"A dialogue between Dick and Tom, concerning the present posture of affairs in England\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1548192\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1548192,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4972638,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1689-01-01\",\"endCoverage\":\"1689-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:11759671\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]},{\"titleId\":1568257,\"titleName\":\"A dialogue between Dick Brazenface the card-maker, and Tim. Meanwell, the clothier; being the dispute between the card-maker and the clothier fairly stated, in order to set the merits of that cause in\",\"publisherName\":\"Unspecified\",\"identifiersList\":[{\"id\":\"1568257\",\"source\":\"AtoZ\",\"subtype\":0,\"type\":9}],\"subjectsList\":null,\"isTitleCustom\":false,\"pubType\":\"Book\",\"customerResourcesList\":[{\"titleId\":1568257,\"packageId\":4207,\"packageName\":\"Early English Books Online (EEBO)\",\"packageType\":\"Complete\",\"isPackageCustom\":false,\"vendorId\":22,\"vendorName\":\"Proquest Info & Learning Co\",\"locationId\":4992703,\"isSelected\":true,\"isTokenNeeded\":false,\"visibilityData\":{\"isHidden\":false,\"reason\":\"\"},\"managedCoverageList\":[{\"beginCoverage\":\"1711-01-01\",\"endCoverage\":\"1711-12-31\"}],\"customCoverageList\":[],\"coverageStatement\":null,\"managedEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"customEmbargoPeriod\":{\"embargoUnit\":null,\"embargoValue\":0},\"url\":\"http://gateway.proquest.com/openurl?ctx_ver=Z39.88-2003&res_id=xri:eebo&rft_id=xri:eebo:citation:99893561\",\"userDefinedField1\":null,\"userDefinedField2\":null,\"userDefinedField3\":null,\"userDefinedField4\":null,\"userDefinedField5\":null}]}]}");
-          } else if ("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=moby%2520dick&offset=2&count=10&orderby=titlename"
-            .equals(req.query())) {
-            req.response().setStatusCode(200).end("{\"totalResults\":5,\"titles\":[]}");
+          if (MOBY_DICK_SEARCH.equals(req.getParam("search"))) {
+            respondWithPage(req, MOCK_RMAPI_SEARCH_TITLES_MOBY_DICK_FILE);
+          } else if (DIALOGUE_SEARCH.equals(req.getParam("search"))) {
+            respondWithPage(req, MOCK_RMAPI_SEARCH_TITLES_DIALOGUE_FILE);
           } else {
             req.response().setStatusCode(500).end("Unexpected call: " + req.path());
           }
@@ -142,11 +153,27 @@ public class RMAPIToCodexTest {
     vertx.close(context.asyncAssertSuccess());
   }
 
+  /**
+   * Answers a title search with the page of the titles in the mock file that
+   * the offset (page number) and count parameters ask for.
+   */
+  private static void respondWithPage(HttpServerRequest req, String mockFile) {
+    JsonObject result = new JsonObject(readMockFile(mockFile));
+    JsonArray titles = result.getJsonArray("titles");
+    int page = Integer.parseInt(req.getParam("offset"));
+    int count = Integer.parseInt(req.getParam("count"));
+    JsonArray pageTitles = new JsonArray();
+    for (int i = (page - 1) * count; i < Math.min(page * count, titles.size()); i++) {
+      pageTitles.add(titles.getValue(i));
+    }
+    req.response().setStatusCode(200).end(result.put("titles", pageTitles).encode());
+  }
+
   @Test
   public void testGetInstance(TestContext context) {
     Async async = context.async();
 
-      RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration, 1619585)
+      rmapiToCodex.getInstance(configuration, 1619585, new StaleData())
     .whenComplete((response, throwable) -> {
       context.assertEquals("1619585", response.getId());
       context.assertEquals("Tom, Dick and Harry", response.getTitle());
@@ -173,7 +200,7 @@ public class RMAPIToCodexTest {
   public void testGetInstance2(TestContext context) {
     Async async = context.async();
 
-    RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration ,4581052)
+    rmapiToCodex.getInstance(configuration, 4581052, new StaleData())
       .whenComplete((response, throwable) -> {
       context.assertEquals("4581052", response.getId());
       context.assertEquals("The World According to Philip K. Dick", response.getTitle());
@@ -245,7 +272,7 @@ public class RMAPIToCodexTest {
   public void testGetInstance3(TestContext context) {
     Async async = context.async();
 
-      RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration, 4581057)
+      rmapiToCodex.getInstance(configuration, 4581057, new StaleData())
         .whenComplete((response, throwable) -> {
       context.assertEquals("4581057", response.getId());
       context.assertEquals("The World According to Philip K. Dick", response.getTitle());
@@ -317,7 +344,7 @@ public class RMAPIToCodexTest {
   public void testGetInstance4(TestContext context) {
     Async async = context.async();
 
-    RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration, 2619585)
+    rmapiToCodex.getInstance(configuration, 2619585, new StaleData())
       .whenComplete((response, throwable) -> {
         context.assertEquals("2619585", response.getId());
         context.assertEquals("Tom, Dick and Harry", response.getTitle());
@@ -344,7 +371,7 @@ public class RMAPIToCodexTest {
   public void testGetInstanceEmptyContributorList(TestContext context) {
     Async async = context.async();
 
-   RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration, 1619586)
+   rmapiToCodex.getInstance(configuration, 1619586, new StaleData())
      .whenComplete((response, throwable) -> {
       context.assertEquals("1619586", response.getId());
       context.assertEquals("Tom, Dick and Harry", response.getTitle());
@@ -368,7 +395,7 @@ public class RMAPIToCodexTest {
   public void testGetInstanceEmptySubjectList(TestContext context) {
     Async async = context.async();
 
-    RMAPIToCodex.getInstance(vertx.getOrCreateContext(), configuration, 1619586)
+    rmapiToCodex.getInstance(configuration, 1619586, new StaleData())
       .whenComplete((response, throwable) -> {
       context.assertEquals("1619586", response.getId());
       context.assertEquals("Tom, Dick and Harry", response.getTitle());
@@ -388,13 +415,50 @@ public class RMAPIToCodexTest {
     });
   }
 
+  @Test
+  public void testGetInstanceNotFoundIsAnsweredFromCache(TestContext context) {
+    Async async = context.async();
+
+    rmapiToCodex.getInstance(configuration, 1111111, new StaleData())
+      .handle((response, throwable) -> throwable)
+      .thenCompose(firstFailure -> {
+        context.assertTrue(UpstreamErrors.unwrap(firstFailure) instanceof ResourceNotFoundException);
+        return rmapiToCodex.getInstance(configuration, 1111111, new StaleData())
+          .handle((response, throwable) -> throwable);
+      })
+      .whenComplete((secondFailure, throwable) -> {
+        context.assertTrue(UpstreamErrors.unwrap(secondFailure) instanceof ResourceNotFoundException);
+        context.assertEquals(1, upstreamCalls.get("/rm/rmaccounts/test/titles/1111111").get());
+        async.complete();
+      });
+  }
+
+  @Test
+  public void testGetInstanceNotFoundIsLookedUpAgainOnceForgotten(TestContext context) {
+    Async async = context.async();
+
+    rmapiToCodex.getInstance(configuration, 1111111, new StaleData())
+      .handle((response, throwable) -> {
+        // what expiry of the entry does after notfound.cache.expire seconds
+        titleNotFoundCache.invalidate(configuration, 1111111L);
+        return null;
+      })
+      .thenCompose(o -> rmapiToCodex.getInstance(configuration, 1111111, new StaleData())
+        .handle((response, throwable) -> throwable))
+      .whenComplete((failure, throwable) -> {
+        context.assertTrue(UpstreamErrors.unwrap(failure) instanceof ResourceNotFoundException);
+        context.assertEquals(2, upstreamCalls.get("/rm/rmaccounts/test/titles/1111111").get());
+        async.complete();
+      });
+  }
+
   @Test
   public void testGetInstances(TestContext context) throws QueryValidationException {
     Async async = context.async();
     TitleParameters parameters = new TitleParameters(new CQLParameters("title=moby%20dick"));
-    PaginationInfo pagination = new PaginationCalculator().getPagination(0, 5);
+    PaginationInfo pagination = paginationCalculator.getPagination(0, 5);
 
-    RMAPIToCodex.getInstances(parameters, pagination, vertx.getOrCreateContext(), configuration)
+    rmapiToCodex.getInstances(parameters, pagination, configuration, new StaleData())
       .whenComplete((response, throwable) -> {
         context.assertEquals(524, response.getResultInfo().getTotalRecords());
         context.assertEquals(5, response.getInstances().size());
@@ -436,9 +500,9 @@ public class RMAPIToCodexTest {
   public void testGetInstancesPaging(TestContext context) throws QueryValidationException {
     Async async = context.async();
     TitleParameters parameters = new TitleParameters(new CQLParameters("title=moby%20dick"));
-    PaginationInfo pagination = new PaginationCalculator().getPagination(2, 5);
+    PaginationInfo pagination = paginationCalculator.getPagination(2, 5);
 
-    RMAPIToCodex.getInstances(parameters, pagination, vertx.getOrCreateContext(), configuration)
+    rmapiToCodex.getInstances(parameters, pagination, configuration, new StaleData())
       .whenComplete((response, throwable) -> {
         context.assertEquals(524, response.getResultInfo().getTotalRecords());
         context.assertEquals(5, response.getInstances().size());
@@ -451,14 +515,35 @@ public class RMAPIToCodexTest {
     });
   }
 
+  @Test
+  public void testGetInstancesWindowsShareCachedPage(TestContext context) throws QueryValidationException {
+    Async async = context.async();
+    TitleParameters parameters = new TitleParameters(new CQLParameters("title=moby%20dick"));
+
+    rmapiToCodex.getInstances(parameters, paginationCalculator.getPagination(0, 10), configuration, new StaleData())
+      .thenCompose(first -> rmapiToCodex.getInstances(parameters, paginationCalculator.getPagination(5, 10),
+        configuration, new StaleData()))
+      .whenComplete((response, throwable) -> {
+        context.assertEquals(5, response.getInstances().size());
+        context.assertEquals("A Dialogue about the French government wars, cruelties, armies, fleet, &c. between Tom and Dick, two seamen.",
+          response.getInstances().get(0).getTitle());
+        context.assertEquals(1, upstreamCalls.get("/rm/rmaccounts/test/titles").get());
+        async.complete();
+      }).exceptionally(throwable -> {
+      context.fail(throwable);
+      async.complete();
+      return null;
+    });
+  }
+
   @Test
   public void testGetInstancesPagingIndexGTCount(TestContext context) throws QueryValidationException {
     Async async = context.async();
 
-    TitleParameters parameters = new TitleParameters(new CQLParameters("title=moby%20dick"));
-    PaginationInfo pagination = new PaginationCalculator().getPagination(7, 10);
+    TitleParameters parameters = new TitleParameters(new CQLParameters("title=" + DIALOGUE_SEARCH));
+    PaginationInfo pagination = paginationCalculator.getPagination(7, 10);
 
-    RMAPIToCodex.getInstances(parameters, pagination, vertx.getOrCreateContext(), configuration)
+    rmapiToCodex.getInstances(parameters, pagination, configuration, new StaleData())
       .whenComplete((response, throwable) -> {
         context.assertEquals(5, response.getResultInfo().getTotalRecords());
         context.assertEquals(0, response.getInstances().size());
@@ -471,14 +556,6 @@ public class RMAPIToCodexTest {
     });
   }
 
-  @Test
-  public void constructorIsPrivateTest(TestContext context) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-    Constructor<RMAPIToCodex> constructor = RMAPIToCodex.class.getDeclaredConstructor();
-    context.assertTrue(Modifier.isPrivate(constructor.getModifiers()));
-    constructor.setAccessible(true);
-    constructor.newInstance();
-  }
-
   @Test
   public void typeAndSubTypeTest(TestContext context) {
     context.assertEquals("ISSN", IdentifierType.ISSN.getDisplayName());
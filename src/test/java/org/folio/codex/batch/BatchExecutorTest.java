@@ -0,0 +1,111 @@
+package org.folio.codex.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class BatchExecutorTest {
+
+  @Test
+  public void shouldReturnResultsInItemOrder() {
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+    BatchExecutor executor = new BatchExecutor(3, 100);
+
+    CompletableFuture<List<String>> result = executor.execute(Arrays.asList(1, 2, 3),
+      item -> {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pending.add(future);
+        return future;
+      },
+      (item, throwable) -> null);
+
+    pending.get(2).complete("3");
+    pending.get(0).complete("1");
+    assertFalse(result.isDone());
+    pending.get(1).complete("2");
+
+    assertEquals(Arrays.asList("1", "2", "3"), result.join());
+  }
+
+  @Test
+  public void shouldNotExceedConcurrency() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<CompletableFuture<Integer>> pending = new ArrayList<>();
+    BatchExecutor executor = new BatchExecutor(2, 100);
+
+    CompletableFuture<List<Integer>> result = executor.execute(Arrays.asList(1, 2, 3, 4, 5),
+      item -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        pending.add(future);
+        return future.whenComplete((value, throwable) -> running.decrementAndGet());
+      },
+      (item, throwable) -> null);
+
+    assertEquals(2, pending.size());
+    for (int i = 0; i < 5; i++) {
+      pending.get(i).complete(i + 1);
+    }
+
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), result.join());
+    assertEquals(2, maxRunning.get());
+  }
+
+  @Test
+  public void shouldRecoverFailedItems() {
+    BatchExecutor executor = new BatchExecutor(2, 100);
+
+    List<String> result = executor.execute(Arrays.asList("1", "x", "3"),
+      item -> CompletableFuture.completedFuture(Integer.valueOf(item).toString()),
+      (item, throwable) -> "failed " + item).join();
+
+    assertEquals(Arrays.asList("1", "failed x", "3"), result);
+  }
+
+  @Test
+  public void shouldRunRepeatedItemsOnce() {
+    List<Integer> started = new ArrayList<>();
+    BatchExecutor executor = new BatchExecutor(2, 100);
+
+    List<Integer> result = executor.execute(Arrays.asList(3, 1, 3, 2, 1),
+      item -> {
+        started.add(item);
+        return CompletableFuture.completedFuture(item);
+      },
+      (item, throwable) -> null).join();
+
+    assertEquals(Arrays.asList(3, 1, 2), started);
+    assertEquals(Arrays.asList(3, 1, 2), result);
+  }
+
+  @Test
+  public void shouldHandleLongRunsOfCompletedTasks() {
+    List<Integer> items = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+    BatchExecutor executor = new BatchExecutor(4, items.size());
+
+    List<Integer> result = executor.execute(items, CompletableFuture::completedFuture, (item, throwable) -> null).join();
+
+    assertEquals(items, result);
+  }
+
+  @Test
+  public void shouldCompleteEmptyBatch() {
+    CompletableFuture<List<Object>> result = new BatchExecutor(2, 100)
+      .execute(Collections.emptyList(), CompletableFuture::completedFuture, (item, throwable) -> null);
+
+    assertTrue(result.isDone());
+    assertTrue(result.join().isEmpty());
+  }
+}
@@ -0,0 +1,44 @@
+package org.folio.codex.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import org.folio.cql2rmapi.CQLParameters;
+import org.folio.cql2rmapi.PackageParameters;
+import org.folio.cql2rmapi.QueryValidationException;
+import org.folio.cql2rmapi.query.Page;
+
+public class PackagesPageKeyTest {
+
+  @Test
+  public void shouldBeEqualForSameQueryAndPage() throws QueryValidationException {
+    PackagesPageKey key = key("name = bridget and type = aggregatedfulltext sortby name", new Page(2, 25));
+    PackagesPageKey sameKey = key("name = bridget and type = aggregatedfulltext sortby name", new Page(2, 25));
+
+    assertEquals(key, sameKey);
+    assertEquals(key.hashCode(), sameKey.hashCode());
+  }
+
+  @Test
+  public void shouldDifferForOtherSearch() throws QueryValidationException {
+    assertNotEquals(key("name = bridget", new Page(1, 25)), key("name = jones", new Page(1, 25)));
+    assertNotEquals(key("name = bridget", new Page(1, 25)),
+      key("name = bridget and type = aggregatedfulltext", new Page(1, 25)));
+    assertNotEquals(key("name = bridget", new Page(1, 25)),
+      key("(name = \"bridget\") and (ext.selected = true)", new Page(1, 25)));
+  }
+
+  @Test
+  public void shouldDifferForOtherPage() throws QueryValidationException {
+    assertNotEquals(key("name = bridget", new Page(1, 25)), key("name = bridget", new Page(2, 25)));
+    assertNotEquals(key("name = bridget", new Page(1, 25)), key("name = bridget", new Page(1, 20)));
+  }
+
+  private static PackagesPageKey key(String query, Page page) throws QueryValidationException {
+    PackageParameters parameters = new PackageParameters(new CQLParameters(query));
+    return new PackagesPageKey(parameters.getSelection(), parameters.getFilterType(), parameters.getSearchValue(),
+      parameters.getSortType(), page);
+  }
+}
@@ -0,0 +1,202 @@
+package org.folio.codex.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+import org.folio.holdingsiq.model.OkapiData;
+import org.folio.holdingsiq.service.ConfigurationService;
+
+public class RefreshAheadConfigurationCacheTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<CompletableFuture<Configuration>> loads = new ArrayList<>();
+  private final ConfigurationService configurationService = mock(ConfigurationService.class);
+  private OkapiData okapiData;
+
+  // served for 60s, refreshed in the background after 5s, at most 2 entries
+  private final RefreshAheadConfigurationCache cache = new RefreshAheadConfigurationCache(configurationService, 60, 5, 2,
+    new Ticker() {
+      @Override
+      public long read() {
+        return now.get();
+      }
+    });
+
+  @Before
+  public void setUp() {
+    okapiData = okapiData("refreshaheadtest", "testToken");
+    when(configurationService.retrieveConfiguration(any())).thenAnswer(invocation -> {
+      CompletableFuture<Configuration> load = new CompletableFuture<>();
+      loads.add(load);
+      return load;
+    });
+  }
+
+  @Test
+  public void shouldServeFreshEntryWithoutReload() {
+    load(configuration);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+
+    assertSame(configuration, cache.retrieveConfiguration(okapiData).join());
+    assertEquals(1, loads.size());
+  }
+
+  @Test
+  public void shouldReloadInBackgroundAfterRefreshTime() {
+    load(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+
+    CompletableFuture<Configuration> result = cache.retrieveConfiguration(okapiData);
+
+    assertSame(configuration, result.join());
+    assertEquals(2, loads.size());
+    loads.get(1).complete(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+    cache.retrieveConfiguration(okapiData);
+    assertEquals(2, loads.size());
+  }
+
+  @Test
+  public void shouldReloadInForegroundAfterExpirationTime() {
+    load(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+    CompletableFuture<Configuration> result = cache.retrieveConfiguration(okapiData);
+
+    assertFalse(result.isDone());
+    loads.get(1).complete(configuration);
+    assertSame(configuration, result.join());
+  }
+
+  @Test
+  public void shouldShareRunningReload() {
+    CompletableFuture<Configuration> first = cache.retrieveConfiguration(okapiData);
+    CompletableFuture<Configuration> second = cache.retrieveConfiguration(okapiData);
+
+    assertEquals(1, loads.size());
+    loads.get(0).complete(configuration);
+    assertSame(configuration, first.join());
+    assertSame(configuration, second.join());
+    verify(configurationService, times(1)).retrieveConfiguration(any());
+  }
+
+  @Test
+  public void shouldReloadAgainAfterFailedReload() {
+    CompletableFuture<Configuration> failed = cache.retrieveConfiguration(okapiData);
+    loads.get(0).completeExceptionally(new IllegalStateException("mod-configuration is down"));
+    assertTrue(failed.isCompletedExceptionally());
+
+    CompletableFuture<Configuration> result = cache.retrieveConfiguration(okapiData);
+
+    assertEquals(2, loads.size());
+    loads.get(1).complete(configuration);
+    assertSame(configuration, result.join());
+  }
+
+  @Test
+  public void shouldNotifyListenersWhenCredentialsChange() {
+    List<Configuration> changed = new ArrayList<>();
+    cache.addChangeListener(changed::add);
+    load(configuration);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+    cache.retrieveConfiguration(okapiData);
+    loads.get(1).complete(configuration);
+    assertTrue(changed.isEmpty());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+    cache.retrieveConfiguration(okapiData);
+    loads.get(2).complete(otherConfiguration);
+    assertEquals(1, changed.size());
+    assertSame(configuration, changed.get(0));
+  }
+
+  @Test
+  public void shouldNotNotifyListenersWhileOtherTenantUsesCredentials() {
+    List<Configuration> changed = new ArrayList<>();
+    cache.addChangeListener(changed::add);
+    load(configuration);
+    cache.retrieveConfiguration(okapiData("othertenant", "otherToken"));
+    loads.get(1).complete(configuration);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+    cache.retrieveConfiguration(okapiData);
+    loads.get(2).complete(otherConfiguration);
+
+    assertTrue(changed.isEmpty());
+  }
+
+  @Test
+  public void shouldShareEntryBetweenUsersOfTenant() {
+    load(configuration);
+
+    assertSame(configuration, cache.retrieveConfiguration(okapiData("refreshaheadtest", "otherToken")).join());
+    assertEquals(1, loads.size());
+  }
+
+  @Test
+  public void shouldBoundNumberOfEntries() {
+    for (String tenant : new String[] {"one", "two", "three"}) {
+      cache.retrieveConfiguration(okapiData(tenant, "testToken"));
+      loads.get(loads.size() - 1).complete(configuration);
+    }
+
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void shouldDropEntriesNotUsedForExpirationTime() {
+    load(configuration);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+    assertEquals(0, cache.size());
+  }
+
+  private void load(Configuration loaded) {
+    CompletableFuture<Configuration> result = cache.retrieveConfiguration(okapiData);
+    loads.get(loads.size() - 1).complete(loaded);
+    assertSame(loaded, result.join());
+  }
+
+  private static OkapiData okapiData(String tenant, String token) {
+    Map<String, String> okapiHeaders = new HashMap<>();
+    okapiHeaders.put("x-okapi-tenant", tenant);
+    okapiHeaders.put("x-okapi-url", "http://localhost:51234");
+    okapiHeaders.put("x-okapi-token", token);
+    return new OkapiData(okapiHeaders);
+  }
+}
@@ -0,0 +1,52 @@
+package org.folio.codex.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+
+public class SearchPageCacheTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  // at most 10 records per tenant
+  private final SearchPageCache<Integer, List<String>> cache = new SearchPageCache<>("testPageCache", 60, 10, List::size);
+
+  @Test
+  public void shouldKeepPagesWithinRecordLimit() {
+    cache.putValue(configuration, 1, Arrays.asList("a", "b", "c", "d", "e"));
+    cache.putValue(configuration, 2, Arrays.asList("f", "g", "h", "i", "j"));
+
+    assertEquals(5, cache.getValue(configuration, 1).size());
+    assertEquals(5, cache.getValue(configuration, 2).size());
+  }
+
+  @Test
+  public void shouldEvictPagesBeyondRecordLimit() {
+    cache.putValue(configuration, 1, Arrays.asList("a", "b", "c", "d", "e", "f"));
+    cache.putValue(configuration, 2, Arrays.asList("g", "h", "i", "j", "k", "l"));
+
+    assertNull(cache.getValue(configuration, 1));
+    assertEquals(6, cache.getValue(configuration, 2).size());
+  }
+
+  @Test
+  public void shouldWeighEmptyPagesAsOneRecord() {
+    for (int page = 1; page <= 11; page++) {
+      cache.putValue(configuration, page, Collections.emptyList());
+    }
+
+    assertNull(cache.getValue(configuration, 1));
+    assertEquals(Collections.emptyList(), cache.getValue(configuration, 11));
+  }
+}
@@ -0,0 +1,107 @@
+package org.folio.codex.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+
+public class TenantCacheTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final TenantCache<Long, String> cache = new TenantCache<>("testCache", 60, 2);
+
+  @Test
+  public void shouldReturnCachedValueAndCountHits() {
+    cache.putValue(configuration, 1L, "one");
+
+    assertEquals("one", cache.getValue(configuration, 1L));
+    assertNull(cache.getValue(configuration, 2L));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldKeepTenantsApart() {
+    cache.putValue(configuration, 1L, "one");
+
+    assertNull(cache.getValue(otherConfiguration, 1L));
+  }
+
+  @Test
+  public void shouldDropEntriesWhenConfigurationIsInvalidated() {
+    cache.putValue(configuration, 1L, "one");
+    cache.putValue(otherConfiguration, 1L, "other one");
+
+    cache.invalidate(configuration);
+
+    assertNull(cache.getValue(configuration, 1L));
+    assertEquals("other one", cache.getValue(otherConfiguration, 1L));
+  }
+
+  @Test
+  public void shouldBoundEntriesPerTenant() {
+    cache.putValue(configuration, 1L, "one");
+    cache.putValue(configuration, 2L, "two");
+    cache.putValue(configuration, 3L, "three");
+    cache.putValue(otherConfiguration, 1L, "other one");
+
+    assertNull(cache.getValue(configuration, 1L));
+    assertEquals("three", cache.getValue(configuration, 3L));
+    assertEquals("other one", cache.getValue(otherConfiguration, 1L));
+  }
+
+  @Test
+  public void shouldExpireEntries() {
+    AtomicLong now = new AtomicLong();
+    TenantCache<Long, String> expiringCache = new TenantCache<>("expiringCache", 30, 0, 2, new Ticker() {
+      @Override
+      public long read() {
+        return now.get();
+      }
+    });
+    expiringCache.putValue(configuration, 1L, "one");
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+    assertEquals("one", expiringCache.getValue(configuration, 1L));
+    now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    assertNull(expiringCache.getValue(configuration, 1L));
+    assertNull(expiringCache.getStaleValue(configuration, 1L));
+  }
+
+  @Test
+  public void shouldKeepExpiredEntriesForStaleTime() {
+    AtomicLong now = new AtomicLong();
+    TenantCache<Long, String> staleCache = new TenantCache<>("staleCache", 60, 30, 2, new Ticker() {
+      @Override
+      public long read() {
+        return now.get();
+      }
+    });
+    staleCache.putValue(configuration, 1L, "one");
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+    assertNull(staleCache.getValue(configuration, 1L));
+    assertEquals("one", staleCache.getStaleValue(configuration, 1L));
+    assertEquals(1, staleCache.getStaleHitCount());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    assertNull(staleCache.getStaleValue(configuration, 1L));
+  }
+}
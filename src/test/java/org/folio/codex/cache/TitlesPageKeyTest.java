@@ -0,0 +1,40 @@
+package org.folio.codex.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import org.folio.cql2rmapi.CQLParameters;
+import org.folio.cql2rmapi.QueryValidationException;
+import org.folio.cql2rmapi.TitleParameters;
+import org.folio.cql2rmapi.query.Page;
+
+public class TitlesPageKeyTest {
+
+  @Test
+  public void shouldBeEqualForSameQueryAndPage() throws QueryValidationException {
+    TitlesPageKey key = key("title = moby dick sortby title", new Page(2, 25));
+    TitlesPageKey sameKey = key("title = moby dick sortby title", new Page(2, 25));
+
+    assertEquals(key, sameKey);
+    assertEquals(key.hashCode(), sameKey.hashCode());
+  }
+
+  @Test
+  public void shouldDifferForOtherSearch() throws QueryValidationException {
+    assertNotEquals(key("title = moby dick", new Page(1, 25)), key("title = bridget jones", new Page(1, 25)));
+    assertNotEquals(key("title = moby dick", new Page(1, 25)), key("publisher = moby dick", new Page(1, 25)));
+  }
+
+  @Test
+  public void shouldDifferForOtherPage() throws QueryValidationException {
+    assertNotEquals(key("title = moby dick", new Page(1, 25)), key("title = moby dick", new Page(2, 25)));
+    assertNotEquals(key("title = moby dick", new Page(1, 25)), key("title = moby dick", new Page(1, 20)));
+  }
+
+  private static TitlesPageKey key(String query, Page page) throws QueryValidationException {
+    TitleParameters parameters = new TitleParameters(new CQLParameters(query));
+    return new TitlesPageKey(parameters.getFilterQuery(), parameters.getSortType(), page);
+  }
+}
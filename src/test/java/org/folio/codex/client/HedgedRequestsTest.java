@@ -0,0 +1,233 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+
+public class HedgedRequestsTest {
+
+  private static final String TITLE = "title";
+  private static final String PACKAGE = "package";
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<Long> delays = new ArrayList<>();
+  private final List<Runnable> timers = new ArrayList<>();
+
+  // hedge after the 50th percentile of the last 2 requests, at most 50% extra requests, so 1 hedge at a time
+  private final HedgedRequests hedgedRequests = new HedgedRequests(true, 50, 50, 2,
+    (delay, task) -> {
+      delays.add(delay);
+      timers.add(task);
+    }, now::get);
+
+  @Test
+  public void shouldNotHedgeBeforeLatenciesAreKnown() {
+    hedgedRequests.execute(configuration, TITLE, () -> new CompletableFuture<>());
+
+    assertTrue(timers.isEmpty());
+  }
+
+  @Test
+  public void shouldHedgeAfterLatencyPercentile() {
+    warmUp(100, 300);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+
+    assertEquals(Long.valueOf(100), delays.get(0));
+    timers.get(0).run();
+    assertEquals(2, attempts.size());
+    assertEquals(1, hedgedRequests.getHedgeCount());
+  }
+
+  @Test
+  public void shouldFollowRecentLatencies() {
+    warmUp(300, 300, 100, 100);
+
+    hedgedRequests.execute(configuration, TITLE, () -> new CompletableFuture<>());
+
+    assertEquals(Long.valueOf(100), delays.get(delays.size() - 1));
+  }
+
+  @Test
+  public void shouldNotCountWaitInGuardsAsLatency() {
+    for (int i = 0; i < 2; i++) {
+      List<Runnable> waiting = new ArrayList<>();
+      CompletableFuture<String> attempt = new CompletableFuture<>();
+      hedgedRequests.execute(configuration, TITLE, call -> waitInGuard(call, waiting), () -> attempt);
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+      waiting.get(0).run();
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+      attempt.complete("warm up");
+    }
+
+    hedgedRequests.execute(configuration, TITLE, () -> new CompletableFuture<>());
+
+    assertEquals(Long.valueOf(100), delays.get(0));
+  }
+
+  @Test
+  public void shouldReturnFirstAnswer() {
+    warmUp(100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    CompletableFuture<String> result = hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    timers.get(0).run();
+    attempts.get(1).complete("hedge");
+    attempts.get(0).complete("first");
+
+    assertEquals("hedge", result.join());
+    assertEquals(1, hedgedRequests.getHedgeWinCount());
+    assertEquals(100.0, hedgedRequests.getHedgeWinRate(), 0.001);
+  }
+
+  @Test
+  public void shouldWaitForHedgeWhenFirstAttemptFails() {
+    warmUp(100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    CompletableFuture<String> result = hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    timers.get(0).run();
+    attempts.get(0).completeExceptionally(new RuntimeException("down"));
+
+    assertFalse(result.isDone());
+    attempts.get(1).complete("hedge");
+    assertEquals("hedge", result.join());
+  }
+
+  @Test
+  public void shouldNotHedgeFinishedRequest() {
+    warmUp(100, 100);
+
+    hedgedRequests.execute(configuration, TITLE, () -> CompletableFuture.completedFuture("one"));
+
+    assertTrue(timers.isEmpty());
+  }
+
+  @Test
+  public void shouldStayWithinBudget() {
+    warmUp(100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    timers.forEach(Runnable::run);
+
+    assertEquals(1, hedgedRequests.getHedgeCount());
+    // two more requests pay for the next hedge
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    timers.get(timers.size() - 1).run();
+    assertEquals(2, hedgedRequests.getHedgeCount());
+  }
+
+  @Test
+  public void shouldNotSaveUpBudget() {
+    warmUp(100, 100, 100, 100, 100, 100, 100, 100, 100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    hedgedRequests.execute(configuration, TITLE, () -> newAttempt(attempts));
+    timers.forEach(Runnable::run);
+
+    // 13 requests over the lifetime would allow 6 hedges, the bucket holds 1
+    assertEquals(1, hedgedRequests.getHedgeCount());
+  }
+
+  @Test
+  public void shouldKeepLatenciesPerTenantAndKind() {
+    warmUp(100, 100);
+
+    hedgedRequests.execute(configuration, PACKAGE, () -> new CompletableFuture<>());
+    hedgedRequests.execute(otherConfiguration, TITLE, () -> new CompletableFuture<>());
+
+    assertTrue(timers.isEmpty());
+  }
+
+  @Test
+  public void shouldCallAgainForHedge() {
+    warmUp(100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    AtomicInteger permits = new AtomicInteger();
+
+    CompletableFuture<String> result = hedgedRequests.execute(configuration, TITLE, call -> {
+      permits.incrementAndGet();
+      return call.get();
+    }, () -> newAttempt(attempts));
+    timers.get(0).run();
+
+    // the guards are passed once per attempt
+    assertEquals(2, permits.get());
+    attempts.get(0).complete("first");
+    assertEquals("first", result.join());
+  }
+
+  @Test
+  public void shouldNotFailRequestWhenHedgeIsRefused() {
+    warmUp(100, 100);
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    CompletableFuture<String> result = hedgedRequests.execute(configuration, TITLE, call -> attempts.isEmpty()
+      ? call.get()
+      : CompletableFuture.<String>failedFuture(new RateLimitExceededException("slow down")), () -> newAttempt(attempts));
+    timers.get(0).run();
+
+    assertFalse(result.isDone());
+    attempts.get(0).complete("first");
+    assertEquals("first", result.join());
+  }
+
+  @Test
+  public void shouldPassCallsThroughWhenDisabled() {
+    HedgedRequests disabled = new HedgedRequests(false, 50, 50, 2, (delay, task) -> timers.add(task), now::get);
+
+    assertEquals("one", disabled.execute(configuration, TITLE, () -> CompletableFuture.completedFuture("one")).join());
+    assertEquals(0, disabled.getRequestCount());
+  }
+
+  private void warmUp(long... latencies) {
+    for (long latency : latencies) {
+      CompletableFuture<String> attempt = new CompletableFuture<>();
+      hedgedRequests.execute(configuration, TITLE, () -> attempt);
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latency));
+      attempt.complete("warm up");
+    }
+  }
+
+  private static CompletableFuture<String> waitInGuard(Supplier<CompletableFuture<String>> call, List<Runnable> waiting) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    waiting.add(() -> call.get().thenAccept(result::complete));
+    return result;
+  }
+
+  private static CompletableFuture<String> newAttempt(List<CompletableFuture<String>> attempts) {
+    CompletableFuture<String> attempt = new CompletableFuture<>();
+    attempts.add(attempt);
+    return attempt;
+  }
+}
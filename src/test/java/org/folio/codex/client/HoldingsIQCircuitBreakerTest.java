@@ -0,0 +1,177 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.folio.codex.client.HoldingsIQCircuitBreaker.State;
+import org.folio.holdingsiq.model.Configuration;
+
+public class HoldingsIQCircuitBreakerTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final AtomicLong now = new AtomicLong();
+
+  // window of 4 calls, opens at 50% failures, slow after 1s, open for 10s, 1 probe
+  private final HoldingsIQCircuitBreaker circuitBreaker =
+    new HoldingsIQCircuitBreaker(true, 4, 4, 50, 1000, 10, 1, now::get);
+
+  @Test
+  public void shouldOpenAfterFailureRateIsReached() {
+    succeed(configuration);
+    succeed(configuration);
+    fail(configuration);
+    assertEquals(State.CLOSED, circuitBreaker.getState(configuration));
+
+    fail(configuration);
+
+    assertEquals(State.OPEN, circuitBreaker.getState(configuration));
+    assertEquals(1, circuitBreaker.getOpenedCount());
+  }
+
+  @Test
+  public void shouldReportFailureRatePerTenant() {
+    succeed(configuration);
+    succeed(configuration);
+    succeed(configuration);
+    fail(configuration);
+
+    assertEquals(25.0, circuitBreaker.getFailureRate(configuration), 0.001);
+    assertEquals(0.0, circuitBreaker.getFailureRate(otherConfiguration), 0.001);
+  }
+
+  @Test
+  public void shouldFailFastWhileOpen() {
+    open(configuration);
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<String> result = circuitBreaker.execute(configuration, () -> {
+      calls.incrementAndGet();
+      return CompletableFuture.completedFuture("one");
+    });
+
+    assertTrue(result.isCompletedExceptionally());
+    assertTrue(causeOf(result) instanceof CircuitBreakerOpenException);
+    assertEquals(0, calls.get());
+    assertEquals(1, circuitBreaker.getRejectedCount());
+  }
+
+  @Test
+  public void shouldKeepTenantsApart() {
+    open(configuration);
+
+    assertEquals("one", circuitBreaker.execute(otherConfiguration, () -> CompletableFuture.completedFuture("one")).join());
+    assertEquals(State.CLOSED, circuitBreaker.getState(otherConfiguration));
+  }
+
+  @Test
+  public void shouldCloseAfterSuccessfulProbe() {
+    open(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+    succeed(configuration);
+
+    assertEquals(State.CLOSED, circuitBreaker.getState(configuration));
+    assertEquals(1, circuitBreaker.getClosedCount());
+    assertEquals(10000, circuitBreaker.getOpenTime());
+  }
+
+  @Test
+  public void shouldLetOnlyProbeThroughWhileHalfOpen() {
+    open(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    CompletableFuture<String> probe = new CompletableFuture<>();
+
+    circuitBreaker.execute(configuration, () -> probe);
+    CompletableFuture<String> second = circuitBreaker.execute(configuration, () -> CompletableFuture.completedFuture("two"));
+
+    assertEquals(State.HALF_OPEN, circuitBreaker.getState(configuration));
+    assertTrue(causeOf(second) instanceof CircuitBreakerOpenException);
+  }
+
+  @Test
+  public void shouldOpenAgainAfterFailedProbe() {
+    open(configuration);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+    fail(configuration);
+
+    assertEquals(State.OPEN, circuitBreaker.getState(configuration));
+    now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertTrue(causeOf(circuitBreaker.execute(configuration, () -> CompletableFuture.completedFuture("one")))
+      instanceof CircuitBreakerOpenException);
+  }
+
+  @Test
+  public void shouldCountSlowCallsAsFailures() {
+    for (int i = 0; i < 4; i++) {
+      CompletableFuture<String> upstream = new CompletableFuture<>();
+      circuitBreaker.execute(configuration, () -> upstream);
+      now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+      upstream.complete("slow");
+    }
+
+    assertEquals(State.OPEN, circuitBreaker.getState(configuration));
+  }
+
+  @Test
+  public void shouldNotCountErrorsOfModuleAsFailures() {
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.execute(configuration, () -> CompletableFuture.failedFuture(new NullPointerException()));
+    }
+
+    assertEquals(State.CLOSED, circuitBreaker.getState(configuration));
+  }
+
+  @Test
+  public void shouldPassCallsThroughWhenDisabled() {
+    HoldingsIQCircuitBreaker disabled = new HoldingsIQCircuitBreaker(false, 4, 4, 50, 1000, 10, 1, now::get);
+    for (int i = 0; i < 10; i++) {
+      disabled.execute(configuration, () -> CompletableFuture.failedFuture(new IOException("down")));
+    }
+
+    assertEquals("one", disabled.execute(configuration, () -> CompletableFuture.completedFuture("one")).join());
+  }
+
+  private void open(Configuration configuration) {
+    for (int i = 0; i < 4; i++) {
+      fail(configuration);
+    }
+  }
+
+  private void succeed(Configuration configuration) {
+    circuitBreaker.execute(configuration, () -> CompletableFuture.completedFuture("ok"));
+  }
+
+  private void fail(Configuration configuration) {
+    circuitBreaker.execute(configuration, () -> CompletableFuture.failedFuture(new IOException("down")));
+  }
+
+  private static Throwable causeOf(CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static org.folio.codex.client.HoldingsIQConcurrencyLimiter.CallClass.EXPORT_PAGE;
+import static org.folio.codex.client.HoldingsIQConcurrencyLimiter.CallClass.LOOKUP;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.folio.codex.client.HoldingsIQConcurrencyLimiter.CallClass;
+
+public class HoldingsIQConcurrencyLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<Long> delays = new ArrayList<>();
+  private final List<Runnable> timers = new ArrayList<>();
+
+  // 2 calls in flight at start, between 1 and 4, halved on congestion, congested at 2x the typical latency
+  // of the last 2 calls, 2 calls queued for at most 1s
+  private final HoldingsIQConcurrencyLimiter limiter = newLimiter(2, 1, 4, 0.5, 2);
+
+  @Test
+  public void shouldQueueCallsBeyondLimit() {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    limiter.execute(LOOKUP, () -> newCall(calls));
+
+    CompletableFuture<String> queued = limiter.execute(LOOKUP, () -> newCall(calls));
+
+    assertEquals(2, calls.size());
+    assertEquals(1, limiter.getQueueDepth());
+    assertFalse(queued.isDone());
+  }
+
+  @Test
+  public void shouldStartQueuedCallWhenSlotIsFree() {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    CompletableFuture<String> queued = limiter.execute(LOOKUP, () -> newCall(calls));
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    calls.get(0).complete("one");
+
+    assertEquals(3, calls.size());
+    assertEquals(0, limiter.getQueueDepth());
+    calls.get(2).complete("three");
+    assertEquals("three", queued.join());
+  }
+
+  @Test
+  public void shouldRejectCallsWhenQueueIsFull() {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      limiter.execute(LOOKUP, () -> newCall(calls));
+    }
+
+    CompletableFuture<String> rejected = limiter.execute(LOOKUP, () -> newCall(calls));
+
+    assertTrue(causeOf(rejected) instanceof RateLimitExceededException);
+    assertEquals(1, limiter.getRejectedCount());
+  }
+
+  @Test
+  public void shouldRejectCallsThatWaitTooLong() {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    CompletableFuture<String> queued = limiter.execute(LOOKUP, () -> newCall(calls));
+
+    assertEquals(Long.valueOf(1000), delays.get(0));
+    timers.get(0).run();
+
+    assertTrue(causeOf(queued) instanceof RateLimitExceededException);
+    assertEquals(0, limiter.getQueueDepth());
+    assertEquals(1, limiter.getRejectedCount());
+    calls.get(0).complete("one");
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void shouldNotRejectQueuedCallThatStarted() {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    limiter.execute(LOOKUP, () -> newCall(calls));
+    CompletableFuture<String> queued = limiter.execute(LOOKUP, () -> newCall(calls));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    calls.get(0).complete("one");
+
+    timers.get(0).run();
+
+    assertFalse(queued.isDone());
+    assertEquals(0, limiter.getRejectedCount());
+  }
+
+  @Test
+  public void shouldKeepTypicalLatencyPerCallClass() {
+    fillLimitAndComplete(LOOKUP, 100);
+    fillLimitAndComplete(EXPORT_PAGE, 1000);
+
+    // ten times the latency of a lookup, but in line with export pages
+    fillLimitAndComplete(EXPORT_PAGE, 1000);
+
+    assertTrue(limiter.getLimit() >= 2);
+    fillLimitAndComplete(LOOKUP, 1000);
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldRaiseLimitWhileCallsAnswerInTime() {
+    for (int i = 0; i < 10; i++) {
+      fillLimitAndComplete(100);
+    }
+
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldLowerLimitOnSlowCalls() {
+    fillLimitAndComplete(100);
+
+    fillLimitAndComplete(500);
+
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldNotLowerLimitOnSlowCallFarBelowLimit() {
+    fillLimitAndComplete(100);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    limiter.execute(LOOKUP, () -> newCall(calls));
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    calls.get(0).complete("slow");
+
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldLowerLimitOncePerRoundTrip() {
+    HoldingsIQConcurrencyLimiter limiter = newLimiter(4, 1, 4, 0.5, 2);
+    fillLimitAndComplete(limiter, LOOKUP, 100);
+
+    fillLimitAndComplete(limiter, LOOKUP, 500);
+    assertEquals(2, limiter.getLimit());
+
+    // more than twice the typical latency the slow round left
+    fillLimitAndComplete(limiter, LOOKUP, 1000);
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldKeepLimitWithUsualLatencySpread() {
+    // between 1 and 40, lowered by 10% on congestion, congested at 2x the typical latency of the last 20 calls
+    HoldingsIQConcurrencyLimiter limiter = newLimiter(10, 1, 40, 0.9, 20);
+    Random random = new Random(42);
+
+    for (int i = 0; i < 100; i++) {
+      List<CompletableFuture<String>> calls = new ArrayList<>();
+      for (int j = limiter.getLimit(); j > 0; j--) {
+        limiter.execute(LOOKUP, () -> newCall(calls));
+      }
+      long started = now.get();
+      // answered between 150 and 400 ms after they were sent, fastest first
+      random.ints(calls.size(), 150, 400).sorted().forEach(latency -> {
+        now.set(started + TimeUnit.MILLISECONDS.toNanos(latency));
+        calls.remove(0).complete("ok");
+      });
+    }
+
+    assertTrue(limiter.getLimit() >= 10);
+  }
+
+  @Test
+  public void shouldLowerLimitOnUpstreamFailures() {
+    limiter.execute(LOOKUP, () -> CompletableFuture.failedFuture(new IOException("down")));
+
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldKeepLimitOnErrorsOfModule() {
+    limiter.execute(LOOKUP, () -> CompletableFuture.failedFuture(new NullPointerException()));
+
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldIgnoreCallsRejectedByCircuitBreaker() {
+    limiter.execute(LOOKUP, () -> CompletableFuture.failedFuture(new CircuitBreakerOpenException("open")));
+
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  public void shouldPassCallsThroughWhenDisabled() {
+    HoldingsIQConcurrencyLimiter disabled = new HoldingsIQConcurrencyLimiter(false, 1, 1, 1, 0.5, 2.0, 100, 0, 1000,
+      (delay, task) -> timers.add(task), now::get);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      disabled.execute(LOOKUP, () -> newCall(calls));
+    }
+
+    assertEquals(5, calls.size());
+  }
+
+  private void fillLimitAndComplete(long latency) {
+    fillLimitAndComplete(LOOKUP, latency);
+  }
+
+  private void fillLimitAndComplete(CallClass callClass, long latency) {
+    fillLimitAndComplete(limiter, callClass, latency);
+  }
+
+  private void fillLimitAndComplete(HoldingsIQConcurrencyLimiter limiter, CallClass callClass, long latency) {
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for (int i = 0; i < limiter.getLimit(); i++) {
+      limiter.execute(callClass, () -> newCall(calls));
+    }
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latency));
+    calls.forEach(call -> call.complete("ok"));
+  }
+
+  private HoldingsIQConcurrencyLimiter newLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                                  int windowSize) {
+    return new HoldingsIQConcurrencyLimiter(true, initialLimit, minLimit, maxLimit, backoffRatio, 2.0, windowSize, 2,
+      1000, (delay, task) -> {
+        delays.add(delay);
+        timers.add(task);
+      }, now::get);
+  }
+
+  private static CompletableFuture<String> newCall(List<CompletableFuture<String>> calls) {
+    CompletableFuture<String> call = new CompletableFuture<>();
+    calls.add(call);
+    return call;
+  }
+
+  private static Throwable causeOf(CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    }
+  }
+}
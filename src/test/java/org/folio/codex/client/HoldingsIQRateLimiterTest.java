@@ -0,0 +1,150 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.folio.codex.client.HoldingsIQRateLimiter.Traffic;
+import org.folio.holdingsiq.model.Configuration;
+
+public class HoldingsIQRateLimiterTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<Long> delays = new ArrayList<>();
+  private final List<Runnable> timers = new ArrayList<>();
+
+  // 1 interactive call per second with a burst of 2, 2 bulk calls per second with a burst of 2, wait up to 1s
+  private final HoldingsIQRateLimiter rateLimiter = new HoldingsIQRateLimiter(true, 1, 2, 2, 2, 1000,
+    (delay, task) -> {
+      delays.add(delay);
+      timers.add(task);
+    }, now::get);
+
+  @Test
+  public void shouldPassCallsWithinBurst() {
+    assertEquals("one", call(configuration, Traffic.BULK).join());
+    assertEquals("one", call(configuration, Traffic.BULK).join());
+
+    assertTrue(timers.isEmpty());
+  }
+
+  @Test
+  public void shouldDelayCallsWithinMaxWait() {
+    call(configuration, Traffic.BULK);
+    call(configuration, Traffic.BULK);
+
+    CompletableFuture<String> delayed = call(configuration, Traffic.BULK);
+
+    assertFalse(delayed.isDone());
+    assertEquals(Long.valueOf(500), delays.get(0));
+    timers.get(0).run();
+    assertEquals("one", delayed.join());
+    assertEquals(1, rateLimiter.getDelayedCount());
+  }
+
+  @Test
+  public void shouldRejectCallsBeyondMaxWait() {
+    for (int i = 0; i < 4; i++) {
+      call(configuration, Traffic.BULK);
+    }
+
+    CompletableFuture<String> rejected = call(configuration, Traffic.BULK);
+
+    assertTrue(causeOf(rejected) instanceof RateLimitExceededException);
+    assertEquals(1, rateLimiter.getRejectedCount());
+  }
+
+  @Test
+  public void shouldRefillTokens() {
+    call(configuration, Traffic.BULK);
+    call(configuration, Traffic.BULK);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    call(configuration, Traffic.BULK);
+    call(configuration, Traffic.BULK);
+
+    assertTrue(timers.isEmpty());
+  }
+
+  @Test
+  public void shouldKeepInteractiveCapacityApartFromBulk() {
+    for (int i = 0; i < 4; i++) {
+      call(configuration, Traffic.BULK);
+    }
+
+    assertEquals("one", call(configuration, Traffic.INTERACTIVE).join());
+  }
+
+  @Test
+  public void shouldKeepCustomersApart() {
+    for (int i = 0; i < 4; i++) {
+      call(configuration, Traffic.BULK);
+    }
+
+    assertEquals("one", call(otherConfiguration, Traffic.BULK).join());
+  }
+
+  @Test
+  public void shouldPrefetchWithSpareBulkCapacity() {
+    HoldingsIQRateLimiter rateLimiter = new HoldingsIQRateLimiter(true, 1, 2, 2, 4, 1000,
+      (delay, task) -> timers.add(task), now::get);
+
+    assertEquals("one", rateLimiter.execute(configuration, Traffic.PREFETCH, () -> CompletableFuture.completedFuture("one")).join());
+    assertEquals("one", rateLimiter.execute(configuration, Traffic.PREFETCH, () -> CompletableFuture.completedFuture("one")).join());
+  }
+
+  @Test
+  public void shouldDropPrefetchesWhenBulkBucketIsHalfEmpty() {
+    call(configuration, Traffic.BULK);
+
+    CompletableFuture<String> dropped = call(configuration, Traffic.PREFETCH);
+
+    assertTrue(causeOf(dropped) instanceof RateLimitExceededException);
+    assertTrue(timers.isEmpty());
+    assertEquals(1, rateLimiter.getDroppedPrefetchCount());
+    assertEquals(0, rateLimiter.getRejectedCount());
+    assertEquals("one", call(configuration, Traffic.BULK).join());
+  }
+
+  @Test
+  public void shouldPassCallsThroughWhenDisabled() {
+    HoldingsIQRateLimiter disabled = new HoldingsIQRateLimiter(false, 1, 1, 1, 1, 0, (delay, task) -> timers.add(task), now::get);
+    for (int i = 0; i < 10; i++) {
+      assertEquals("one", disabled.execute(configuration, Traffic.BULK, () -> CompletableFuture.completedFuture("one")).join());
+    }
+  }
+
+  private CompletableFuture<String> call(Configuration configuration, Traffic traffic) {
+    return rateLimiter.execute(configuration, traffic, () -> CompletableFuture.completedFuture("one"));
+  }
+
+  private static Throwable causeOf(CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    }
+  }
+}
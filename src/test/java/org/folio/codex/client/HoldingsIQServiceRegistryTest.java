@@ -0,0 +1,102 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+
+public class HoldingsIQServiceRegistryTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration sameAccountConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .configValid(true)
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Vertx vertx = Vertx.vertx();
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void shouldReuseServicesForSameAccount() {
+    HoldingsIQServiceRegistry registry = new HoldingsIQServiceRegistry(vertx, 60, 10);
+
+    assertSame(titlesService(registry, configuration), titlesService(registry, sameAccountConfiguration));
+    assertSame(packagesService(registry, configuration), packagesService(registry, sameAccountConfiguration));
+  }
+
+  @Test
+  public void shouldKeepAccountsApart() {
+    HoldingsIQServiceRegistry registry = new HoldingsIQServiceRegistry(vertx, 60, 10);
+
+    assertNotSame(titlesService(registry, configuration), titlesService(registry, otherConfiguration));
+  }
+
+  @Test
+  public void shouldCreateNewServicesAfterInvalidate() {
+    HoldingsIQServiceRegistry registry = new HoldingsIQServiceRegistry(vertx, 60, 10);
+    Object titlesService = titlesService(registry, configuration);
+
+    registry.invalidate(configuration);
+
+    assertNotSame(titlesService, titlesService(registry, configuration));
+  }
+
+  @Test
+  public void shouldEvictServicesWhenFull() {
+    HoldingsIQServiceRegistry registry = new HoldingsIQServiceRegistry(vertx, 60, 1);
+    Object titlesService = titlesService(registry, configuration);
+
+    titlesService(registry, otherConfiguration);
+
+    assertNotSame(titlesService, titlesService(registry, configuration));
+  }
+
+  @Test
+  public void shouldFinishCallsOnInvalidatedServices() {
+    HoldingsIQServiceRegistry registry = new HoldingsIQServiceRegistry(vertx, 60, 10);
+    CompletableFuture<String> upstream = new CompletableFuture<>();
+    Object[] used = new Object[1];
+    CompletableFuture<String> call = registry.withTitlesService(configuration, service -> {
+      used[0] = service;
+      return upstream;
+    });
+
+    registry.invalidate(configuration);
+    assertNotSame(used[0], titlesService(registry, configuration));
+    upstream.complete("one");
+
+    assertEquals("one", call.join());
+  }
+
+  private static Object titlesService(HoldingsIQServiceRegistry registry, Configuration configuration) {
+    return registry.withTitlesService(configuration, CompletableFuture::completedFuture).join();
+  }
+
+  private static Object packagesService(HoldingsIQServiceRegistry registry, Configuration configuration) {
+    return registry.withPackagesService(configuration, CompletableFuture::completedFuture).join();
+  }
+}
@@ -0,0 +1,69 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.folio.holdingsiq.model.Configuration;
+
+public class InFlightRequestsTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final InFlightRequests<Long, String> requests = new InFlightRequests<>("testRequests");
+
+  @Test
+  public void shouldShareCallWhileInFlight() {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> upstream = new CompletableFuture<>();
+
+    CompletableFuture<String> first = requests.execute(configuration, 1L, () -> {
+      calls.incrementAndGet();
+      return upstream;
+    });
+    CompletableFuture<String> second = requests.execute(configuration, 1L, () -> {
+      calls.incrementAndGet();
+      return upstream;
+    });
+    upstream.complete("one");
+
+    assertSame(first, second);
+    assertEquals("one", second.join());
+    assertEquals(1, calls.get());
+    assertEquals(1, requests.getCoalescedCount());
+    assertEquals(0, requests.getInFlightCount());
+  }
+
+  @Test
+  public void shouldStartNewCallAfterCompletion() {
+    CompletableFuture<String> first = requests.execute(configuration, 1L, () -> CompletableFuture.completedFuture("one"));
+    CompletableFuture<String> second = requests.execute(configuration, 1L, () -> CompletableFuture.completedFuture("one"));
+
+    assertNotSame(first, second);
+    assertEquals(2, requests.getExecutedCount());
+    assertEquals(0, requests.getCoalescedCount());
+  }
+
+  @Test
+  public void shouldShareFailures() {
+    CompletableFuture<String> upstream = new CompletableFuture<>();
+
+    CompletableFuture<String> first = requests.execute(configuration, 1L, () -> upstream);
+    CompletableFuture<String> second = requests.execute(configuration, 1L, () -> upstream);
+    upstream.completeExceptionally(new IllegalStateException("failed"));
+
+    assertTrue(first.isCompletedExceptionally());
+    assertTrue(second.isCompletedExceptionally());
+    assertEquals(0, requests.getInFlightCount());
+  }
+}
@@ -0,0 +1,115 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import org.folio.codex.cache.SearchPageCache;
+import org.folio.holdingsiq.model.Configuration;
+
+public class PrefetchSchedulerTest {
+
+  private final Configuration configuration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("test")
+    .url("http://localhost:51234")
+    .build();
+
+  private final Configuration otherConfiguration = Configuration.builder()
+    .apiKey("8675309")
+    .customerId("other")
+    .url("http://localhost:51234")
+    .build();
+
+  private final List<Runnable> dispatched = new ArrayList<>();
+  private final List<CompletableFuture<Object>> prefetches = new ArrayList<>();
+
+  // 3 prefetches at a time, 2 of them for the same tenant
+  private final PrefetchScheduler scheduler = new PrefetchScheduler(true, 3, 2, dispatched::add);
+
+  @Test
+  public void shouldStartPrefetchOnlyWhenDispatched() {
+    scheduler.submit(configuration, this::newPrefetch);
+
+    assertTrue(prefetches.isEmpty());
+    dispatched.forEach(Runnable::run);
+    assertEquals(1, prefetches.size());
+    assertEquals(1, scheduler.getStartedCount());
+  }
+
+  @Test
+  public void shouldDropPrefetchesBeyondTenantLimit() {
+    for (int i = 0; i < 3; i++) {
+      scheduler.submit(configuration, this::newPrefetch);
+    }
+
+    assertEquals(2, dispatched.size());
+    assertEquals(1, scheduler.getDroppedCount());
+    scheduler.submit(otherConfiguration, this::newPrefetch);
+    assertEquals(3, dispatched.size());
+  }
+
+  @Test
+  public void shouldDropPrefetchesBeyondGlobalLimit() {
+    scheduler.submit(configuration, this::newPrefetch);
+    scheduler.submit(configuration, this::newPrefetch);
+    scheduler.submit(otherConfiguration, this::newPrefetch);
+
+    scheduler.submit(otherConfiguration, this::newPrefetch);
+
+    assertEquals(3, dispatched.size());
+    assertEquals(1, scheduler.getDroppedCount());
+  }
+
+  @Test
+  public void shouldReleaseSlotWhenPrefetchCompletes() {
+    scheduler.submit(configuration, this::newPrefetch);
+    scheduler.submit(configuration, this::newPrefetch);
+    dispatched.forEach(Runnable::run);
+
+    prefetches.get(0).complete("page");
+    prefetches.get(1).completeExceptionally(new IllegalStateException("HoldingsIQ is down"));
+
+    assertEquals(0, scheduler.getRunning());
+    scheduler.submit(configuration, this::newPrefetch);
+    assertEquals(3, dispatched.size());
+    assertEquals(0, scheduler.getDroppedCount());
+  }
+
+  @Test
+  public void shouldFillCacheWithPrefetchedPage() {
+    SearchPageCache<Integer, List<String>> pageCache = new SearchPageCache<>("prefetchCache", 60, 10, List::size);
+    scheduler.submit(configuration, () -> CompletableFuture.supplyAsync(() -> List.of("one", "two"), Runnable::run)
+      .thenApply(page -> {
+        pageCache.putValue(configuration, 2, page);
+        return page;
+      }));
+
+    assertNull(pageCache.getValue(configuration, 2));
+    dispatched.forEach(Runnable::run);
+    assertEquals(List.of("one", "two"), pageCache.getValue(configuration, 2));
+    assertEquals(0, scheduler.getRunning());
+  }
+
+  @Test
+  public void shouldIgnorePrefetchesWhenDisabled() {
+    PrefetchScheduler disabled = new PrefetchScheduler(false, 3, 2, dispatched::add);
+
+    disabled.submit(configuration, this::newPrefetch);
+
+    assertTrue(dispatched.isEmpty());
+    assertEquals(0, disabled.getStartedCount());
+  }
+
+  private CompletableFuture<?> newPrefetch() {
+    CompletableFuture<Object> prefetch = new CompletableFuture<>();
+    prefetches.add(prefetch);
+    return prefetch;
+  }
+}
@@ -0,0 +1,54 @@
+package org.folio.codex.client;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import io.vertx.core.http.HttpClosedException;
+import io.vertx.core.impl.NoStackTraceTimeoutException;
+import org.junit.Test;
+
+import org.folio.holdingsiq.service.exception.ResourceNotFoundException;
+import org.folio.holdingsiq.service.exception.ServiceResponseException;
+
+public class UpstreamErrorsTest {
+
+  @Test
+  public void shouldCountServerErrorsAndThrottlingOfHoldingsIQ() {
+    assertTrue(UpstreamErrors.isUpstreamFailure(responseWithCode(500)));
+    assertTrue(UpstreamErrors.isUpstreamFailure(responseWithCode(503)));
+    assertTrue(UpstreamErrors.isUpstreamFailure(responseWithCode(429)));
+    assertFalse(UpstreamErrors.isUpstreamFailure(responseWithCode(400)));
+    assertFalse(UpstreamErrors.isUpstreamFailure(mock(ResourceNotFoundException.class)));
+  }
+
+  @Test
+  public void shouldCountConnectionErrorsAndTimeouts() {
+    assertTrue(UpstreamErrors.isUpstreamFailure(new ConnectException("Connection refused")));
+    assertTrue(UpstreamErrors.isUpstreamFailure(new CompletionException(new TimeoutException("no answer"))));
+    assertTrue(UpstreamErrors.isUpstreamFailure(new NoStackTraceTimeoutException("The timeout period has been exceeded")));
+    assertTrue(UpstreamErrors.isUpstreamFailure(new HttpClosedException("Connection was closed")));
+    assertTrue(UpstreamErrors.isUpstreamFailure(
+      new CompletionException(new IllegalStateException(new IOException("reset")))));
+  }
+
+  @Test
+  public void shouldNotCountErrorsOfModule() {
+    assertFalse(UpstreamErrors.isUpstreamFailure(new CompletionException(new NullPointerException())));
+    assertFalse(UpstreamErrors.isUpstreamFailure(new IllegalStateException("broken")));
+    assertFalse(UpstreamErrors.isUpstreamFailure(new RateLimitExceededException("slow down")));
+    assertFalse(UpstreamErrors.isUpstreamFailure(new CircuitBreakerOpenException("open")));
+  }
+
+  private static ServiceResponseException responseWithCode(int code) {
+    ServiceResponseException exception = mock(ServiceResponseException.class);
+    when(exception.getCode()).thenReturn(code);
+    return exception;
+  }
+}
@@ -0,0 +1,201 @@
+package org.folio.codex.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NdjsonExporterTest {
+
+  private static final NdjsonExporter.RecordWriter<Record> RECORD_WRITER = (generator, record) -> {
+    generator.writeStartObject();
+    generator.writeNumberField("index", record.getIndex());
+    generator.writeEndObject();
+  };
+
+  private final List<Integer> requestedPages = new ArrayList<>();
+  private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+  private final Buffer body = Buffer.buffer();
+  private boolean headWritten;
+  private boolean ended;
+  private boolean writeQueueFull;
+  private Handler<Void> drainHandler;
+  private Handler<Void> closeHandler;
+
+  @Before
+  public void setUp() {
+    when(response.write(any(Buffer.class))).thenAnswer(invocation -> {
+      headWritten = true;
+      body.appendBuffer(invocation.getArgument(0));
+      return Future.succeededFuture();
+    });
+    when(response.end(any(Buffer.class))).thenAnswer(invocation -> {
+      headWritten = true;
+      ended = true;
+      body.appendBuffer(invocation.getArgument(0));
+      return Future.succeededFuture();
+    });
+    when(response.headWritten()).thenAnswer(invocation -> headWritten);
+    when(response.writeQueueFull()).thenAnswer(invocation -> writeQueueFull);
+    when(response.drainHandler(any())).thenAnswer(invocation -> {
+      drainHandler = invocation.getArgument(0);
+      return response;
+    });
+    when(response.closeHandler(any())).thenAnswer(invocation -> {
+      closeHandler = invocation.getArgument(0);
+      return response;
+    });
+  }
+
+  @Test
+  public void shouldStreamOneLinePerRecordUntilLastPage() {
+    int records = new NdjsonExporter(2, 1).export(recordsLoader(5), RECORD_WRITER, response).join();
+
+    assertLines(5);
+    assertEquals(5, records);
+    assertTrue(ended);
+    assertEquals(List.of(1, 2, 3), requestedPages);
+    verify(response).setChunked(true);
+    verify(response).putHeader(HttpHeaders.CONTENT_TYPE, NdjsonExporter.NDJSON_CONTENT_TYPE);
+  }
+
+  @Test
+  public void shouldExportEmptyResult() {
+    int records = new NdjsonExporter(2, 1).export(recordsLoader(0), RECORD_WRITER, response).join();
+
+    assertEquals(0, body.length());
+    assertEquals(0, records);
+    assertTrue(ended);
+  }
+
+  @Test
+  public void shouldWriteRecordsLoadedAtOnce() {
+    List<Record> loaded = IntStream.range(0, 3).mapToObj(Record::new).collect(Collectors.toList());
+
+    int records = new NdjsonExporter(2, 2).exportRecords(CompletableFuture.completedFuture(loaded), RECORD_WRITER,
+      response).join();
+
+    assertLines(3);
+    assertEquals(3, records);
+    assertTrue(ended);
+    verify(response, never()).write(any(Buffer.class));
+  }
+
+  @Test
+  public void shouldKeepBoundedNumberOfPagesInFlight() {
+    List<CompletableFuture<List<Record>>> pending = new ArrayList<>();
+    CompletableFuture<Integer> result = new NdjsonExporter(2, 2).export(pendingLoader(pending), RECORD_WRITER, response);
+
+    assertEquals(List.of(1, 2), requestedPages);
+    pending.get(1).complete(List.of(new Record(2), new Record(3)));
+    assertEquals(List.of(1, 2), requestedPages);
+    pending.get(0).complete(List.of(new Record(0), new Record(1)));
+    assertEquals(List.of(1, 2, 3, 4), requestedPages);
+    pending.get(2).complete(List.of(new Record(4)));
+
+    assertEquals(Integer.valueOf(5), result.join());
+    assertLines(5);
+  }
+
+  @Test
+  public void shouldPauseWhileWriteQueueIsFull() {
+    List<CompletableFuture<List<Record>>> pending = new ArrayList<>();
+    CompletableFuture<Integer> result = new NdjsonExporter(2, 1).export(pendingLoader(pending), RECORD_WRITER, response);
+    writeQueueFull = true;
+
+    pending.get(0).complete(List.of(new Record(0), new Record(1)));
+
+    assertEquals(List.of(1), requestedPages);
+    writeQueueFull = false;
+    drainHandler.handle(null);
+    assertEquals(List.of(1, 2), requestedPages);
+    pending.get(1).complete(List.of(new Record(2)));
+    assertEquals(Integer.valueOf(3), result.join());
+    assertLines(3);
+  }
+
+  @Test
+  public void shouldFailWithoutWritingWhenFirstPageFails() {
+    CompletableFuture<Integer> result = new NdjsonExporter(2, 1).export(
+      (page, count) -> CompletableFuture.failedFuture(new IllegalStateException("HoldingsIQ is down")), RECORD_WRITER,
+      response);
+
+    assertTrue(result.isCompletedExceptionally());
+    assertFalse(headWritten);
+    verify(response, never()).write(any(Buffer.class));
+  }
+
+  @Test
+  public void shouldStopWhenClientCloses() {
+    List<CompletableFuture<List<Record>>> pending = new ArrayList<>();
+    CompletableFuture<Integer> result = new NdjsonExporter(2, 1).export(pendingLoader(pending), RECORD_WRITER, response);
+
+    closeHandler.handle(null);
+    pending.get(0).complete(List.of(new Record(0), new Record(1)));
+
+    assertTrue(result.isCompletedExceptionally());
+    assertEquals(List.of(1), requestedPages);
+    assertEquals(0, body.length());
+  }
+
+  private void assertLines(int count) {
+    String[] lines = body.toString().split("\n");
+    assertEquals(count, lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertEquals(Integer.valueOf(i), new JsonObject(lines[i]).getInteger("index"));
+    }
+  }
+
+  private NdjsonExporter.PageLoader<Record> recordsLoader(int totalRecords) {
+    return (page, count) -> {
+      requestedPages.add(page);
+      int from = Math.min((page - 1) * count, totalRecords);
+      int to = Math.min(from + count, totalRecords);
+      List<Record> records = from == to ? Collections.emptyList() :
+        IntStream.range(from, to).mapToObj(Record::new).collect(Collectors.toList());
+      return CompletableFuture.completedFuture(records);
+    };
+  }
+
+  private NdjsonExporter.PageLoader<Record> pendingLoader(List<CompletableFuture<List<Record>>> pending) {
+    return (page, count) -> {
+      requestedPages.add(page);
+      CompletableFuture<List<Record>> future = new CompletableFuture<>();
+      pending.add(future);
+      return future;
+    };
+  }
+
+  public static class Record {
+    private final int index;
+
+    Record(int index) {
+      this.index = index;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package org.folio.codex.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import static org.folio.utils.Utils.readMockFile;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import org.folio.converter.hld2cdx.ContributorConverter;
+import org.folio.converter.hld2cdx.CoverageConverter;
+import org.folio.converter.hld2cdx.IdentifierConverter;
+import org.folio.converter.hld2cdx.PackageConverter;
+import org.folio.converter.hld2cdx.SubjectConverter;
+import org.folio.converter.hld2cdx.TitleConverter;
+import org.folio.holdingsiq.model.Packages;
+import org.folio.holdingsiq.model.Titles;
+import org.folio.rest.jaxrs.model.Diagnostic;
+import org.folio.rest.jaxrs.model.Instance;
+import org.folio.rest.jaxrs.model.InstanceCollection;
+import org.folio.rest.jaxrs.model.Package;
+import org.folio.rest.jaxrs.model.PackageCollection;
+import org.folio.rest.jaxrs.model.ResultInfo;
+
+public class CodexJsonWriterTest {
+
+  private final CodexJsonWriter writer = new CodexJsonWriter();
+
+  @Test
+  public void shouldWriteInstanceCollectionLikeDatabind() {
+    Titles titles = Json.decodeValue(readMockFile("RMAPIService/SuccessGetTitleList.json"), Titles.class);
+    TitleConverter converter = new TitleConverter(new IdentifierConverter(), new ContributorConverter(), new SubjectConverter());
+    List<Instance> instances = titles.getTitleList().stream().map(converter::convert).collect(Collectors.toList());
+    assertFalse(instances.isEmpty());
+
+    InstanceCollection collection = new InstanceCollection()
+      .withInstances(instances)
+      .withResultInfo(new ResultInfo().withTotalRecords(titles.getTotalResults()));
+
+    assertEquals(new JsonObject(Json.encode(collection)), new JsonObject(writer.write(collection).toString()));
+  }
+
+  @Test
+  public void shouldWritePackageCollectionLikeDatabind() {
+    Packages packages = Json.decodeValue(readMockFile("RMAPIService/SuccessGetPackageList.json"), Packages.class);
+    PackageConverter converter = new PackageConverter(new CoverageConverter());
+    List<Package> packageList = packages.getPackagesList().stream().map(converter::convert).collect(Collectors.toList());
+    assertFalse(packageList.isEmpty());
+
+    PackageCollection collection = new PackageCollection()
+      .withPackages(packageList)
+      .withResultInfo(new ResultInfo().withTotalRecords(packages.getTotalResults()));
+
+    assertEquals(new JsonObject(Json.encode(collection)), new JsonObject(writer.write(collection).toString()));
+  }
+
+  @Test
+  public void shouldWriteDiagnostics() {
+    InstanceCollection collection = new InstanceCollection()
+      .withResultInfo(new ResultInfo()
+        .withTotalRecords(0)
+        .withDiagnostics(Collections.singletonList(new Diagnostic().withCode("404").withMessage("Not found").withQuery("1"))));
+
+    assertEquals(new JsonObject(Json.encode(collection)), new JsonObject(writer.write(collection).toString()));
+  }
+
+  @Test
+  public void shouldWriteEveryPropertyOfTheModels() throws ReflectiveOperationException {
+    // facets are left out, the writer only knows the empty default list
+    ResultInfo resultInfo = new ResultInfo()
+      .withTotalRecords(1)
+      .withDiagnostics(Collections.singletonList(populate(Diagnostic.class)));
+
+    InstanceCollection instances = new InstanceCollection()
+      .withInstances(Collections.singletonList(populate(Instance.class)))
+      .withResultInfo(resultInfo);
+    PackageCollection packages = new PackageCollection()
+      .withPackages(Collections.singletonList(populate(Package.class)))
+      .withResultInfo(resultInfo);
+
+    assertEquals(new JsonObject(Json.encode(instances)), new JsonObject(writer.write(instances).toString()));
+    assertEquals(new JsonObject(Json.encode(packages)), new JsonObject(writer.write(packages).toString()));
+  }
+
+  /**
+   * Sets every property of a generated model, so that a property added to the
+   * schema that the writer does not know about shows up as a difference.
+   */
+  private static <T> T populate(Class<T> type) throws ReflectiveOperationException {
+    T model = type.getDeclaredConstructor().newInstance();
+    for (Method setter : type.getMethods()) {
+      if (setter.getName().startsWith("set") && setter.getParameterCount() == 1) {
+        setter.invoke(model, valueOf(setter.getParameterTypes()[0], setter.getGenericParameterTypes()[0],
+          setter.getName().substring(3)));
+      }
+    }
+    return model;
+  }
+
+  private static Object valueOf(Class<?> type, Type genericType, String name) throws ReflectiveOperationException {
+    if (type == String.class) {
+      return name;
+    } else if (type == Integer.class || type == int.class) {
+      return 7;
+    } else if (type == Boolean.class || type == boolean.class) {
+      return true;
+    } else if (type == Date.class) {
+      return new Date(0);
+    } else if (type.isEnum()) {
+      return type.getEnumConstants()[0];
+    } else if (List.class.isAssignableFrom(type) || Set.class.isAssignableFrom(type)) {
+      Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+      Object element = valueOf((Class<?>) elementType, elementType, name);
+      return List.class.isAssignableFrom(type)
+        ? new ArrayList<>(List.of(element)) : new LinkedHashSet<>(List.of(element));
+    }
+    return populate(type);
+  }
+}
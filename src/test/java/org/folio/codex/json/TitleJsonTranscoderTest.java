@@ -0,0 +1,86 @@
+package org.folio.codex.json;
+
+import static org.junit.Assert.assertEquals;
+
+import static org.folio.utils.Utils.readMockFile;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import org.folio.converter.hld2cdx.ContributorConverter;
+import org.folio.converter.hld2cdx.IdentifierConverter;
+import org.folio.converter.hld2cdx.SubjectConverter;
+import org.folio.converter.hld2cdx.TitleConverter;
+import org.folio.holdingsiq.model.Title;
+import org.folio.holdingsiq.model.Titles;
+
+public class TitleJsonTranscoderTest {
+
+  private static final String TITLE_WITH_DUPLICATES = "{"
+    + "\"titleId\": 42, \"titleName\": \"Duplicates\", \"publisherName\": \"Publisher\", \"pubType\": \"Book\","
+    + "\"identifiersList\": ["
+    + "  {\"id\": \"1234-5678\", \"type\": 0, \"subtype\": 1},"
+    + "  {\"id\": \"1234-5678\", \"type\": 0, \"subtype\": 1},"
+    + "  {\"id\": \"1234-5678\", \"type\": 0, \"subtype\": 2},"
+    + "  {\"id\": \"ignored\", \"type\": 7, \"subtype\": 0}],"
+    + "\"contributorsList\": ["
+    + "  {\"type\": \"author\", \"contributor\": \"Author, An\"},"
+    + "  {\"type\": \"author\", \"contributor\": \"Author, An\"}],"
+    + "\"subjectsList\": []"
+    + "}";
+
+  private final TitleJsonTranscoder transcoder = new TitleJsonTranscoder();
+  private final TitleConverter converter = new TitleConverter(
+    new IdentifierConverter(), new ContributorConverter(), new SubjectConverter());
+
+  @Test
+  public void shouldWriteTitleByIdLikeConverter() throws IOException {
+    assertSameAsConverter(Json.decodeValue(readMockFile("RMAPIService/SuccessGetTitleById.json"), Title.class));
+  }
+
+  @Test
+  public void shouldWriteTitleListLikeConverter() throws IOException {
+    Titles titles = Json.decodeValue(readMockFile("RMAPIService/SuccessGetTitleList.json"), Titles.class);
+    for (Title title : titles.getTitleList()) {
+      assertSameAsConverter(title);
+    }
+  }
+
+  @Test
+  public void shouldDropDuplicatesAndUnknownIdentifiersLikeConverter() throws IOException {
+    assertSameAsConverter(Json.decodeValue(TITLE_WITH_DUPLICATES, Title.class));
+  }
+
+  private void assertSameAsConverter(Title title) throws IOException {
+    Buffer buffer = Buffer.buffer();
+    try (JsonGenerator generator = CodexJsonWriter.createGenerator(buffer)) {
+      transcoder.writeInstance(generator, title);
+    }
+
+    JsonObject expected = new JsonObject(Json.encode(converter.convert(title)));
+    JsonObject actual = new JsonObject(buffer.toString());
+    assertEquals(unordered(expected), unordered(actual));
+  }
+
+  /**
+   * The converter collects identifiers, contributors and subjects into hash sets, so their order is not defined.
+   */
+  private static Map<String, Object> unordered(JsonObject json) {
+    Map<String, Object> result = new HashMap<>(json.getMap());
+    json.forEach(entry -> {
+      if (entry.getValue() instanceof JsonArray) {
+        result.put(entry.getKey(), new HashSet<>(((JsonArray) entry.getValue()).getList()));
+      }
+    });
+    return result;
+  }
+}
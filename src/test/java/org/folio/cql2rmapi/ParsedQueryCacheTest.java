@@ -0,0 +1,82 @@
+package org.folio.cql2rmapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import javax.validation.ValidationException;
+
+import org.junit.Test;
+
+public class ParsedQueryCacheTest {
+
+  private final ParsedQueryCache cache = new ParsedQueryCache(10);
+
+  @Test
+  public void shouldReturnSameParametersForRepeatedQuery() throws QueryValidationException {
+    TitleParameters first = cache.getTitleParameters("title=moby");
+    TitleParameters second = cache.getTitleParameters("title=moby");
+
+    assertSame(first, second);
+    assertEquals("moby", first.getFilterQuery().getName());
+  }
+
+  @Test
+  public void shouldCountHitsAndMisses() throws QueryValidationException {
+    cache.getCQLParameters("title=moby");
+    cache.getCQLParameters("title=moby");
+    cache.getCQLParameters("title=dick");
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldCountOnlyLookupOfCaller() throws QueryValidationException {
+    cache.getTitleParameters("title=moby");
+    cache.getTitleParameters("title=moby");
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldCacheQueryValidationException() {
+    QueryValidationException first = expectQueryValidationException("title=moby not title=dick");
+    QueryValidationException second = expectQueryValidationException("title=moby not title=dick");
+
+    assertSame(first, second);
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void shouldCacheValidationException() throws QueryValidationException {
+    try {
+      cache.getPackageParameters("name=Academy sortby title");
+      fail("ValidationException expected");
+    } catch (ValidationException expected) {
+      // rejected on the first parse
+    }
+    try {
+      cache.getPackageParameters("name=Academy sortby title");
+      fail("ValidationException expected");
+    } catch (ValidationException expected) {
+      // rejected again from the cache
+    }
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotAllowChangingCachedParameters() throws QueryValidationException {
+    cache.getCQLParameters("title=moby").getParameters().put("title", "dick");
+  }
+
+  private QueryValidationException expectQueryValidationException(String query) {
+    try {
+      cache.getCQLParameters(query);
+    } catch (QueryValidationException e) {
+      return e;
+    }
+    throw new AssertionError("QueryValidationException expected");
+  }
+}
@@ -0,0 +1,100 @@
+package org.folio.cql2rmapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Differential tests of the fast path against the full CQL parser.
+ */
+public class SimpleCQLParserTest {
+
+  private static final List<String> SIMPLE_QUERIES = Arrays.asList(
+    "title=bridget",
+    "title = bridget",
+    "title=\"moby dick\"",
+    "title=\"\"",
+    "cql.serverChoice=moby",
+    "codex.title=comput*",
+    "id=123",
+    "codex.id=123",
+    "id=111-222222",
+    "name=Academy",
+    "ext.selected=true",
+    "title=moby and ext.selected=true",
+    "title=moby AND ext.selected=true",
+    "title=moby and resourceType=video and ext.selected=false",
+    "title=bridget sortby title",
+    "title=bridget SORTBY title",
+    "identifier = 12345 sortby title",
+    "title = bridget and resourceType = video sortby title",
+    "name=\"Academic Search\" and ext.selected=true sortby name",
+    "publisher=\"O'Reilly\"",
+    "title=bébé"
+  );
+
+  private static final List<String> OTHER_QUERIES = Arrays.asList(
+    "",
+    "bridget",
+    "Bridget Jones",
+    "title=moby dick",
+    "title==moby",
+    "title<>moby",
+    "title=/string moby",
+    "title=moby or title=dick",
+    "title=moby not title=dick",
+    "title=moby and title=dick",
+    "title=moby and",
+    "title=moby sortby",
+    "title=moby sortby title/sort.descending",
+    "title=moby sortby title name",
+    "(title=moby) and (ext.selected=true)",
+    "title=\"moby \\\"dick\\\"\"",
+    "title=\"moby",
+    "title=and",
+    "and=moby",
+    "offset=1&limit=10",
+    "> dc=\"http://example.com\" dc.title=moby"
+  );
+
+  @Test
+  public void shouldRecognizeSimpleQueriesLikeFullParser() throws QueryValidationException {
+    for (String query : SIMPLE_QUERIES) {
+      CQLParameters fast = SimpleCQLParser.parse(query);
+      assertNotNull(query, fast);
+      assertSameParameters(query, new CQLParameters(query), fast);
+    }
+  }
+
+  @Test
+  public void shouldLeaveOtherQueriesToFullParser() {
+    for (String query : OTHER_QUERIES) {
+      assertNull(query, SimpleCQLParser.parse(query));
+    }
+  }
+
+  @Test
+  public void shouldParseLikeFullParserThroughFactory() throws QueryValidationException {
+    for (String query : SIMPLE_QUERIES) {
+      assertSameParameters(query, new CQLParameters(query), CQLParameters.parse(query));
+    }
+  }
+
+  @Test(expected = QueryValidationException.class)
+  public void shouldRejectThroughFullParser() throws QueryValidationException {
+    CQLParameters.parse("title=moby not title=dick");
+  }
+
+  private static void assertSameParameters(String query, CQLParameters expected, CQLParameters actual) {
+    assertEquals(query, expected.getParameters(), actual.getParameters());
+    assertEquals(query, expected.getSort(), actual.getSort());
+    assertEquals(query, expected.getSortKeys(), actual.getSortKeys());
+    assertEquals(query, expected.isIdSearch(), actual.isIdSearch());
+    assertEquals(query, expected.getIdSearchValue(), actual.getIdSearchValue());
+  }
+}
@@ -5,6 +5,7 @@ import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import java.util.Arrays;
 import java.util.Collections;
 
 import javax.validation.ValidationException;
@@ -128,9 +129,22 @@ public class TitleQueryBuilderTest {
     new TitleParameters(new CQLParameters("title = bridget and resourceType = databases audiobooks sortby title"));
   }
 
-  @Test(expected = QueryValidationException.class)
-  public void titleParametersThrowsExceptionIfMultipleSortKeysAreProvidedTest() throws QueryValidationException {
-    new TitleParameters(new CQLParameters("title = bridget and resourceType = journal sortby title, publisher"));
+  @Test
+  public void titleParametersAcceptsSecondarySortKeysTest() throws QueryValidationException {
+    TitleParameters parameters = new TitleParameters(new CQLParameters("title = bridget sortby title codex.publisher resourceType"));
+
+    assertEquals(Sort.NAME, parameters.getSortType());
+    assertEquals(Arrays.asList("publisher", "resourceType"), parameters.getSecondarySortKeys());
+  }
+
+  @Test(expected = ValidationException.class)
+  public void titleParametersThrowsExceptionIfSecondarySortKeyIsUnsupportedTest() throws QueryValidationException {
+    new TitleParameters(new CQLParameters("title = bridget and resourceType = journal sortby title identifier"));
+  }
+
+  @Test(expected = ValidationException.class)
+  public void titleParametersThrowsExceptionIfFirstSortKeyIsNotTitleTest() throws QueryValidationException {
+    new TitleParameters(new CQLParameters("title = bridget sortby publisher title"));
   }
 
   @Test(expected = ValidationException.class)
@@ -140,12 +154,12 @@ public class TitleQueryBuilderTest {
 
   @Test(expected = QueryValidationException.class)
   public void titleParametersThrowsExceptionIfUnsupportedBooleanOperatorIsPassedTest() throws QueryValidationException {
-    new TitleParameters(new CQLParameters("title = bridget OR publisher = Ebsco sortby title"));
+    new TitleParameters(new CQLParameters("title = bridget NOT publisher = Ebsco sortby title"));
   }
 
 
   @Test(expected = ValidationException.class)
-  public void titleParametersThrowsExceptionIfSearchValueAndSearchFieldAreNullTest() {
+  public void titleParametersThrowsExceptionIfSearchValueAndSearchFieldAreNullTest() throws QueryValidationException {
     new TitleParameters(new CQLParameters(Collections.emptyMap(), "title", false, null));
   }
 
@@ -222,4 +236,29 @@ public class TitleQueryBuilderTest {
     TitleParameters titleParameters = new TitleParameters(new CQLParameters("title=xyzzy"));
     assertNull(titleParameters.getFilterQuery().getSelected());
   }
+
+  @Test
+  public void cqlParametersSplitsOrQueryIntoAlternativesTest() throws QueryValidationException {
+    CQLParameters parameters = new CQLParameters("(title = bridget OR publisher = Ebsco) and ext.selected = true sortby title");
+
+    assertTrue(parameters.isOrQuery());
+    assertEquals(2, parameters.getAlternatives().size());
+    TitleParameters first = new TitleParameters(parameters.getAlternatives().get(0));
+    TitleParameters second = new TitleParameters(parameters.getAlternatives().get(1));
+    assertEquals("bridget", first.getFilterQuery().getName());
+    assertEquals("selected", first.getFilterQuery().getSelected());
+    assertEquals("Ebsco", second.getFilterQuery().getPublisher());
+    assertEquals("selected", second.getFilterQuery().getSelected());
+    assertEquals(Sort.NAME, second.getSortType());
+  }
+
+  @Test(expected = QueryUnsupportedFeatureException.class)
+  public void cqlParametersThrowsExceptionIfIdSearchIsCombinedWithOrTest() throws QueryValidationException {
+    new CQLParameters("id = 1 OR title = bridget");
+  }
+
+  @Test(expected = QueryUnsupportedFeatureException.class)
+  public void titleParametersThrowsExceptionForOrQueryTest() throws QueryValidationException {
+    new TitleParameters(new CQLParameters("title = bridget OR publisher = Ebsco"));
+  }
 }
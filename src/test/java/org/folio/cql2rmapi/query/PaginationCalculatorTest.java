@@ -1,11 +1,17 @@
 package org.folio.cql2rmapi.query;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
 public class PaginationCalculatorTest {
 
+  private static final int RM_API_MAX_COUNT = 100;
+
   private PaginationCalculator calculator = new PaginationCalculator();
 
   @Test
@@ -26,9 +32,9 @@ public class PaginationCalculatorTest {
 
     assertEquals(2, info.getPages().size());
     assertEquals(1, info.getPages().get(0).getOffset());
-    assertEquals(100, info.getPages().get(0).getLimit());
+    assertEquals(72, info.getPages().get(0).getLimit());
     assertEquals(2, info.getPages().get(1).getOffset());
-    assertEquals(100, info.getPages().get(1).getLimit());
+    assertEquals(72, info.getPages().get(1).getLimit());
   }
 
   @Test
@@ -39,4 +45,123 @@ public class PaginationCalculatorTest {
     assertEquals(1, info.getPages().get(0).getOffset());
     assertEquals(100, info.getPages().get(0).getLimit());
   }
+
+  @Test
+  public void shouldReturnOnePageWhenWindowStraddlesPageOfLimitSize() {
+    PaginationInfo info = calculator.getPagination(95, 10);
+
+    assertEquals(1, info.getPages().size());
+    assertEquals(7, info.getPages().get(0).getOffset());
+    assertEquals(15, info.getPages().get(0).getLimit());
+    assertEquals(5, info.getFirstObjectIndex());
+  }
+
+  @Test
+  public void shouldPreferCanonicalPageSizeWithinMargin() {
+    PaginationCalculator canonical = new PaginationCalculator(50, 40);
+
+    PaginationInfo first = canonical.getPagination(0, 10);
+    PaginationInfo second = canonical.getPagination(15, 20);
+
+    assertEquals(1, first.getPages().size());
+    assertEquals(1, first.getPages().get(0).getOffset());
+    assertEquals(50, first.getPages().get(0).getLimit());
+    assertEquals(0, first.getFirstObjectIndex());
+    assertEquals(1, second.getPages().size());
+    assertEquals(1, second.getPages().get(0).getOffset());
+    assertEquals(50, second.getPages().get(0).getLimit());
+    assertEquals(15, second.getFirstObjectIndex());
+  }
+
+  @Test
+  public void shouldNotUseCanonicalPageSizeWhenItNeedsMoreRequestsOrRecords() {
+    PaginationCalculator canonical = new PaginationCalculator(50, 40);
+
+    // the canonical pages would need a second request
+    PaginationInfo straddling = canonical.getPagination(95, 10);
+    assertEquals(1, straddling.getPages().size());
+    assertEquals(15, straddling.getPages().get(0).getLimit());
+    // the canonical page would fetch 45 records more
+    assertEquals(5, canonical.getPagination(0, 5).getPages().get(0).getLimit());
+  }
+
+  @Test
+  public void shouldNeedNoMoreRequestsWithCanonicalPageSize() {
+    PaginationCalculator canonical = new PaginationCalculator(50, 40);
+    Random random = new Random(20181018L);
+    for (int i = 0; i < 10000; i++) {
+      int offset = random.nextInt(5000);
+      int limit = 1 + random.nextInt(500);
+      PaginationInfo best = calculator.getPagination(offset, limit);
+      PaginationInfo info = canonical.getPagination(offset, limit);
+
+      int records = info.getPages().size() * info.getPages().get(0).getLimit();
+      int bestRecords = best.getPages().size() * best.getPages().get(0).getLimit();
+      assertEquals(best.getPages().size(), info.getPages().size());
+      assertTrue(records <= bestRecords + 40);
+      int firstFetched = (info.getPages().get(0).getOffset() - 1) * info.getPages().get(0).getLimit();
+      assertEquals(offset - firstFetched, info.getFirstObjectIndex());
+      assertTrue(firstFetched + records >= offset + limit);
+    }
+  }
+
+  @Test
+  public void shouldCoverRequestedWindowForRandomOffsetsAndLimits() {
+    Random random = new Random(20181018L);
+    for (int i = 0; i < 10000; i++) {
+      int offset = random.nextInt(5000);
+      int limit = 1 + random.nextInt(random.nextBoolean() ? 100 : 1000);
+      PaginationInfo info = calculator.getPagination(offset, limit);
+      List<Page> pages = info.getPages();
+
+      int pageSize = pages.get(0).getLimit();
+      assertTrue(pageSize > 0 && pageSize <= RM_API_MAX_COUNT);
+      for (int j = 0; j < pages.size(); j++) {
+        assertEquals(pageSize, pages.get(j).getLimit());
+        assertEquals(pages.get(0).getOffset() + j, pages.get(j).getOffset());
+      }
+
+      int firstFetched = (pages.get(0).getOffset() - 1) * pageSize;
+      int endFetched = firstFetched + pages.size() * pageSize;
+      assertEquals(offset - firstFetched, info.getFirstObjectIndex());
+      assertTrue(firstFetched <= offset);
+      assertTrue(endFetched >= offset + limit);
+      assertEquals(limit, info.getLimit());
+    }
+  }
+
+  @Test
+  public void shouldNeverNeedMoreRequestsOrRecordsThanFixedPageSize() {
+    Random random = new Random(20181018L);
+    for (int i = 0; i < 10000; i++) {
+      int offset = random.nextInt(5000);
+      int limit = 1 + random.nextInt(RM_API_MAX_COUNT);
+      PaginationInfo info = calculator.getPagination(offset, limit);
+
+      int fixedPageSize = Math.min(limit, RM_API_MAX_COUNT);
+      int fixedPageCount = (offset + limit - 1) / fixedPageSize - offset / fixedPageSize + 1;
+      int pageCount = info.getPages().size();
+      int records = pageCount * info.getPages().get(0).getLimit();
+
+      assertTrue(pageCount <= fixedPageCount);
+      if (pageCount == fixedPageCount) {
+        assertTrue(records <= fixedPageCount * fixedPageSize);
+      }
+    }
+  }
+
+  @Test
+  public void shouldUseFewestRequestsPossible() {
+    Random random = new Random(20181018L);
+    for (int i = 0; i < 1000; i++) {
+      int offset = random.nextInt(5000);
+      int limit = 1 + random.nextInt(500);
+      PaginationInfo info = calculator.getPagination(offset, limit);
+
+      for (int pageSize = 1; pageSize <= RM_API_MAX_COUNT; pageSize++) {
+        int pageCount = (offset + limit - 1) / pageSize - offset / pageSize + 1;
+        assertTrue(info.getPages().size() <= pageCount);
+      }
+    }
+  }
 }
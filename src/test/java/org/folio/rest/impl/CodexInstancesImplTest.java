@@ -1,17 +1,21 @@
 package org.folio.rest.impl;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 
 import static org.folio.utils.Utils.readMockFile;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -21,10 +25,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.folio.codex.cache.StaleData;
+import org.folio.codex.client.HoldingsIQRateLimiter;
+import org.folio.codex.client.HoldingsIQRateLimiter.Traffic;
 import org.folio.holdingsiq.model.Configuration;
 import org.folio.holdingsiq.service.ConfigurationService;
 import org.folio.holdingsiq.service.exception.ConfigurationServiceException;
 import org.folio.spring.SpringContextUtil;
+import org.folio.utils.ManualTicker;
 
 @RunWith(VertxUnitRunner.class)
 public class CodexInstancesImplTest extends VertxTestBase {
@@ -34,7 +42,10 @@ public class CodexInstancesImplTest extends VertxTestBase {
   private static final String MOCK_CODEX_INSTANCE_TITLE_COLLECTION_200_RESPONSE_WHEN_FOUND = "RMAPIService/SuccessGetTitleList.json";
 
   private static final String SEARCH_TITLE_COLLECTION_WHEN_SEARCH_FIELD_NOT_GIVEN_SUCCESS_QUERY = "Bridget Jones";
-  private static final String SEARCH_TITLE_COLLECTION_FAILS_UNSUPPORTED_QUERY = "title = Bridget Jones or publisher = xyz";
+  private static final String SEARCH_TITLE_COLLECTION_FAILS_UNSUPPORTED_QUERY = "title = Bridget Jones not publisher = xyz";
+  private static final String EXPORT_SEARCH = "Export";
+  // more than export.page.size times export.pages.in.flight
+  private static final int EXPORT_RECORDS = 250;
   public static final String CONTENT_TYPE_HEADER = "content-type";
   public static final String RESULT_INFO = "resultInfo";
   public static final String INSTANCES = "instances";
@@ -43,6 +54,12 @@ public class CodexInstancesImplTest extends VertxTestBase {
 
   @Autowired
   private ConfigurationService configurationService;
+  @Autowired
+  private ManualTicker cacheTicker;
+  @Autowired
+  private HoldingsIQRateLimiter rateLimiter;
+  private Configuration configuration;
+  private volatile boolean holdingsIQDown;
 
   @Before
   public void setUp(TestContext context) {
@@ -52,14 +69,19 @@ public class CodexInstancesImplTest extends VertxTestBase {
     final String host = "localhost";
     final HttpServer server = vertx.createHttpServer();
     server.requestHandler(req -> {
-      if (req.path().equals(String.format("/rm/rmaccounts/test/titles/%s", "99999"))) {
+      if (holdingsIQDown) {
+        req.response().setStatusCode(500).end("HoldingsIQ is down");
+      } else if (req.path().equals(String.format("/rm/rmaccounts/test/titles/%s", "99999"))) {
         req.response().setStatusCode(200).putHeader(CONTENT_TYPE_HEADER, "application/json")
           .end(readMockFile(MOCK_RMAPI_INSTANCE_TITLE_200_RESPONSE_WHEN_FOUND));
       } else if (req.path().equals(String.format("/rm/rmaccounts/test/titles/%s", "1"))) {
         req.response().setStatusCode(404).putHeader(CONTENT_TYPE_HEADER, "text/plain")
           .end(readMockFile(MOCK_RMAPI_INSTANCE_TITLE_404_RESPONSE_WHEN_NOT_FOUND));
       } else if (req.path().equals("/rm/rmaccounts/test/titles")) {
-        if (req.uri().contains("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=Bridget+Jones&offset=1&count=10&orderby=titlename")) {
+        if (EXPORT_SEARCH.equals(req.getParam("search"))) {
+          req.response().setStatusCode(200).putHeader(CONTENT_TYPE_HEADER, "application/json")
+            .end(exportPage(Integer.parseInt(req.getParam("offset")), Integer.parseInt(req.getParam("count"))).encode());
+        } else if (req.uri().contains("searchfield=titlename&selection=all&resourcetype=all&searchtype=contains&search=Bridget+Jones&offset=1&count=50&orderby=titlename")) {
           req.response().setStatusCode(200).putHeader(CONTENT_TYPE_HEADER, "application/json")
             .end(readMockFile(MOCK_CODEX_INSTANCE_TITLE_COLLECTION_200_RESPONSE_WHEN_FOUND));
         } else {
@@ -73,12 +95,12 @@ public class CodexInstancesImplTest extends VertxTestBase {
 
 
     SpringContextUtil.autowireDependenciesFromFirstContext(this, vertx);
-    doReturn(CompletableFuture.completedFuture(
-      Configuration.builder()
-        .customerId("test")
-        .apiKey("8675309")
-        .url("http://localhost:" + serverPort)
-        .configValid(true).build()))
+    configuration = Configuration.builder()
+      .customerId("test")
+      .apiKey("8675309")
+      .url("http://localhost:" + serverPort)
+      .configValid(true).build();
+    doReturn(CompletableFuture.completedFuture(configuration))
       .when(configurationService).retrieveConfiguration(any());
   }
 
@@ -108,6 +130,71 @@ public class CodexInstancesImplTest extends VertxTestBase {
     logger.info(TEST_SUCESSFUL_MESSAGE);
   }
 
+  @Test
+  public void getCodexInstancesByIdServesStaleWhenHoldingsIQFailsTest(TestContext context) {
+    logger.info("Testing for expired instance served when HoldingsIQ fails");
+
+    getInstance99999().then().statusCode(200).header(StaleData.WARNING_HEADER, nullValue());
+    holdingsIQDown = true;
+    // past title.cache.expire, within cache.stale.time
+    cacheTicker.advance(301, TimeUnit.SECONDS);
+
+    getInstance99999()
+      .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(200)
+        .header(StaleData.WARNING_HEADER, StaleData.STALE_WARNING)
+        .body("id", equalTo("99999"));
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void getCodexInstancesByIdFailsPastStaleTimeTest(TestContext context) {
+    logger.info("Testing for instance past the stale time when HoldingsIQ fails");
+
+    getInstance99999().then().statusCode(200);
+    holdingsIQDown = true;
+    // past title.cache.expire plus cache.stale.time
+    cacheTicker.advance(901, TimeUnit.SECONDS);
+
+    getInstance99999()
+      .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(500)
+        .header(StaleData.WARNING_HEADER, nullValue());
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void getCodexInstancesByIdTooManyRequestsTest(TestContext context) {
+    logger.info("Testing for instance lookup over the rate limit");
+
+    getInstance99999().then().statusCode(200);
+    // an expired copy must not be served for calls the module throttled itself
+    cacheTicker.advance(301, TimeUnit.SECONDS);
+    // far more calls than the interactive burst plus what refills within rate.limit.max.wait
+    for (int i = 0; i < 100; i++) {
+      rateLimiter.execute(configuration, Traffic.INTERACTIVE, () -> CompletableFuture.completedFuture(null));
+    }
+
+    getInstance99999()
+      .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(429)
+        .contentType(ContentType.TEXT)
+        .header(StaleData.WARNING_HEADER, nullValue());
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
   @Test
   public void getCodexInstancesByIdThrowsExceptionWhenOkapiURLIsEmptyTest(TestContext context) {
     logger.info("Test when Okapi URL is null is starting");
@@ -257,6 +344,26 @@ public class CodexInstancesImplTest extends VertxTestBase {
     logger.info(TEST_SUCESSFUL_MESSAGE);
   }
 
+  @Test
+  public void getCodexInstancesIdSearchUpstreamFailureTest(TestContext context) {
+    logger.info("Testing for id search when HoldingsIQ fails");
+
+    RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+        .header(contentTypeHeader)
+      .get(String.format("/codex-instances?query=id=%d", 2))
+        .then()
+          .log()
+          .ifValidationFails()
+          .statusCode(500);
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
   @Test
   public void getCodexInstancesHandlesInvalidQueryTest(TestContext context) {
     logger.info("Test when query is invalid, exception is thrown");
@@ -316,4 +423,159 @@ public class CodexInstancesImplTest extends VertxTestBase {
     // Test done
     logger.info(TEST_SUCESSFUL_MESSAGE);
   }
+
+  @Test
+  public void postCodexInstancesBatchReportsFailedIdsTest(TestContext context) {
+    logger.info("Testing for batch instance lookup");
+
+    final Response r = RestAssured
+        .given()
+          .header(tenantHeader)
+          .header(urlHeader)
+          .header(tokenHeader)
+          .header(contentTypeHeader)
+          .body("{\"ids\": [\"99999\", \"1\", \"abc\", \"99999\", \"1\"]}")
+        .post("/codex-instances-batch")
+          .then()
+            .contentType(ContentType.JSON)
+            .log()
+            .ifValidationFails()
+            .statusCode(200).extract().response();
+
+    final JsonObject json = new JsonObject(r.getBody().asString());
+    context.assertEquals(1, json.getJsonArray(INSTANCES).size());
+    context.assertEquals("99999", json.getJsonArray(INSTANCES).getJsonObject(0).getString("id"));
+    context.assertEquals(1, json.getJsonObject(RESULT_INFO).getInteger("totalRecords"));
+    final JsonArray diagnostics = json.getJsonObject(RESULT_INFO).getJsonArray("diagnostics");
+    context.assertEquals(2, diagnostics.size());
+    context.assertEquals("1", diagnostics.getJsonObject(0).getString("query"));
+    context.assertEquals("404", diagnostics.getJsonObject(0).getString("code"));
+    context.assertEquals("abc", diagnostics.getJsonObject(1).getString("query"));
+    context.assertEquals("400", diagnostics.getJsonObject(1).getString("code"));
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void postCodexInstancesBatchRejectsTooManyIdsTest(TestContext context) {
+    logger.info("Testing for batch instance lookup with too many ids");
+
+    final JsonArray ids = new JsonArray();
+    for (int i = 0; i <= 1000; i++) {
+      ids.add(String.valueOf(i));
+    }
+
+    RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+        .header(contentTypeHeader)
+        .body(new JsonObject().put("ids", ids).encode())
+      .post("/codex-instances-batch")
+        .then()
+          .log()
+          .ifValidationFails()
+          .statusCode(400);
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void getCodexInstancesExportStreamsAllPagesTest(TestContext context) {
+    logger.info("Testing for an export of more pages than are requested at a time");
+
+    final Response r = RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+      .get(String.format("/codex-instances-export?query=title=%s", EXPORT_SEARCH))
+        .then()
+          .log()
+          .ifValidationFails()
+          .statusCode(200)
+          .contentType("application/x-ndjson")
+          .header("Transfer-Encoding", "chunked")
+          .extract().response();
+
+    final String[] lines = r.getBody().asString().split("\n");
+    context.assertEquals(EXPORT_RECORDS, lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      context.assertEquals(String.valueOf(i + 1), new JsonObject(lines[i]).getString("id"));
+    }
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void getCodexInstancesExportByIdTest(TestContext context) {
+    logger.info("Testing for an export of a single instance by id");
+
+    final Response r = RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+      .get("/codex-instances-export?query=id=99999")
+        .then()
+          .log()
+          .ifValidationFails()
+          .statusCode(200)
+          .contentType("application/x-ndjson")
+          .extract().response();
+
+    final String[] lines = r.getBody().asString().split("\n");
+    context.assertEquals(1, lines.length);
+    context.assertEquals("99999", new JsonObject(lines[0]).getString("id"));
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  @Test
+  public void getCodexInstancesExportFailsBeforeStreamingTest(TestContext context) {
+    logger.info("Testing for an export with an unsupported query");
+
+    RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+      .get(String.format("/codex-instances-export?query=%s", SEARCH_TITLE_COLLECTION_FAILS_UNSUPPORTED_QUERY))
+        .then()
+          .log()
+          .ifValidationFails()
+          .statusCode(400)
+          .contentType(ContentType.TEXT);
+
+    // Test done
+    logger.info(TEST_SUCESSFUL_MESSAGE);
+  }
+
+  private Response getInstance99999() {
+    return RestAssured
+      .given()
+        .header(tenantHeader)
+        .header(urlHeader)
+        .header(tokenHeader)
+        .header(contentTypeHeader)
+      .get("/codex-instances/99999");
+  }
+
+  /**
+   * @return one page of {@link #EXPORT_RECORDS} titles, with ids counting up from 1
+   */
+  private static JsonObject exportPage(int page, int count) {
+    final JsonObject title = new JsonObject(readMockFile(MOCK_CODEX_INSTANCE_TITLE_COLLECTION_200_RESPONSE_WHEN_FOUND))
+      .getJsonArray("titles").getJsonObject(0);
+    final JsonArray titles = new JsonArray();
+    for (int id = (page - 1) * count + 1; id <= Math.min(page * count, EXPORT_RECORDS); id++) {
+      titles.add(title.copy().put("titleId", id).put("titleName", "Export " + id));
+    }
+    return new JsonObject().put("totalResults", EXPORT_RECORDS).put("titles", titles);
+  }
 }
@@ -7,13 +7,16 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.folio.holdingsiq.model.Configuration;
 import org.folio.holdingsiq.service.ConfigurationService;
 import org.folio.holdingsiq.service.exception.ConfigurationServiceException;
+import org.folio.rest.jaxrs.model.Diagnostic;
 import org.folio.rest.jaxrs.model.Package;
+import org.folio.rest.jaxrs.model.PackageBatchRequest;
 import org.folio.rest.jaxrs.model.PackageCollection;
 import org.folio.rest.jaxrs.model.Source;
 import org.folio.rest.jaxrs.model.SourceCollection;
@@ -25,6 +28,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.http.HttpServer;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -43,10 +48,14 @@ public class CodexPackagesImplTest extends VertxTestBase {
   private static final String INVALID_PACKAGE_ID = "999999";
   private static final String CODEX_PACKAGE_ID = VENDOR_ID + "-" + PACKAGE_ID;
   private static final String NOT_MOCKED_CODEX_PACKAGE_ID = "123-456";
+  private static final String NOT_FOUND_CODEX_PACKAGE_ID = VENDOR_ID + "-" + INVALID_PACKAGE_ID;
   private static final String SEARCH_PACKAGES_QUERY = "name = Academy";
   private static final String NOT_MOCKED_QUERY = "name = abc";
   private static final String INVALID_SEARCH_PACKAGES_QUERY = "name = Academy or id = 22";
-  private static final String GET_PACKAGES_SUCCESSFUL_RM_API_URL = "/rm/rmaccounts/test/packages?selection=all&contenttype=all&searchtype=advanced&search=Academy&offset=1&count=10&orderby=packagename";
+  private static final String EXPORT_SEARCH = "Export";
+  // more than export.page.size times export.pages.in.flight
+  private static final int EXPORT_RECORDS = 250;
+  private static final String GET_PACKAGES_SUCCESSFUL_RM_API_URL = "/rm/rmaccounts/test/packages?selection=all&contenttype=all&searchtype=advanced&search=Academy&offset=1&count=50&orderby=packagename";
 
   @Autowired
   private ConfigurationService configurationService;
@@ -72,6 +81,9 @@ public class CodexPackagesImplTest extends VertxTestBase {
       } else if (req.path().equals(packageByIdURL(INVALID_PACKAGE_ID))) {
         req.response().setStatusCode(404).putHeader("content-type", "text/plain")
           .end(readMockFile(MOCK_RMAPI_INSTANCE_PACKAGE_404_RESPONSE_WHEN_NOT_FOUND));
+      } else if (req.path().equals("/rm/rmaccounts/test/packages") && EXPORT_SEARCH.equals(req.getParam("search"))) {
+        req.response().setStatusCode(200).putHeader("content-type", "application/json")
+          .end(exportPage(Integer.parseInt(req.getParam("offset")), Integer.parseInt(req.getParam("count"))).encode());
       } else if (req.uri().equals(GET_PACKAGES_SUCCESSFUL_RM_API_URL)) {
         req.response().setStatusCode(200).putHeader("content-type", "application/json")
           .end(readMockFile(MOCK_RMAPI_PACKAGES_200_RESPONSE));
@@ -345,7 +357,7 @@ public class CodexPackagesImplTest extends VertxTestBase {
       .header(urlHeader)
       .header(tokenHeader)
       .header(contentTypeHeader)
-      .get(String.format("/codex-packages?query=id=%s", NOT_MOCKED_CODEX_PACKAGE_ID))
+      .get(String.format("/codex-packages?query=id=%s", NOT_FOUND_CODEX_PACKAGE_ID))
       .then()
       .contentType(ContentType.JSON)
       .log()
@@ -357,4 +369,139 @@ public class CodexPackagesImplTest extends VertxTestBase {
 
     logger.info("Test done");
   }
+
+  @Test
+  public void getCodexPackagesIdSearchUpstreamFailureTest() {
+    logger.info("Testing getCodexPackagesIdSearchUpstreamFailureTest");
+
+    RestAssured
+      .given()
+      .header(tenantHeader)
+      .header(urlHeader)
+      .header(tokenHeader)
+      .header(contentTypeHeader)
+      .get(String.format("/codex-packages?query=id=%s", NOT_MOCKED_CODEX_PACKAGE_ID))
+      .then()
+      .log()
+      .ifValidationFails()
+      .statusCode(500);
+
+    logger.info("Test done");
+  }
+
+  @Test
+  public void postCodexPackagesBatchReportsFailedIdsTest() {
+    logger.info("Testing postCodexPackagesBatchReportsFailedIdsTest");
+
+    final PackageCollection response = RestAssured
+      .given()
+      .header(tenantHeader)
+      .header(urlHeader)
+      .header(tokenHeader)
+      .header(contentTypeHeader)
+      .body(new PackageBatchRequest().withIds(Arrays.asList(
+        CODEX_PACKAGE_ID, VENDOR_ID + "-" + INVALID_PACKAGE_ID, NOT_MOCKED_CODEX_PACKAGE_ID, "abc")))
+      .post("/codex-packages-batch")
+      .then()
+      .contentType(ContentType.JSON)
+      .log()
+      .ifValidationFails()
+      .statusCode(200).extract().as(PackageCollection.class);
+
+    assertEquals(1, response.getPackages().size());
+    assertEquals(CODEX_PACKAGE_ID, response.getPackages().get(0).getId());
+    List<Diagnostic> diagnostics = response.getResultInfo().getDiagnostics();
+    assertEquals(3, diagnostics.size());
+    assertEquals(VENDOR_ID + "-" + INVALID_PACKAGE_ID, diagnostics.get(0).getQuery());
+    assertEquals("404", diagnostics.get(0).getCode());
+    assertEquals(NOT_MOCKED_CODEX_PACKAGE_ID, diagnostics.get(1).getQuery());
+    assertEquals("500", diagnostics.get(1).getCode());
+    assertEquals("abc", diagnostics.get(2).getQuery());
+    assertEquals("400", diagnostics.get(2).getCode());
+
+    logger.info("Test done");
+  }
+
+  @Test
+  public void getCodexPackagesExportStreamsAllPagesTest() {
+    logger.info("Testing for a package export of more pages than are requested at a time");
+
+    final String body = RestAssured
+      .given()
+      .header(tenantHeader)
+      .header(urlHeader)
+      .header(tokenHeader)
+      .get(String.format("/codex-packages-export?query=name=%s", EXPORT_SEARCH))
+      .then()
+      .log()
+      .ifValidationFails()
+      .statusCode(200)
+      .contentType("application/x-ndjson")
+      .header("Transfer-Encoding", "chunked")
+      .extract().asString();
+
+    final String[] lines = body.split("\n");
+    assertEquals(EXPORT_RECORDS, lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertEquals(VENDOR_ID + "-" + (i + 1), new JsonObject(lines[i]).getString("id"));
+    }
+
+    logger.info("Test done");
+  }
+
+  @Test
+  public void getCodexPackagesExportByIdTest() {
+    logger.info("Testing for a package export by id");
+
+    final String body = RestAssured
+      .given()
+      .header(tenantHeader)
+      .header(urlHeader)
+      .header(tokenHeader)
+      .get(String.format("/codex-packages-export?query=id=%s", CODEX_PACKAGE_ID))
+      .then()
+      .log()
+      .ifValidationFails()
+      .statusCode(200)
+      .contentType("application/x-ndjson")
+      .extract().asString();
+
+    final String[] lines = body.split("\n");
+    assertEquals(1, lines.length);
+    assertEquals(CODEX_PACKAGE_ID, new JsonObject(lines[0]).getString("id"));
+
+    logger.info("Test done");
+  }
+
+  @Test
+  public void getCodexPackagesExportFailsBeforeStreamingTest() {
+    logger.info("Testing for a package export with an invalid query");
+
+    RestAssured
+      .given()
+      .header(tenantHeader)
+      .header(urlHeader)
+      .header(tokenHeader)
+      .get(String.format("/codex-packages-export?query=%s", INVALID_SEARCH_PACKAGES_QUERY))
+      .then()
+      .log()
+      .ifValidationFails()
+      .statusCode(400)
+      .contentType(ContentType.TEXT);
+
+    logger.info("Test done");
+  }
+
+  /**
+   * @return one page of {@link #EXPORT_RECORDS} packages, with ids counting up from 1
+   */
+  private static JsonObject exportPage(int page, int count) {
+    final JsonObject pkg = new JsonObject(readMockFile(MOCK_RMAPI_PACKAGES_200_RESPONSE))
+      .getJsonArray("packagesList").getJsonObject(0);
+    final JsonArray packages = new JsonArray();
+    for (int id = (page - 1) * count + 1; id <= Math.min(page * count, EXPORT_RECORDS); id++) {
+      packages.add(pkg.copy().put("packageId", id).put("vendorId", Integer.parseInt(VENDOR_ID)));
+    }
+    return new JsonObject().put("totalResults", EXPORT_RECORDS).put("packagesList", packages);
+  }
 }
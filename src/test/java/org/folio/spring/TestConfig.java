@@ -2,7 +2,11 @@ package org.folio.spring;
 
 import static org.mockito.Mockito.mock;
 
+import io.vertx.core.Vertx;
+
+import org.folio.codex.client.HoldingsIQRateLimiter;
 import org.folio.holdingsiq.service.ConfigurationService;
+import org.folio.utils.ManualTicker;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -14,5 +18,14 @@ public class TestConfig {
   public ConfigurationService configurationService() {
     return mock(ConfigurationService.class);
   }
-}
 
+  @Bean
+  public ManualTicker cacheTicker() {
+    return new ManualTicker();
+  }
+
+  @Bean
+  public HoldingsIQRateLimiter holdingsIQRateLimiter(Vertx vertx) {
+    return new HoldingsIQRateLimiter(vertx, true, 10, 20, 20, 40, 5000);
+  }
+}
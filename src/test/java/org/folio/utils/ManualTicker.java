@@ -0,0 +1,22 @@
+package org.folio.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Follows the system ticker, and can be moved ahead to let cache entries expire.
+ */
+public class ManualTicker extends Ticker {
+  private final AtomicLong offset = new AtomicLong();
+
+  @Override
+  public long read() {
+    return System.nanoTime() + offset.get();
+  }
+
+  public void advance(long duration, TimeUnit unit) {
+    offset.addAndGet(unit.toNanos(duration));
+  }
+}